@@ -0,0 +1,36 @@
+package com.github.edgar615.message.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * benchmarks.jar的入口，参数和JMH的命令行相同.
+ * <p>
+ * 没有指定-rf/-rff时结果以JSON格式写入jmh-result.json，便于在不同版本之间比较：
+ * <pre>
+ *   java -jar target/benchmarks.jar PipelineBenchmark -rff target/2.0.0.json
+ * </pre>
+ *
+ * @author Edgar
+ */
+public class BenchmarkRunner {
+
+  public static final String DEFAULT_RESULT = "jmh-result.json";
+
+  private BenchmarkRunner() {
+    throw new AssertionError("Not instantiable: " + BenchmarkRunner.class);
+  }
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions cli = new CommandLineOptions(args);
+    Options options = new OptionsBuilder()
+        .parent(cli)
+        .resultFormat(cli.getResultFormat().orElse(ResultFormatType.JSON))
+        .result(cli.getResult().orElse(DEFAULT_RESULT))
+        .build();
+    new Runner(options).run();
+  }
+}
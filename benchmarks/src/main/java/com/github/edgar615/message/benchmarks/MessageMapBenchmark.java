@@ -0,0 +1,65 @@
+package com.github.edgar615.message.benchmarks;
+
+import com.github.edgar615.message.core.Event;
+import com.github.edgar615.message.core.Message;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Message.toMap和Message.fromMap.
+ *
+ * @author Edgar
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageMapBenchmark {
+
+  /**
+   * 消息内容的字段数量
+   */
+  @Param({"4", "32"})
+  public int fields;
+
+  private Message message;
+
+  private Map<String, Object> map;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Map<String, Object> content = new HashMap<>();
+    for (int i = 0; i < fields; i++) {
+      content.put("field" + i, "value" + i);
+    }
+    message = Message.create("benchmark", Event.create("benchmark", content));
+    message.header().addExt("source", "benchmark");
+    map = message.toMap();
+  }
+
+  @Benchmark
+  public Map<String, Object> toMap() {
+    return message.toMap();
+  }
+
+  @Benchmark
+  public Message fromMap() {
+    return Message.fromMap(map);
+  }
+
+}
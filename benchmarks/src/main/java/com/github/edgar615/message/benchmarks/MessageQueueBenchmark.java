@@ -0,0 +1,130 @@
+package com.github.edgar615.message.benchmarks;
+
+import com.github.edgar615.message.core.Event;
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.utils.DefaultMessageQueue;
+import com.github.edgar615.message.utils.MessageQueue;
+import com.github.edgar615.message.utils.RingBufferMessageQueue;
+import com.github.edgar615.message.utils.SequentialMessageQueue;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 比较DefaultMessageQueue、RingBufferMessageQueue和SequentialMessageQueue.
+ * <p>
+ * 模拟消费者的实际用法：一个拉取线程批量入队，workers个ConsumerWorker线程阻塞出队，每次调用传递BATCH条消息.
+ * SequentialMessageQueue按消息内容的seq对KEYS取模作为标识，同一个标识的消息串行执行.
+ *
+ * @author Edgar
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageQueueBenchmark {
+
+  private static final int BATCH = 500;
+
+  private static final int LIMIT = 1000;
+
+  /**
+   * SequentialMessageQueue的标识数量
+   */
+  private static final int KEYS = 64;
+
+  @Param({"default", "ringBuffer", "sequential"})
+  public String queueType;
+
+  @Param({"1", "4", "16"})
+  public int workers;
+
+  private MessageQueue queue;
+
+  private List<Message> batch;
+
+  private final AtomicLong consumed = new AtomicLong();
+
+  private long produced;
+
+  private List<Thread> workerThreads;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    if ("ringBuffer".equals(queueType)) {
+      queue = RingBufferMessageQueue.create(LIMIT);
+    } else if ("sequential".equals(queueType)) {
+      queue = SequentialMessageQueue.create(
+          message -> String.valueOf(((Event) message.body()).content().get("seq")), LIMIT);
+    } else {
+      queue = DefaultMessageQueue.create(LIMIT);
+    }
+    batch = new ArrayList<>(BATCH);
+    for (int i = 0; i < BATCH; i++) {
+      batch.add(Message.create("benchmark",
+          Event.create("benchmark", ImmutableMap.of("seq", i % KEYS))));
+    }
+    consumed.set(0);
+    produced = 0;
+    workerThreads = new ArrayList<>(workers);
+    for (int i = 0; i < workers; i++) {
+      Thread thread = new Thread(this::work, "benchmark-worker-" + i);
+      thread.setDaemon(true);
+      thread.start();
+      workerThreads.add(thread);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    for (Thread thread : workerThreads) {
+      thread.interrupt();
+    }
+    for (Thread thread : workerThreads) {
+      thread.join(1000);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public long transfer() {
+    queue.enqueue(batch);
+    produced += BATCH;
+    //等待本批消息全部被消费，和读取流在队列满时暂停的效果一致
+    while (consumed.get() < produced) {
+      Thread.yield();
+    }
+    return produced;
+  }
+
+  private void work() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        Message message = queue.dequeue();
+        queue.complete(message);
+        consumed.incrementAndGet();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
@@ -0,0 +1,120 @@
+package com.github.edgar615.message.benchmarks;
+
+import com.github.edgar615.message.bus.ConsumerOptions;
+import com.github.edgar615.message.bus.MessageConsumer;
+import com.github.edgar615.message.bus.MessageProducer;
+import com.github.edgar615.message.bus.ProducerOptions;
+import com.github.edgar615.message.core.Event;
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.memory.MemoryBroker;
+import com.github.edgar615.message.memory.MemoryMessageReadStream;
+import com.github.edgar615.message.memory.MemoryMessageWriteStream;
+import com.github.edgar615.message.memory.MemoryReadOptions;
+import com.github.edgar615.message.utils.DefaultMessageQueue;
+import com.github.edgar615.message.utils.MessageQueue;
+import com.github.edgar615.message.utils.RingBufferMessageQueue;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 端到端的内存流水线：MessageProducer -> 写入流 -> 读取流 -> 队列 -> ConsumerWorker -> MessageHandler.
+ * <p>
+ * 写入流和读取流之间是{@link MemoryBroker}，没有序列化和网络，测量的是框架本身的开销.
+ * 每次调用发送BATCH条消息，等待全部被处理完成.
+ *
+ * @author Edgar
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+  private static final int BATCH = 500;
+
+  private static final int LIMIT = 1000;
+
+  private static final String TOPIC = "benchmark";
+
+  @Param({"default", "ringBuffer"})
+  public String queueType;
+
+  @Param({"1", "4"})
+  public int workers;
+
+  private final AtomicLong handled = new AtomicLong();
+
+  private long produced;
+
+  private List<Message> batch;
+
+  private MessageProducer producer;
+
+  private MemoryMessageReadStream readStream;
+
+  private MessageConsumer consumer;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    MessageQueue queue;
+    if ("ringBuffer".equals(queueType)) {
+      queue = RingBufferMessageQueue.create(LIMIT);
+    } else {
+      queue = DefaultMessageQueue.create(LIMIT);
+    }
+    MemoryBroker broker = MemoryBroker.create();
+    producer = MessageProducer.create(new ProducerOptions(), new MemoryMessageWriteStream(broker));
+    producer.start();
+    consumer = MessageConsumer.create(new ConsumerOptions().setWorkerPoolSize(workers), queue);
+    consumer.consumer(TOPIC, TOPIC, message -> handled.incrementAndGet());
+    consumer.start();
+    readStream = new MemoryMessageReadStream(broker, queue, null,
+        new MemoryReadOptions("benchmark").addTopic(TOPIC).setBlockMs(1));
+    readStream.start();
+
+    batch = new ArrayList<>(BATCH);
+    for (int i = 0; i < BATCH; i++) {
+      batch.add(Message.create(TOPIC, Event.create(TOPIC, ImmutableMap.of("seq", i))));
+    }
+    handled.set(0);
+    produced = 0;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    readStream.close();
+    producer.close();
+    consumer.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public long pipeline() {
+    producer.sendAll(batch).join();
+    produced += BATCH;
+    while (handled.get() < produced) {
+      Thread.yield();
+    }
+    return produced;
+  }
+
+}
@@ -0,0 +1,87 @@
+package com.github.edgar615.message.bus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * HandlerRegistry.findAllHandler在不同订阅数量下的查找.
+ * <p>
+ * HandlerRegistry是包内可见的单例，所以这个基准放在bus包下.每次查找轮流使用不同的topic/resource，
+ * 另外注册了一个topic通配和一个全通配的处理器，覆盖合并多张表的情况.
+ *
+ * @author Edgar
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class HandlerRegistryBenchmark {
+
+  private static final MessageHandler HANDLER = message -> {
+  };
+
+  @Param({"1", "100", "10000"})
+  public int subscriptions;
+
+  private final List<HandlerKey> keys = new ArrayList<>();
+
+  private String[] topics;
+
+  private String[] resources;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    topics = new String[subscriptions];
+    resources = new String[subscriptions];
+    for (int i = 0; i < subscriptions; i++) {
+      topics[i] = "topic" + (i % 16);
+      resources[i] = "resource" + i;
+      keys.add(new HandlerKey(topics[i], resources[i]));
+    }
+    keys.add(new HandlerKey("topic0", null));
+    keys.add(new HandlerKey(null, null));
+    for (HandlerKey key : keys) {
+      HandlerRegistry.instance().register(key, HANDLER);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    for (HandlerKey key : keys) {
+      HandlerRegistry.instance().unregisterAll(key);
+    }
+    keys.clear();
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    private int next;
+  }
+
+  @Benchmark
+  public List<MessageHandler> findAllHandler(Cursor cursor) {
+    int i = cursor.next;
+    cursor.next = i + 1 == subscriptions ? 0 : i + 1;
+    return HandlerRegistry.instance().findAllHandler(topics[i], resources[i]);
+  }
+
+}
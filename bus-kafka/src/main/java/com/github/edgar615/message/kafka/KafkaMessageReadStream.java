@@ -9,27 +9,26 @@ import com.github.edgar615.message.utils.MessageQueue;
 import com.github.edgar615.message.utils.MessageSerDe;
 import com.github.edgar615.message.utils.LoggingMarker;
 import com.github.edgar615.message.utils.NamedThreadFactory;
-import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
-import org.apache.kafka.clients.consumer.OffsetAndMetadata;
-import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,254 +55,370 @@ import org.slf4j.Marker;
  * <p>
  * <p>
  * Eventbus采用第二种方案消费消息.
+ * <p>
+ * 可以通过{@link KafkaReadOptions#setPollerCount(int)}启动多个KafkaConsumer，每个KafkaConsumer使用一个线程，由kafka分配各自的分区；
+ * 通过{@link KafkaReadOptions#setDecodeThreads(int)}把反序列化交给单独的线程池按分区并行处理.
+ * 拉取线程只负责拉取和反序列化，拉取到的消息交给读取流自己的线程，由它在{@link #poll()}中取出后入库、入队，
+ * 同一个分区的消息按拉取的顺序入队.
+ * <p>
+ * 关闭自动提交（enable.auto.commit=false）时，每个分区用{@link PartitionOffsets}记录拉取到的偏移量，
+ * 消息在队列中complete（或者因为重复被丢弃）之后才算处理完成，按commitIntervalMs定时提交每个分区连续完成的水位线。
+ * 重启或者rebalance之后从水位线开始重新消费，处理中的消息不会丢失，但是可能会重复.
+ * <p>
+ * 设置了{@link KafkaReadOptions#setPartitionBudget(int)}时，同样用{@link PartitionOffsets}统计每个分区未处理完成的消息，
+ * 只暂停超过budget的分区，处理慢的分区不会影响其他分区.
  *
  * @author Edgar  Date 2017/4/5
  */
-public class KafkaMessageReadStream extends AbstractMessageReadStream implements Runnable {
+public class KafkaMessageReadStream extends AbstractMessageReadStream {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(KafkaMessageReadStream.class);
 
   private final ExecutorService consumerExecutor;
 
-  private final KafkaConsumer<String, String> consumer;
+  /**
+   * 反序列化的线程池，没有设置decodeThreads时为null
+   */
+  private final ExecutorService decodeExecutor;
+
+  private final List<KafkaPoller> pollers = new ArrayList<>();
 
   /**
-   * 状态：0启动中 1-运行中 2-关闭
+   * 是否手动提交偏移量
    */
-  private volatile int state = 0;
+  private final boolean manualCommit;
 
-  private static final int STATE_WAITING = 0;
-  private static final int STATE_RUNNING = 1;
-  private static final int STATE_CLOSED = 2;
+  /**
+   * 每个分区最多未处理完成的消息数量
+   */
+  private final int partitionBudget;
 
-  private final List<TopicPartition> partitionsAssigned = new CopyOnWriteArrayList<>();
+  /**
+   * 是否跟踪每条消息的处理进度，手动提交或者按分区暂停时需要
+   */
+  private final boolean trackOffsets;
 
-  private final KafkaReadOptions options;
+  /**
+   * 每个分区的偏移量，KafkaConsumer重新定位分区时会替换成新的对象
+   */
+  private final Map<TopicPartition, PartitionOffsets> offsets = new ConcurrentHashMap<>();
 
-  private boolean enableAutoCommit;
+  /**
+   * 已经拉取还没有处理完成的消息对应的偏移量，Message没有重写equals，按对象区分
+   */
+  private final Map<Message, Position> positions = new ConcurrentHashMap<>();
 
   /**
-   * 拉取消息的偏移量，用来手动提交时记录偏移
+   * 拉取线程交给读取流线程的消息，有界，读取流线程处理不过来时拉取线程会等待
    */
-  private final Map<TopicPartition, Long> pollOffsets = new ConcurrentHashMap<>();
+  private final BlockingQueue<Batch> handOff;
 
   /**
-   * 已提交的偏移量，用来手动提交是记录偏移，如果拉取的偏移>已提交的偏移，说明需要提交
+   * 最近一次poll取出的消息，只在读取流线程中访问，入队失败时用来重新拉取
    */
-  private final Map<TopicPartition, Long> commitedOffsets = new ConcurrentHashMap<>();
+  private final List<Batch> polled = new ArrayList<>();
+
+  private volatile boolean closed = false;
 
   public KafkaMessageReadStream(MessageQueue queue,
       MessageConsumerRepository consumerRepository, KafkaReadOptions options) {
     super(queue, consumerRepository);
-    this.consumerExecutor =
-        Executors.newFixedThreadPool(1, NamedThreadFactory.create("kafka-consumer"));
-    this.consumer = new KafkaConsumer<>(options.getConfigs());
-    this.options = options;
     Object enableAutoCommitConfig = options.getConfigs()
         .get(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG);
-    if (enableAutoCommitConfig == null) {
-      enableAutoCommit = true;
+    this.manualCommit = enableAutoCommitConfig != null
+        && !Boolean.parseBoolean(enableAutoCommitConfig.toString());
+    this.partitionBudget = options.getPartitionBudget();
+    this.trackOffsets = manualCommit || partitionBudget > 0;
+    if (trackOffsets) {
+      queue.addListener(this::completed);
+    }
+    this.handOff = new LinkedBlockingQueue<>(options.getPollerCount() * 2);
+    //每个KafkaConsumer一个拉取线程，另外一个线程入队
+    this.consumerExecutor = Executors.newFixedThreadPool(options.getPollerCount() + 1,
+        NamedThreadFactory.create("kafka-consumer"));
+    if (options.getDecodeThreads() > 0) {
+      this.decodeExecutor = Executors.newFixedThreadPool(options.getDecodeThreads(),
+          NamedThreadFactory.create("kafka-decoder"));
     } else {
-      enableAutoCommit = Boolean.parseBoolean(enableAutoCommitConfig.toString());
+      this.decodeExecutor = null;
+    }
+    for (int i = 0; i < options.getPollerCount(); i++) {
+      pollers.add(new KafkaPoller(this, options));
     }
-
   }
 
+  /**
+   * 取出拉取线程已经反序列化的消息，没有消息时最多等待100毫秒.
+   * <p>
+   * 同一时间只能有一个线程调用，{@link #start()}之后由读取流自己的线程循环调用{@link #pollAndEnqueue()}.
+   */
   @Override
   public List<Message> poll() {
-    ConsumerRecords<String, String> records = consumer.poll(100);
+    polled.clear();
+    try {
+      Batch first = handOff.poll(100, TimeUnit.MILLISECONDS);
+      if (first == null) {
+        return Collections.emptyList();
+      }
+      polled.add(first);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Collections.emptyList();
+    }
+    handOff.drainTo(polled);
     List<Message> messages = new ArrayList<>();
-    for (ConsumerRecord<String, String> record : records) {
-      Map<String, Object> extra = new HashMap<>();
-      extra.put("topic", record.topic());
-      extra.put("timestamp", record.timestamp());
-      extra.put("partition", record.partition());
-      extra.put("offset", record.offset());
+    for (Iterator<Batch> it = polled.iterator(); it.hasNext(); ) {
+      Batch batch = it.next();
+      if (batch.epoch != batch.poller.epoch()) {
+        //拉取之后分区被要求重新拉取，这些消息会再次拉取到，不能入队
+        batch.poller.rewind(batch.partitions, batch.messages);
+        it.remove();
+      } else {
+        messages.addAll(batch.messages);
+      }
+    }
+    return messages;
+  }
+
+  /**
+   * 拉取线程把反序列化的消息交给读取流线程，读取流线程处理不过来时等待，关闭后直接返回
+   *
+   * @param poller 拉取消息的KafkaPoller
+   * @param epoch 拉取之前KafkaPoller的epoch
+   * @param partitions 消息所属的分区
+   * @param messages 消息
+   */
+  void handOff(KafkaPoller poller, int epoch, Set<TopicPartition> partitions,
+      List<Message> messages) {
+    Batch batch = new Batch(poller, epoch, partitions, messages);
+    try {
+      while (!closed) {
+        if (handOff.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void enqueueLoop() {
+    while (!closed) {
       try {
-        Message message = MessageSerDe.deserialize(record.topic(), record.value());
-        LOGGER.info(LoggingMarker.getLoggingMarker(message, true, extra), "poll from kafka");
-        messages.add(message);
+        pollAndEnqueue();
       } catch (Exception e) {
-        Marker messageMarker =
-            appendEntries(extra);
-        LOGGER.warn(messageMarker, "poll from kafka, bus deserialize failed");
-      }
-      // 记录最近的偏移量，
-      if (!enableAutoCommit) {
-        TopicPartition topicPartition = new TopicPartition(record.topic(), record.partition());
-        pollOffsets.put(topicPartition, record.offset());
+        LOGGER.error("enqueue kafka records occur error", e);
+        //没有入队的消息由拉取线程从水位线开始重新拉取
+        for (Batch batch : polled) {
+          batch.poller.rewind(batch.partitions, batch.messages);
+        }
+        polled.clear();
       }
     }
-    return messages;
   }
 
-  @Override
-  public void start() {
-    this.consumerExecutor.submit(this);
+  boolean manualCommit() {
+    return manualCommit;
   }
 
-  @Override
-  public void close() {
-    state = STATE_CLOSED;
-    consumerExecutor.shutdown();
+  /**
+   * 分区未处理完成的消息是否超过了budget
+   *
+   * @param tp 分区
+   * @param paused 分区当前是否暂停，暂停的分区降到budget的一半以下才恢复
+   * @return 需要暂停返回true
+   */
+  boolean overBudget(TopicPartition tp, boolean paused) {
+    if (partitionBudget <= 0) {
+      return false;
+    }
+    PartitionOffsets partitionOffsets = offsets.get(tp);
+    if (partitionOffsets == null) {
+      return false;
+    }
+    int pending = partitionOffsets.pending();
+    return paused ? pending > partitionBudget / 2 : pending >= partitionBudget;
   }
 
-  @Override
-  public void pause() {
-    this.consumer.pause(partitionsAssigned);
-    super.pause();
+  PartitionOffsets offsets(TopicPartition tp) {
+    return offsets.get(tp);
   }
 
-  @Override
-  public void resume() {
-    this.consumer.resume(partitionsAssigned);
-    super.resume();
+  /**
+   * 删除分区的偏移量，分区被回收或者重新定位之后调用，之前拉取的消息完成时不再影响新的偏移量
+   *
+   * @param tp 分区
+   * @return 原来的偏移量
+   */
+  PartitionOffsets removeOffsets(TopicPartition tp) {
+    return offsets.remove(tp);
+  }
+
+  /**
+   * 入队失败的消息不会再complete，删除它们的偏移量记录
+   */
+  void forget(List<Message> messages) {
+    for (Message message : messages) {
+      positions.remove(message);
+    }
   }
 
   @Override
-  public void run() {
-    startKafkaConsumer();
+  protected void discard(Message message) {
+    completed(message);
   }
 
-  private void startKafkaConsumer() {
-    List<PartitionInfo> partitions;
-    for (String topic : options.getTopics()) {
-      while ((partitions = consumer.partitionsFor(topic)) == null) {
-        try {
-          LOGGER.warn("topic:{} not found ,wait {}s", topic, 5);
-          TimeUnit.SECONDS.sleep(5);
-        } catch (InterruptedException e) {
-          e.printStackTrace();
-        }
+  private void completed(Message message) {
+    Position position = positions.remove(message);
+    if (position != null) {
+      position.offsets.complete(position.offset);
+    }
+  }
+
+  /**
+   * 反序列化拉取到的消息，设置了decodeThreads时按分区并行处理，同一个分区的消息和拉取的顺序一致.
+   * <p>
+   * 并行反序列化失败或者被中断的分区放入failed，这些分区的消息都不会返回，调用方需要从水位线开始重新拉取.
+   *
+   * @param records 拉取到的消息
+   * @param failed 反序列化失败的分区
+   * @return 消息
+   */
+  List<Message> decode(ConsumerRecords<String, byte[]> records, Set<TopicPartition> failed) {
+    if (records.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Set<TopicPartition> partitions = records.partitions();
+    if (decodeExecutor == null || partitions.size() == 1) {
+      List<Message> messages = new ArrayList<>(records.count());
+      for (ConsumerRecord<String, byte[]> record : records) {
+        decode(record, messages);
       }
-      LOGGER.info("topic:{} available ,partitions:{}", topic, partitions);
+      return messages;
     }
-    if (options.getTopics().isEmpty()
-        && !Strings.isNullOrEmpty(options.getPattern())) {
-      LOGGER.info("subscribe with pattern:{}", options.getPattern());
-      consumer.subscribe(Pattern.compile(options.getPattern()), createListener());
-    } else {
-      for (String topic : options.getTopics()) {
-        LOGGER.info("subscribe:{}", topic);
+    Map<TopicPartition, List<Message>> decoded = new HashMap<>();
+    Map<TopicPartition, Future<?>> futures = new HashMap<>();
+    for (TopicPartition tp : partitions) {
+      List<ConsumerRecord<String, byte[]>> partitionRecords = records.records(tp);
+      List<Message> partitionMessages = new ArrayList<>(partitionRecords.size());
+      decoded.put(tp, partitionMessages);
+      futures.put(tp, decodeExecutor.submit(() -> {
+        for (ConsumerRecord<String, byte[]> record : partitionRecords) {
+          decode(record, partitionMessages);
+        }
+      }));
+    }
+    List<Message> messages = new ArrayList<>(records.count());
+    boolean interrupted = false;
+    for (TopicPartition tp : partitions) {
+      if (interrupted) {
+        futures.get(tp).cancel(true);
+        failed.add(tp);
+        continue;
+      }
+      try {
+        futures.get(tp).get();
+        messages.addAll(decoded.get(tp));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        interrupted = true;
+        futures.get(tp).cancel(true);
+        failed.add(tp);
+      } catch (ExecutionException e) {
+        LOGGER.error("decode kafka records failed, partition:{}", tp, e.getCause());
+        forget(decoded.get(tp));
+        failed.add(tp);
       }
-      consumer.subscribe(options.getTopics(), createListener());
     }
+    return messages;
+  }
 
+  private void decode(ConsumerRecord<String, byte[]> record, List<Message> messages) {
+    PartitionOffsets partitionOffsets = null;
+    if (trackOffsets) {
+      partitionOffsets = offsets.computeIfAbsent(
+          new TopicPartition(record.topic(), record.partition()), tp -> PartitionOffsets.create());
+      if (!partitionOffsets.track(record.offset())) {
+        partitionOffsets = null;
+      }
+    }
     try {
-      while (state != STATE_CLOSED) {
-        try {
-          long count = pollAndEnqueue();
-          // 手动提交，只要入队（DB）就认为消费了，消费失败或未正常消费的问题应该交由业务方处理
-          if (!enableAutoCommit && count > 0) {
-            commit();
-          }
-        } catch (Exception e) {
-          LOGGER.error("poll core from kafka occur error", e);
-        }
-
+      Message message = MessageSerDe.deserialize(record.topic(), record.value());
+      if (partitionOffsets != null) {
+        positions.put(message, new Position(partitionOffsets, record.offset()));
       }
+      MessageLogging.log(LOGGER, Stage.POLL, message.header().id(),
+          () -> LoggingMarker.getLoggingMarker(message, true, recordExtra(record)),
+          "poll from kafka");
+      messages.add(message);
     } catch (Exception e) {
-      LOGGER.error("consume from kafka occur error", e);
-    } finally {
-      consumer.close();
-      LOGGER.info("closing kafka consumer");
+      Marker messageMarker =
+          appendEntries(recordExtra(record));
+      LOGGER.warn(messageMarker, "poll from kafka, bus deserialize failed");
+      //无法反序列化的消息不会再处理，直接认为已经完成
+      if (partitionOffsets != null) {
+        partitionOffsets.complete(record.offset());
+      }
     }
   }
 
+  private Map<String, Object> recordExtra(ConsumerRecord<String, byte[]> record) {
+    Map<String, Object> extra = new HashMap<>();
+    extra.put("topic", record.topic());
+    extra.put("timestamp", record.timestamp());
+    extra.put("partition", record.partition());
+    extra.put("offset", record.offset());
+    return extra;
+  }
 
-  /**
-   * commit完成的消息
-   */
-  private synchronized void commit() {
-    //没有自动判断offset来提交
-    // 成功提交的分区要从offset清理掉
-    Map<TopicPartition, OffsetAndMetadata> needCommitOffsets = new HashMap<>();
-    for (TopicPartition topicPartition : pollOffsets.keySet()) {
-      long pollOffset = pollOffsets.get(topicPartition);
-      if (!commitedOffsets.containsKey(topicPartition)
-          || commitedOffsets.get(topicPartition) < pollOffset) {
-        needCommitOffsets.put(topicPartition, new OffsetAndMetadata(pollOffset));
-      }
+  @Override
+  public void start() {
+    for (KafkaPoller poller : pollers) {
+      this.consumerExecutor.submit(poller);
     }
+    this.consumerExecutor.submit(this::enqueueLoop);
+  }
 
-    consumer.commitAsync(needCommitOffsets,
-        (offsets, exception) -> {
-          for (TopicPartition topicPartition : offsets.keySet()) {
-            commitedOffsets.put(topicPartition, offsets.get(topicPartition).offset());
-            Map<String, Object> extra = new HashMap<>();
-            extra.put("topic", topicPartition.topic());
-            extra.put("partition", topicPartition.partition());
-            extra.put("offset", offsets.get(topicPartition).offset());
-            Marker messageMarker =
-                appendEntries(extra);
-            if (exception != null) {
-              LOGGER.warn(messageMarker, "commit failed", exception);
-            } else {
-              LOGGER.debug(messageMarker, "commit succeed");
-            }
-          }
-        });
+  @Override
+  public void close() {
+    closed = true;
+    for (KafkaPoller poller : pollers) {
+      poller.close();
+    }
+    consumerExecutor.shutdown();
+    if (decodeExecutor != null) {
+      decodeExecutor.shutdown();
+    }
   }
 
-  private ConsumerRebalanceListener createListener() {
-    return new ConsumerRebalanceListener() {
-      @Override
-      public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
-        for (TopicPartition tp : partitions) {
-          Map<String, Object> extra = new HashMap<>();
-          extra.put("topic", tp.topic());
-          extra.put("partition", tp.partition());
-          Marker messageMarker =
-              appendEntries(extra);
-          LOGGER.info(messageMarker, "partitionsRevoked");
-        }
-      }
+  private static class Batch {
 
-      @Override
-      public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
-        partitionsAssigned.clear();
-        Iterator<TopicPartition> topicPartitionIterator = partitions.iterator();
-        while (topicPartitionIterator.hasNext()) {
-          TopicPartition tp = topicPartitionIterator.next();
-          partitionsAssigned.add(new TopicPartition(tp.topic(), tp.partition()));
-          long position = consumer.position(tp);
-          OffsetAndMetadata lastCommitedOffsetAndMetadata = consumer.committed(tp);
-          Map<String, Object> extra = new HashMap<>();
-          extra.put("topic", tp.topic());
-          extra.put("partition", tp.partition());
-          extra.put("position", position);
-          extra.put("lastCommitedOffsetAndMetadata", lastCommitedOffsetAndMetadata);
-          Marker messageMarker =
-              appendEntries(extra);
-          LOGGER.info(messageMarker, "partitionsAssigned");
-          if (state == STATE_WAITING) {
-            setStartOffset(tp);
-          }
-        }
-        state = STATE_RUNNING;
-      }
-    };
+    private final KafkaPoller poller;
+
+    private final int epoch;
+
+    private final Set<TopicPartition> partitions;
+
+    private final List<Message> messages;
+
+    private Batch(KafkaPoller poller, int epoch, Set<TopicPartition> partitions,
+        List<Message> messages) {
+      this.poller = poller;
+      this.epoch = epoch;
+      this.partitions = partitions;
+      this.messages = messages;
+    }
   }
 
-  private void setStartOffset(TopicPartition tp) {
-    long startingOffset = options.getStartingOffset(tp);
-    Map<String, Object> extra = new HashMap<>();
-    extra.put("topic", tp.topic());
-    extra.put("partition", tp.partition());
-    if (startingOffset == -2) {
-      extra.put("offset", "default");
-    } else if (startingOffset == 0) {
-      extra.put("offset", "beginning");
-      consumer.seekToBeginning(Lists.newArrayList(tp));
-    } else if (startingOffset == -1) {
-      extra.put("offset", "end");
-      consumer.seekToEnd(Lists.newArrayList(tp));
-    } else {
-      extra.put("offset", startingOffset);
-      consumer.seek(tp, startingOffset);
+  private static class Position {
+
+    private final PartitionOffsets offsets;
+
+    private final long offset;
+
+    private Position(PartitionOffsets offsets, long offset) {
+      this.offsets = offsets;
+      this.offset = offset;
     }
-    Marker messageMarker =
-        appendEntries(extra);
-    LOGGER.info(messageMarker, "set kafka start offset");
   }
 }
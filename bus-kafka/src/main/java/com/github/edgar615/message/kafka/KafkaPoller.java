@@ -0,0 +1,379 @@
+package com.github.edgar615.message.kafka;
+
+import static net.logstash.logback.marker.Markers.appendEntries;
+
+import com.github.edgar615.message.core.Message;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+
+/**
+ * 一个KafkaConsumer和它的拉取线程.
+ * <p>
+ * KafkaConsumer不是线程安全的，所有对consumer的操作（包括暂停、恢复和提交）都在拉取线程中执行，
+ * 读取流的暂停状态和超过budget的分区在每次拉取前同步到consumer.
+ * <p>
+ * 读取流线程入队失败时通过{@link #rewind(Collection, List)}要求重新拉取，拉取线程在下一次拉取前从水位线重新定位这些分区，
+ * 同时epoch加1，重新定位之前拉取、还没有入队的消息都会被读取流丢弃并重新拉取.
+ * <p>
+ * 手动提交时每隔commitIntervalMs异步提交一次各个分区的水位线，分区被回收和关闭consumer时同步提交.
+ *
+ * @author Edgar
+ */
+class KafkaPoller implements Runnable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(KafkaMessageReadStream.class);
+
+  private static final int STATE_WAITING = 0;
+  private static final int STATE_RUNNING = 1;
+  private static final int STATE_CLOSED = 2;
+
+  private final KafkaMessageReadStream stream;
+
+  private final KafkaReadOptions options;
+
+  private final KafkaConsumer<String, byte[]> consumer;
+
+  private final boolean manualCommit;
+
+  private final long commitIntervalMs;
+
+  private long lastCommitTime = System.currentTimeMillis();
+
+  /**
+   * 状态：0启动中 1-运行中 2-关闭
+   */
+  private volatile int state = STATE_WAITING;
+
+  /**
+   * consumer当前暂停的分区，只在拉取线程中访问
+   */
+  private final Set<TopicPartition> pausedPartitions = new HashSet<>();
+
+  /**
+   * 需要从水位线重新拉取的分区
+   */
+  private final Set<TopicPartition> rewinds = ConcurrentHashMap.newKeySet();
+
+  private final AtomicInteger epoch = new AtomicInteger();
+
+  KafkaPoller(KafkaMessageReadStream stream, KafkaReadOptions options) {
+    this.stream = stream;
+    this.options = options;
+    this.consumer = new KafkaConsumer<>(options.getConfigs());
+    this.manualCommit = stream.manualCommit();
+    this.commitIntervalMs = options.getCommitIntervalMs();
+  }
+
+  void close() {
+    state = STATE_CLOSED;
+  }
+
+  int epoch() {
+    return epoch.get();
+  }
+
+  /**
+   * 入队失败或者消息被丢弃时由读取流线程调用，下一次拉取前从水位线开始重新拉取这些分区，已经处理完成的消息可能会重复消费
+   *
+   * @param partitions 分区
+   * @param messages 不会入队的消息
+   */
+  void rewind(Collection<TopicPartition> partitions, List<Message> messages) {
+    stream.forget(messages);
+    //先记录分区再增加epoch，拉取线程读到新的epoch时一定能看到这些分区
+    rewinds.addAll(partitions);
+    epoch.incrementAndGet();
+  }
+
+  @Override
+  public void run() {
+    List<PartitionInfo> partitions;
+    for (String topic : options.getTopics()) {
+      while ((partitions = consumer.partitionsFor(topic)) == null) {
+        try {
+          LOGGER.warn("topic:{} not found ,wait {}s", topic, 5);
+          TimeUnit.SECONDS.sleep(5);
+        } catch (InterruptedException e) {
+          LOGGER.warn("wait for topic:{} interrupted", topic);
+          Thread.currentThread().interrupt();
+          consumer.close();
+          return;
+        }
+      }
+      LOGGER.info("topic:{} available ,partitions:{}", topic, partitions);
+    }
+    if (options.getTopics().isEmpty()
+        && !Strings.isNullOrEmpty(options.getPattern())) {
+      LOGGER.info("subscribe with pattern:{}", options.getPattern());
+      consumer.subscribe(Pattern.compile(options.getPattern()), createListener());
+    } else {
+      for (String topic : options.getTopics()) {
+        LOGGER.info("subscribe:{}", topic);
+      }
+      consumer.subscribe(options.getTopics(), createListener());
+    }
+
+    try {
+      while (state != STATE_CLOSED) {
+        try {
+          //先读取epoch再重新定位，重新定位之后才要求的分区会让这次拉取的消息被丢弃
+          int current = epoch.get();
+          seek(drainRewinds());
+          syncPause();
+          ConsumerRecords<String, byte[]> records = consumer.poll(100);
+          Set<TopicPartition> failed = new HashSet<>();
+          List<Message> messages = stream.decode(records, failed);
+          if (!failed.isEmpty()) {
+            seek(failed);
+          }
+          if (!messages.isEmpty()) {
+            Set<TopicPartition> polled = new HashSet<>(records.partitions());
+            polled.removeAll(failed);
+            stream.handOff(this, current, polled, messages);
+          }
+          // 手动提交，只提交已经处理完成的偏移量
+          if (manualCommit && System.currentTimeMillis() - lastCommitTime >= commitIntervalMs) {
+            commitAsync();
+          }
+        } catch (Exception e) {
+          LOGGER.error("poll core from kafka occur error", e);
+        }
+
+      }
+    } catch (Exception e) {
+      LOGGER.error("consume from kafka occur error", e);
+    } finally {
+      if (manualCommit) {
+        commitSync(consumer.assignment());
+      }
+      consumer.close();
+      LOGGER.info("closing kafka consumer");
+    }
+  }
+
+  /**
+   * 读取流暂停时暂停所有分区，否则只暂停超过budget的分区
+   */
+  private void syncPause() {
+    boolean paused = stream.paused();
+    List<TopicPartition> pause = new ArrayList<>();
+    List<TopicPartition> resume = new ArrayList<>();
+    for (TopicPartition tp : consumer.assignment()) {
+      boolean partitionPaused = pausedPartitions.contains(tp);
+      boolean shouldPause = paused || stream.overBudget(tp, partitionPaused);
+      if (shouldPause && !partitionPaused) {
+        pause.add(tp);
+      } else if (!shouldPause && partitionPaused) {
+        resume.add(tp);
+      }
+    }
+    if (!pause.isEmpty()) {
+      consumer.pause(pause);
+      pausedPartitions.addAll(pause);
+    }
+    if (!resume.isEmpty()) {
+      consumer.resume(resume);
+      pausedPartitions.removeAll(resume);
+    }
+  }
+
+  /**
+   * 收集分区中需要提交的水位线
+   */
+  private Map<TopicPartition, OffsetAndMetadata> watermarks(Collection<TopicPartition> partitions,
+      Map<TopicPartition, PartitionOffsets> trackers) {
+    Map<TopicPartition, OffsetAndMetadata> needCommitOffsets = new HashMap<>();
+    for (TopicPartition tp : partitions) {
+      PartitionOffsets partitionOffsets = stream.offsets(tp);
+      if (partitionOffsets == null) {
+        continue;
+      }
+      long watermark = partitionOffsets.watermark();
+      if (watermark > partitionOffsets.committed()) {
+        needCommitOffsets.put(tp, new OffsetAndMetadata(watermark));
+        trackers.put(tp, partitionOffsets);
+      }
+    }
+    return needCommitOffsets;
+  }
+
+  /**
+   * 异步提交处理完成的偏移量
+   */
+  private void commitAsync() {
+    lastCommitTime = System.currentTimeMillis();
+    Map<TopicPartition, PartitionOffsets> trackers = new HashMap<>();
+    Map<TopicPartition, OffsetAndMetadata> needCommitOffsets =
+        watermarks(consumer.assignment(), trackers);
+    if (needCommitOffsets.isEmpty()) {
+      return;
+    }
+    // 回调在下一次poll时由拉取线程执行
+    consumer.commitAsync(needCommitOffsets,
+        (offsets, exception) -> {
+          for (TopicPartition topicPartition : offsets.keySet()) {
+            long offset = offsets.get(topicPartition).offset();
+            if (exception == null) {
+              trackers.get(topicPartition).committed(offset);
+            }
+            logCommit(topicPartition, offset, exception);
+          }
+        });
+  }
+
+  /**
+   * 同步提交处理完成的偏移量，用于分区回收和关闭
+   */
+  private void commitSync(Collection<TopicPartition> partitions) {
+    Map<TopicPartition, PartitionOffsets> trackers = new HashMap<>();
+    Map<TopicPartition, OffsetAndMetadata> needCommitOffsets = watermarks(partitions, trackers);
+    if (needCommitOffsets.isEmpty()) {
+      return;
+    }
+    Exception exception = null;
+    try {
+      consumer.commitSync(needCommitOffsets);
+    } catch (Exception e) {
+      exception = e;
+    }
+    for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : needCommitOffsets.entrySet()) {
+      if (exception == null) {
+        trackers.get(entry.getKey()).committed(entry.getValue().offset());
+      }
+      logCommit(entry.getKey(), entry.getValue().offset(), exception);
+    }
+  }
+
+  private void logCommit(TopicPartition topicPartition, long offset, Exception exception) {
+    Map<String, Object> extra = new HashMap<>();
+    extra.put("topic", topicPartition.topic());
+    extra.put("partition", topicPartition.partition());
+    extra.put("offset", offset);
+    Marker messageMarker =
+        appendEntries(extra);
+    if (exception != null) {
+      LOGGER.warn(messageMarker, "commit failed", exception);
+    } else {
+      LOGGER.debug(messageMarker, "commit succeed");
+    }
+  }
+
+  private List<TopicPartition> drainRewinds() {
+    List<TopicPartition> partitions = new ArrayList<>(rewinds);
+    rewinds.removeAll(partitions);
+    return partitions;
+  }
+
+  /**
+   * 从水位线开始重新拉取这些分区，已经回收的分区由新的consumer从提交的偏移量开始拉取
+   */
+  private void seek(Collection<TopicPartition> partitions) {
+    if (partitions.isEmpty()) {
+      return;
+    }
+    Set<TopicPartition> assignment = consumer.assignment();
+    for (TopicPartition tp : partitions) {
+      PartitionOffsets partitionOffsets = stream.removeOffsets(tp);
+      if (partitionOffsets == null || !assignment.contains(tp)) {
+        continue;
+      }
+      long watermark = partitionOffsets.watermark();
+      if (watermark >= 0) {
+        consumer.seek(tp, watermark);
+      }
+    }
+  }
+
+  private ConsumerRebalanceListener createListener() {
+    return new ConsumerRebalanceListener() {
+      @Override
+      public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        for (TopicPartition tp : partitions) {
+          Map<String, Object> extra = new HashMap<>();
+          extra.put("topic", tp.topic());
+          extra.put("partition", tp.partition());
+          Marker messageMarker =
+              appendEntries(extra);
+          LOGGER.info(messageMarker, "partitionsRevoked");
+        }
+        // 分区分配给其他consumer之前提交已经处理完成的偏移量，还在处理中的消息可能会被重复消费
+        if (manualCommit) {
+          commitSync(partitions);
+        }
+        for (TopicPartition tp : partitions) {
+          stream.removeOffsets(tp);
+        }
+        pausedPartitions.removeAll(partitions);
+      }
+
+      @Override
+      public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        for (TopicPartition tp : partitions) {
+          long position = consumer.position(tp);
+          OffsetAndMetadata lastCommitedOffsetAndMetadata = consumer.committed(tp);
+          Map<String, Object> extra = new HashMap<>();
+          extra.put("topic", tp.topic());
+          extra.put("partition", tp.partition());
+          extra.put("position", position);
+          extra.put("lastCommitedOffsetAndMetadata", lastCommitedOffsetAndMetadata);
+          Marker messageMarker =
+              appendEntries(extra);
+          LOGGER.info(messageMarker, "partitionsAssigned");
+          if (state == STATE_WAITING) {
+            setStartOffset(tp);
+          }
+        }
+        // 新分配的分区也要保持暂停状态
+        if (stream.paused()) {
+          consumer.pause(new ArrayList<>(partitions));
+          pausedPartitions.addAll(partitions);
+        }
+        if (state == STATE_WAITING) {
+          state = STATE_RUNNING;
+        }
+      }
+    };
+  }
+
+  private void setStartOffset(TopicPartition tp) {
+    long startingOffset = options.getStartingOffset(tp);
+    Map<String, Object> extra = new HashMap<>();
+    extra.put("topic", tp.topic());
+    extra.put("partition", tp.partition());
+    if (startingOffset == -2) {
+      extra.put("offset", "default");
+    } else if (startingOffset == 0) {
+      extra.put("offset", "beginning");
+      consumer.seekToBeginning(Lists.newArrayList(tp));
+    } else if (startingOffset == -1) {
+      extra.put("offset", "end");
+      consumer.seekToEnd(Lists.newArrayList(tp));
+    } else {
+      extra.put("offset", startingOffset);
+      consumer.seek(tp, startingOffset);
+    }
+    Marker messageMarker =
+        appendEntries(extra);
+    LOGGER.info(messageMarker, "set kafka start offset");
+  }
+}
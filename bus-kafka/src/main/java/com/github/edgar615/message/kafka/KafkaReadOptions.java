@@ -10,6 +10,7 @@ import java.util.Objects;
 import java.util.Set;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 
 /**
@@ -19,6 +20,8 @@ import org.apache.kafka.common.serialization.StringDeserializer;
  */
 public class KafkaReadOptions {
 
+  public static final long DEFAULT_COMMIT_INTERVAL_MS = 1000L;
+
   /**
    * 订阅的主题
    */
@@ -33,11 +36,31 @@ public class KafkaReadOptions {
 
   private final Map<String, Object> configs = new HashMap<>();
 
+  /**
+   * KafkaConsumer的数量，每个KafkaConsumer使用一个线程拉取消息，同一个消费组内由kafka分配各自的分区
+   */
+  private int pollerCount = 1;
+
+  /**
+   * 反序列化消息的线程数，默认0，即在拉取消息的线程中反序列化
+   */
+  private int decodeThreads = 0;
+
+  /**
+   * 手动提交时提交偏移量的间隔，单位毫秒
+   */
+  private long commitIntervalMs = DEFAULT_COMMIT_INTERVAL_MS;
+
+  /**
+   * 每个分区最多未处理完成的消息数量，默认0，即队列满时暂停所有分区
+   */
+  private int partitionBudget = 0;
+
   public KafkaReadOptions(Map<String, Object> configs) {
     Objects.requireNonNull(configs);
     this.configs.putAll(configs);
     this.configs.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-    this.configs.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+    this.configs.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
   }
 
   public Long getStartingOffset(TopicPartition tp) {
@@ -93,4 +116,79 @@ public class KafkaReadOptions {
   public Map<String, Object> getConfigs() {
     return configs;
   }
+
+  public int getPollerCount() {
+    return pollerCount;
+  }
+
+  /**
+   * 设置KafkaConsumer的数量.
+   * <p>
+   * 每个KafkaConsumer有自己的拉取线程，属于同一个消费组，由kafka为它们分配不同的分区，超过分区数的KafkaConsumer不会收到消息.
+   *
+   * @param pollerCount KafkaConsumer的数量
+   * @return KafkaReadOptions
+   */
+  public KafkaReadOptions setPollerCount(int pollerCount) {
+    if (pollerCount > 0) {
+      this.pollerCount = pollerCount;
+    }
+    return this;
+  }
+
+  public int getDecodeThreads() {
+    return decodeThreads;
+  }
+
+  /**
+   * 设置反序列化消息的线程数，大于0时一次拉取的消息按分区并行反序列化，同一个分区的消息仍然保持顺序.
+   *
+   * @param decodeThreads 线程数
+   * @return KafkaReadOptions
+   */
+  public KafkaReadOptions setDecodeThreads(int decodeThreads) {
+    if (decodeThreads >= 0) {
+      this.decodeThreads = decodeThreads;
+    }
+    return this;
+  }
+
+  public long getCommitIntervalMs() {
+    return commitIntervalMs;
+  }
+
+  /**
+   * 设置手动提交（enable.auto.commit=false）时提交偏移量的间隔.
+   * <p>
+   * 每个分区只提交已经处理完成的连续偏移量，一个间隔内的多次完成合并成一次提交.
+   *
+   * @param commitIntervalMs 间隔，单位毫秒
+   * @return KafkaReadOptions
+   */
+  public KafkaReadOptions setCommitIntervalMs(long commitIntervalMs) {
+    if (commitIntervalMs > 0) {
+      this.commitIntervalMs = commitIntervalMs;
+    }
+    return this;
+  }
+
+  public int getPartitionBudget() {
+    return partitionBudget;
+  }
+
+  /**
+   * 设置每个分区最多未处理完成的消息数量.
+   * <p>
+   * 大于0时单独统计每个分区已经拉取但是还没有处理完成的消息，超过budget的分区暂停拉取，降到一半以下再恢复，其他分区不受影响.
+   * 队列满时仍然会暂停所有分区，budget * 分区数最好不要超过队列的长度.
+   *
+   * @param partitionBudget 每个分区的消息数量
+   * @return KafkaReadOptions
+   */
+  public KafkaReadOptions setPartitionBudget(int partitionBudget) {
+    if (partitionBudget >= 0) {
+      this.partitionBudget = partitionBudget;
+    }
+    return this;
+  }
 }
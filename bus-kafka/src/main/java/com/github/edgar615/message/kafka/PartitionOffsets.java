@@ -0,0 +1,162 @@
+package com.github.edgar615.message.kafka;
+
+/**
+ * 一个分区已经拉取、还没有处理完成的偏移量.
+ * <p>
+ * 使用位图环形数组记录，每个位表示一个偏移量，置位表示已经拉取但是还没有处理完成，没有拉取过的偏移量（例如压缩或事务标记占用的偏移量）视为已经完成.
+ * 水位线是最小的未完成偏移量，没有未完成的消息时是最后拉取的偏移量+1，水位线之前的消息都已经处理完成，可以安全的提交.
+ * <p>
+ * 未完成的消息数量用于按分区暂停拉取.
+ * <p>
+ * 拉取线程调用track，工作线程调用complete，提交时调用watermark，所有方法都是同步的.
+ * track在位图放不下时先跳过已经全部完成的字，不依赖watermark的调用（例如开启了自动提交）也不会无限增长.
+ *
+ * @author Edgar
+ */
+class PartitionOffsets {
+
+  private static final int INITIAL_WORDS = 16;
+
+  /**
+   * 位图，words[head]的第0位对应偏移量base
+   */
+  private long[] words = new long[INITIAL_WORDS];
+
+  private int head = 0;
+
+  /**
+   * 位图起始的偏移量，是64的倍数
+   */
+  private long base = -1;
+
+  /**
+   * 最后拉取的偏移量+1
+   */
+  private long next = -1;
+
+  /**
+   * 未完成的消息数量
+   */
+  private int pending = 0;
+
+  /**
+   * 最后提交的偏移量
+   */
+  private long committed = -1;
+
+  static PartitionOffsets create() {
+    return new PartitionOffsets();
+  }
+
+  private PartitionOffsets() {
+  }
+
+  /**
+   * 记录拉取到的偏移量，同一个分区的偏移量必须递增
+   *
+   * @param offset 偏移量
+   * @return 小于已经拉取的偏移量时不会记录，返回false
+   */
+  synchronized boolean track(long offset) {
+    if (next < 0) {
+      base = offset & ~63L;
+    } else if (offset < next) {
+      return false;
+    }
+    long index = (offset - base) >>> 6;
+    if (index >= words.length) {
+      advance();
+      if (pending == 0) {
+        // 没有未完成的消息，位图全部为0，直接从新的偏移量开始
+        base = offset & ~63L;
+      }
+      index = (offset - base) >>> 6;
+      if (index >= words.length) {
+        grow(index + 1);
+      }
+    }
+    int word = (head + (int) index) & (words.length - 1);
+    words[word] |= 1L << (offset & 63);
+    pending++;
+    next = offset + 1;
+    return true;
+  }
+
+  /**
+   * 偏移量对应的消息处理完成
+   *
+   * @param offset 偏移量
+   */
+  synchronized void complete(long offset) {
+    if (offset < base || offset >= next) {
+      return;
+    }
+    int word = (head + (int) ((offset - base) >>> 6)) & (words.length - 1);
+    long bit = 1L << (offset & 63);
+    if ((words[word] & bit) != 0) {
+      words[word] &= ~bit;
+      pending--;
+    }
+  }
+
+  /**
+   * 可以提交的偏移量，即最小的未完成偏移量
+   *
+   * @return 没有拉取过消息时返回-1
+   */
+  synchronized long watermark() {
+    if (next < 0) {
+      return -1;
+    }
+    advance();
+    if (words[head] == 0) {
+      return next;
+    }
+    return base + Long.numberOfTrailingZeros(words[head]);
+  }
+
+  /**
+   * 未完成的消息数量
+   */
+  synchronized int pending() {
+    return pending;
+  }
+
+  synchronized long committed() {
+    return committed;
+  }
+
+  synchronized void committed(long offset) {
+    committed = Math.max(committed, offset);
+  }
+
+  /**
+   * 位图的字数
+   */
+  synchronized int capacity() {
+    return words.length;
+  }
+
+  /**
+   * 跳过已经全部完成的字
+   */
+  private void advance() {
+    while (words[head] == 0 && base + 64 <= next) {
+      head = (head + 1) & (words.length - 1);
+      base += 64;
+    }
+  }
+
+  private void grow(long minWords) {
+    int capacity = words.length;
+    while (capacity < minWords) {
+      capacity <<= 1;
+    }
+    long[] grown = new long[capacity];
+    for (int i = 0; i < words.length; i++) {
+      grown[i] = words[(head + i) & (words.length - 1)];
+    }
+    words = grown;
+    head = 0;
+  }
+}
@@ -0,0 +1,94 @@
+package com.github.edgar615.message.kafka;
+
+import com.github.edgar615.message.core.Event;
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.utils.DefaultMessageQueue;
+import com.github.edgar615.message.utils.MessageSerDe;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KafkaMessageReadStreamTest {
+
+  private KafkaReadOptions options;
+
+  private KafkaMessageReadStream stream;
+
+  @Before
+  public void setUp() {
+    //只创建KafkaConsumer，不会连接kafka
+    Map<String, Object> configs = new HashMap<>();
+    configs.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+    configs.put(ConsumerConfig.GROUP_ID_CONFIG, "KafkaMessageReadStreamTest");
+    configs.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+    options = new KafkaReadOptions(configs).setDecodeThreads(4);
+    stream = new KafkaMessageReadStream(DefaultMessageQueue.create(1000), null, options);
+  }
+
+  @After
+  public void tearDown() {
+    stream.close();
+  }
+
+  @Test
+  public void testParallelDecodeOrderByPartition() {
+    Map<TopicPartition, List<ConsumerRecord<String, byte[]>>> records = new HashMap<>();
+    for (int partition = 0; partition < 4; partition++) {
+      List<ConsumerRecord<String, byte[]>> partitionRecords = new ArrayList<>();
+      for (long offset = 0; offset < 500; offset++) {
+        Message message = Message.create("test",
+            Event.create("test", ImmutableMap.of("partition", partition, "offset", offset)));
+        partitionRecords.add(new ConsumerRecord<>("test", partition, offset, null,
+            MessageSerDe.serializeToBytes(message)));
+      }
+      records.put(new TopicPartition("test", partition), partitionRecords);
+    }
+    Set<TopicPartition> failed = new HashSet<>();
+    List<Message> messages = stream.decode(new ConsumerRecords<>(records), failed);
+    Assert.assertTrue(failed.isEmpty());
+    Assert.assertEquals(2000, messages.size());
+
+    Map<Integer, Long> next = new HashMap<>();
+    for (Message message : messages) {
+      Event event = (Event) message.body();
+      int partition = ((Number) event.content().get("partition")).intValue();
+      long offset = ((Number) event.content().get("offset")).longValue();
+      Assert.assertEquals(next.getOrDefault(partition, 0L).longValue(), offset);
+      next.put(partition, offset + 1);
+    }
+    for (int partition = 0; partition < 4; partition++) {
+      Assert.assertEquals(500, stream.offsets(new TopicPartition("test", partition)).pending());
+    }
+  }
+
+  @Test
+  public void testPollHandOff() {
+    KafkaPoller poller = new KafkaPoller(stream, options);
+    Set<TopicPartition> partitions = Collections.singleton(new TopicPartition("test", 0));
+    Message message = Message.create("test", Event.create("test", ImmutableMap.of()));
+    stream.handOff(poller, poller.epoch(), partitions, Collections.singletonList(message));
+    List<Message> messages = stream.poll();
+    Assert.assertEquals(1, messages.size());
+    Assert.assertSame(message, messages.get(0));
+
+    //重新拉取之前交出的消息会被丢弃
+    int epoch = poller.epoch();
+    poller.rewind(partitions, Collections.emptyList());
+    stream.handOff(poller, epoch, partitions, Collections.singletonList(message));
+    Assert.assertTrue(stream.poll().isEmpty());
+    Assert.assertTrue(stream.poll().isEmpty());
+  }
+}
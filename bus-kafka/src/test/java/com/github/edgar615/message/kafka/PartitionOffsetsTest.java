@@ -0,0 +1,110 @@
+package com.github.edgar615.message.kafka;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PartitionOffsetsTest {
+
+  @Test
+  public void testEmpty() {
+    PartitionOffsets offsets = PartitionOffsets.create();
+    Assert.assertEquals(-1, offsets.watermark());
+  }
+
+  @Test
+  public void testOutOfOrderComplete() {
+    PartitionOffsets offsets = PartitionOffsets.create();
+    for (long i = 10; i < 15; i++) {
+      offsets.track(i);
+    }
+    Assert.assertEquals(10, offsets.watermark());
+    offsets.complete(12);
+    offsets.complete(11);
+    Assert.assertEquals(10, offsets.watermark());
+    offsets.complete(10);
+    Assert.assertEquals(13, offsets.watermark());
+    offsets.complete(14);
+    offsets.complete(13);
+    Assert.assertEquals(15, offsets.watermark());
+    Assert.assertEquals(0, offsets.pending());
+  }
+
+  @Test
+  public void testGap() {
+    PartitionOffsets offsets = PartitionOffsets.create();
+    offsets.track(5);
+    offsets.track(100);
+    offsets.complete(5);
+    Assert.assertEquals(100, offsets.watermark());
+    offsets.complete(100);
+    Assert.assertEquals(101, offsets.watermark());
+    Assert.assertFalse(offsets.track(50));
+  }
+
+  @Test
+  public void testGrowAndWrap() {
+    PartitionOffsets offsets = PartitionOffsets.create();
+    long offset = 0;
+    long completed = 0;
+    // 每次拉取5000条，完成前面的4000条，位图需要扩容并且循环使用
+    for (int round = 0; round < 20; round++) {
+      for (int i = 0; i < 5000; i++) {
+        offsets.track(offset++);
+      }
+      for (int i = 0; i < 4000; i++) {
+        offsets.complete(completed++);
+      }
+      Assert.assertEquals(completed, offsets.watermark());
+    }
+    Assert.assertEquals(offset - completed, offsets.pending());
+    while (completed < offset) {
+      offsets.complete(completed++);
+    }
+    Assert.assertEquals(offset, offsets.watermark());
+  }
+
+  @Test
+  public void testBoundedWithoutWatermark() {
+    PartitionOffsets offsets = PartitionOffsets.create();
+    // 开启自动提交时不会调用watermark，同时最多有1000条消息未完成
+    for (long offset = 0; offset < 5_000_000; offset++) {
+      offsets.track(offset);
+      if (offset >= 1000) {
+        offsets.complete(offset - 1000);
+      }
+    }
+    Assert.assertTrue(offsets.capacity() <= 32);
+    Assert.assertEquals(1000, offsets.pending());
+    Assert.assertEquals(5_000_000 - 1000, offsets.watermark());
+  }
+
+  @Test
+  public void testGapWithoutPending() {
+    PartitionOffsets offsets = PartitionOffsets.create();
+    offsets.track(5);
+    offsets.complete(5);
+    offsets.track(100_000_000L);
+    Assert.assertTrue(offsets.capacity() <= 16);
+    Assert.assertEquals(100_000_000L, offsets.watermark());
+  }
+
+  @Test
+  public void testPending() {
+    PartitionOffsets offsets = PartitionOffsets.create();
+    offsets.track(1);
+    offsets.track(2);
+    Assert.assertEquals(2, offsets.pending());
+    offsets.complete(2);
+    offsets.complete(2);
+    offsets.complete(3);
+    Assert.assertEquals(1, offsets.pending());
+  }
+
+  @Test
+  public void testCommitted() {
+    PartitionOffsets offsets = PartitionOffsets.create();
+    offsets.committed(10);
+    offsets.committed(5);
+    Assert.assertEquals(10, offsets.committed());
+  }
+}
@@ -0,0 +1,182 @@
+package com.github.edgar615.message.memory;
+
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.utils.MessageSerDe;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JVM内的消息日志，按主题和分区保存消息，用于在同一个进程中运行服务、没有MQ时压测以及单独测量框架本身的开销.
+ * <p>
+ * 每个主题有固定数量的分区，每个分区是一个有界的环形日志，写满后删除最早的消息。
+ * 消息按{@link MemoryBrokerOptions#getPartitionKeyExtractor()}计算的key写入分区，同一个key的消息保持写入的顺序.
+ * <p>
+ * 消费者通过{@link #subscribe(MemoryReadOptions)}加入消费组，同一个消费组的消费者分摊分区，每个消费组各自保存偏移量.
+ * 主题在第一次写入或订阅时创建.
+ *
+ * @author Edgar
+ */
+public class MemoryBroker {
+
+  private final MemoryBrokerOptions options;
+
+  private final ConcurrentMap<String, MemoryTopic> topics = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, MemoryGroup> groups = new ConcurrentHashMap<>();
+
+  private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * 每次写入加1，等待消息的消费者用它判断是否有新消息
+   */
+  private final AtomicLong version = new AtomicLong();
+
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  private final Object lock = new Object();
+
+  private MemoryBroker(MemoryBrokerOptions options) {
+    this.options = options;
+  }
+
+  public static MemoryBroker create() {
+    return new MemoryBroker(new MemoryBrokerOptions());
+  }
+
+  public static MemoryBroker create(MemoryBrokerOptions options) {
+    Objects.requireNonNull(options);
+    return new MemoryBroker(options);
+  }
+
+  /**
+   * 把消息写入消息头中to对应的主题
+   *
+   * @param message 消息
+   * @return 消息在分区中的偏移量
+   */
+  public long append(Message message) {
+    MemoryTopic topic = topic(message.header().to());
+    String key = options.getPartitionKeyExtractor().apply(message);
+    int partition = key == null ? 0 : Math.floorMod(key.hashCode(), topic.partitionCount());
+    Message stored = message;
+    if (options.isCopy()) {
+      stored = MessageSerDe.deserialize(topic.name(), MessageSerDe.serializeToBytes(message));
+    }
+    long offset = topic.partition(partition).append(stored);
+    version.incrementAndGet();
+    //先增加version再检查等待者，和await中先登记再检查version配对，避免丢失唤醒
+    if (waiters.get() > 0) {
+      synchronized (lock) {
+        lock.notifyAll();
+      }
+    }
+    for (Runnable listener : listeners) {
+      listener.run();
+    }
+    return offset;
+  }
+
+  /**
+   * 加入消费组并订阅主题
+   *
+   * @param options 消费者的属性
+   * @return MemorySubscription
+   */
+  public MemorySubscription subscribe(MemoryReadOptions options) {
+    MemoryGroup group = groups.computeIfAbsent(options.getGroup(),
+        name -> new MemoryGroup(name, this));
+    MemorySubscription subscription = new MemorySubscription(this, group, options.getConsumer(),
+        options.getTopics());
+    group.join(subscription, options.isFromBeginning());
+    return subscription;
+  }
+
+  /**
+   * 添加写入消息的监听器，在写入消息的线程中执行，不要在监听器中做耗时的操作
+   *
+   * @param listener 监听器
+   */
+  public void addListener(Runnable listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Runnable listener) {
+    listeners.remove(listener);
+  }
+
+  public int partitions(String topic) {
+    return topic(topic).partitionCount();
+  }
+
+  /**
+   * 分区中最早保留的偏移量
+   */
+  public long startOffset(String topic, int partition) {
+    return topic(topic).partition(partition).startOffset();
+  }
+
+  /**
+   * 分区中下一条消息的偏移量
+   */
+  public long endOffset(String topic, int partition) {
+    return topic(topic).partition(partition).endOffset();
+  }
+
+  /**
+   * 消费组下一次拉取的偏移量
+   *
+   * @return 消费组没有订阅这个主题时返回-1
+   */
+  public long committed(String group, String topic, int partition) {
+    MemoryGroup memoryGroup = groups.get(group);
+    if (memoryGroup == null) {
+      return -1;
+    }
+    return memoryGroup.committed(topic, partition);
+  }
+
+  MemoryTopic topic(String name) {
+    MemoryTopic topic = topics.get(name);
+    if (topic == null) {
+      topic = topics.computeIfAbsent(name, k -> new MemoryTopic(k, options.getPartitions(),
+          options.getPartitionCapacity()));
+    }
+    return topic;
+  }
+
+  long version() {
+    return version.get();
+  }
+
+  /**
+   * 等待新消息写入
+   *
+   * @param seen 调用者读取消息之前的version
+   * @param timeoutMs 最多等待的时间
+   * @return 线程被中断时返回false
+   */
+  boolean await(long seen, long timeoutMs) {
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    synchronized (lock) {
+      waiters.incrementAndGet();
+      try {
+        long remaining = timeoutMs;
+        while (version.get() == seen && remaining > 0) {
+          lock.wait(remaining);
+          remaining = deadline - System.currentTimeMillis();
+        }
+        return true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      } finally {
+        waiters.decrementAndGet();
+      }
+    }
+  }
+}
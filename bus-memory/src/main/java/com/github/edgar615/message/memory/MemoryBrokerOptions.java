@@ -0,0 +1,79 @@
+package com.github.edgar615.message.memory;
+
+import com.github.edgar615.message.core.Message;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 内存消息日志的属性.
+ *
+ * @author Edgar
+ */
+public class MemoryBrokerOptions {
+
+  public static final int DEFAULT_PARTITIONS = 4;
+
+  public static final int DEFAULT_PARTITION_CAPACITY = 10000;
+
+  /**
+   * 每个主题的分区数量
+   */
+  private int partitions = DEFAULT_PARTITIONS;
+
+  /**
+   * 每个分区最多保留的消息数量，超过后删除最早的消息
+   */
+  private int partitionCapacity = DEFAULT_PARTITION_CAPACITY;
+
+  /**
+   * 写入时是否复制消息，复制时先序列化再反序列化，生产者和消费者不共享Message对象，同时计入序列化的开销
+   */
+  private boolean copy = false;
+
+  /**
+   * 计算分区的key，key相同的消息写入同一个分区，默认使用消息ID
+   */
+  private Function<Message, String> partitionKeyExtractor = message -> message.header().id();
+
+  public int getPartitions() {
+    return partitions;
+  }
+
+  public MemoryBrokerOptions setPartitions(int partitions) {
+    if (partitions > 0) {
+      this.partitions = partitions;
+    }
+    return this;
+  }
+
+  public int getPartitionCapacity() {
+    return partitionCapacity;
+  }
+
+  public MemoryBrokerOptions setPartitionCapacity(int partitionCapacity) {
+    if (partitionCapacity > 0) {
+      this.partitionCapacity = partitionCapacity;
+    }
+    return this;
+  }
+
+  public boolean isCopy() {
+    return copy;
+  }
+
+  public MemoryBrokerOptions setCopy(boolean copy) {
+    this.copy = copy;
+    return this;
+  }
+
+  public Function<Message, String> getPartitionKeyExtractor() {
+    return partitionKeyExtractor;
+  }
+
+  public MemoryBrokerOptions setPartitionKeyExtractor(
+      Function<Message, String> partitionKeyExtractor) {
+    Objects.requireNonNull(partitionKeyExtractor);
+    this.partitionKeyExtractor = partitionKeyExtractor;
+    return this;
+  }
+}
@@ -0,0 +1,146 @@
+package com.github.edgar615.message.memory;
+
+import com.github.edgar615.message.core.Message;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 消费组，保存每个分区下一次拉取的偏移量，并把分区分配给组内的消费者.
+ * <p>
+ * 每个主题的分区按加入的顺序轮流分配给订阅了这个主题的消费者，消费者加入或离开时重新分配.
+ * 偏移量在拉取时通过CAS推进，重新分配的过程中两个消费者同时拉取同一个分区也不会重复投递.
+ *
+ * @author Edgar
+ */
+class MemoryGroup {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MemoryGroup.class);
+
+  private final String name;
+
+  private final MemoryBroker broker;
+
+  /**
+   * topic -> 每个分区下一次拉取的偏移量
+   */
+  private final Map<String, AtomicLongArray> offsets = new ConcurrentHashMap<>();
+
+  private final List<MemorySubscription> members = new ArrayList<>();
+
+  MemoryGroup(String name, MemoryBroker broker) {
+    this.name = name;
+    this.broker = broker;
+  }
+
+  synchronized void join(MemorySubscription member, boolean fromBeginning) {
+    for (String topic : member.topics()) {
+      offsets.computeIfAbsent(topic, t -> initialOffsets(broker.topic(t), fromBeginning));
+    }
+    members.add(member);
+    rebalance();
+  }
+
+  synchronized void leave(MemorySubscription member) {
+    if (members.remove(member)) {
+      rebalance();
+    }
+  }
+
+  long committed(String topic, int partition) {
+    AtomicLongArray partitions = offsets.get(topic);
+    if (partitions == null) {
+      return -1;
+    }
+    return partitions.get(partition);
+  }
+
+  private AtomicLongArray initialOffsets(MemoryTopic topic, boolean fromBeginning) {
+    AtomicLongArray partitions = new AtomicLongArray(topic.partitionCount());
+    for (int i = 0; i < topic.partitionCount(); i++) {
+      MemoryPartition partition = topic.partition(i);
+      partitions.set(i, fromBeginning ? partition.startOffset() : partition.endOffset());
+    }
+    return partitions;
+  }
+
+  private void rebalance() {
+    Map<MemorySubscription, List<Claim>> assignments = new HashMap<>();
+    Set<String> topics = new LinkedHashSet<>();
+    for (MemorySubscription member : members) {
+      assignments.put(member, new ArrayList<>());
+      topics.addAll(member.topics());
+    }
+    for (String topic : topics) {
+      List<MemorySubscription> subscribers = new ArrayList<>();
+      for (MemorySubscription member : members) {
+        if (member.topics().contains(topic)) {
+          subscribers.add(member);
+        }
+      }
+      MemoryTopic memoryTopic = broker.topic(topic);
+      for (int i = 0; i < memoryTopic.partitionCount(); i++) {
+        MemorySubscription owner = subscribers.get(i % subscribers.size());
+        assignments.get(owner).add(new Claim(memoryTopic, i, offsets.get(topic)));
+      }
+    }
+    for (MemorySubscription member : members) {
+      member.assign(assignments.get(member));
+    }
+    LOGGER.info("rebalance group:{}, members:{}", name, members.size());
+  }
+
+  /**
+   * 分配给消费者的一个分区
+   */
+  static class Claim {
+
+    private final MemoryTopic topic;
+
+    private final int partition;
+
+    private final AtomicLongArray offsets;
+
+    private Claim(MemoryTopic topic, int partition, AtomicLongArray offsets) {
+      this.topic = topic;
+      this.partition = partition;
+      this.offsets = offsets;
+    }
+
+    /**
+     * 读取消息并推进偏移量，偏移量被其他消费者推进时重新读取
+     */
+    void read(int max, List<Message> out) {
+      MemoryPartition log = topic.partition(partition);
+      for (; ; ) {
+        long committed = offsets.get(partition);
+        int before = out.size();
+        long next = log.read(committed, max, out);
+        if (next == committed) {
+          return;
+        }
+        if (offsets.compareAndSet(partition, committed, next)) {
+          long skipped = next - committed - (out.size() - before);
+          if (skipped > 0) {
+            LOGGER.warn("{}-{} skip {} messages, which have been removed from the log",
+                topic.name(), partition, skipped);
+          }
+          return;
+        }
+        out.subList(before, out.size()).clear();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return topic.name() + "-" + partition;
+    }
+  }
+}
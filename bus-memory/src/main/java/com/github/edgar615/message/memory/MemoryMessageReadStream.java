@@ -0,0 +1,96 @@
+package com.github.edgar615.message.memory;
+
+import com.github.edgar615.message.bus.AbstractMessageReadStream;
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.repository.MessageConsumerRepository;
+import com.github.edgar615.message.utils.MessageQueue;
+import com.github.edgar615.message.utils.NamedThreadFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 从{@link MemoryBroker}读取消息.
+ * <p>
+ * start时加入消费组，使用一个线程循环拉取消息放入队列，close时离开消费组，分区重新分配给组内的其他消费者.
+ *
+ * @author Edgar
+ */
+public class MemoryMessageReadStream extends AbstractMessageReadStream {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MemoryMessageReadStream.class);
+
+  private final MemoryBroker broker;
+
+  private final MemoryReadOptions options;
+
+  private MemorySubscription subscription;
+
+  private ExecutorService consumerExecutor;
+
+  private volatile boolean closed = false;
+
+  public MemoryMessageReadStream(MemoryBroker broker, MessageQueue queue,
+      MessageConsumerRepository consumerRepository, MemoryReadOptions options) {
+    super(queue, consumerRepository);
+    this.broker = broker;
+    this.options = options;
+  }
+
+  @Override
+  public List<Message> poll() {
+    if (paused()) {
+      // 暂停时不读取，等待pollAndEnqueue检查恢复条件
+      sleep(100);
+      return Collections.emptyList();
+    }
+    return subscription.poll(options.getBatchSize(), options.getBlockMs());
+  }
+
+  @Override
+  public void start() {
+    this.subscription = broker.subscribe(options);
+    LOGGER.info("subscribe {}, group:{}, consumer:{}, assignment:{}", options.getTopics(),
+        options.getGroup(), options.getConsumer(), subscription.assignment());
+    this.consumerExecutor = Executors.newSingleThreadExecutor(
+        NamedThreadFactory.create("memory-consumer"));
+    consumerExecutor.submit(() -> {
+      while (!closed) {
+        try {
+          pollAndEnqueue();
+        } catch (Exception e) {
+          LOGGER.error("poll from memory occur error", e);
+        }
+      }
+      LOGGER.info("closing memory consumer");
+    });
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    if (subscription != null) {
+      subscription.close();
+    }
+    if (consumerExecutor != null) {
+      consumerExecutor.shutdown();
+      try {
+        consumerExecutor.awaitTermination(options.getBlockMs() * 2, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
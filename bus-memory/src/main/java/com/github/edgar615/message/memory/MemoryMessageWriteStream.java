@@ -0,0 +1,77 @@
+package com.github.edgar615.message.memory;
+
+import static net.logstash.logback.marker.Markers.append;
+
+import com.github.edgar615.message.bus.MessageWriteStream;
+import com.github.edgar615.message.bus.SendResult;
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.utils.LoggingMarker;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 把消息写入{@link MemoryBroker}，写入是同步的，返回的future已经完成.
+ *
+ * @author Edgar
+ */
+public class MemoryMessageWriteStream implements MessageWriteStream {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MessageWriteStream.class);
+
+  private final MemoryBroker broker;
+
+  public MemoryMessageWriteStream(MemoryBroker broker) {
+    this.broker = broker;
+  }
+
+  @Override
+  public CompletableFuture<Message> send(Message message) {
+    CompletableFuture<Message> future = new CompletableFuture<>();
+    try {
+      write(message);
+      future.complete(message);
+    } catch (Exception e) {
+      LOGGER.info(LoggingMarker.getIdLoggingMarker(message.header().id()), "write to memory failed");
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  @Override
+  public CompletableFuture<SendResult> sendAll(List<Message> messages) {
+    CompletableFuture<SendResult> future = new CompletableFuture<>();
+    SendResult.Collector collector = SendResult.collect(messages, future::complete);
+    for (int i = 0; i < messages.size(); i++) {
+      Message message = messages.get(i);
+      try {
+        write(message);
+        collector.succeed(i);
+      } catch (Exception e) {
+        LOGGER.info(LoggingMarker.getIdLoggingMarker(message.header().id()), "write to memory failed");
+        collector.fail(i, e);
+      }
+    }
+    return future;
+  }
+
+  private void write(Message message) {
+    long offset = broker.append(message);
+    MessageLogging.log(LOGGER, Stage.SEND, message.header().id(),
+        () -> append("traceId", message.header().id())
+            .and(append("topic", message.header().to()))
+            .and(append("offset", offset)),
+        "write to memory");
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void close() {
+  }
+}
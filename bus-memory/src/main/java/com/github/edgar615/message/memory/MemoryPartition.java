@@ -0,0 +1,69 @@
+package com.github.edgar615.message.memory;
+
+import com.github.edgar615.message.core.Message;
+import java.util.List;
+
+/**
+ * 一个分区的消息日志.
+ * <p>
+ * 使用定长的环形数组保存最近capacity条消息，偏移量从0开始递增；写满之后覆盖最早的消息，最早保留的偏移量随之增加.
+ *
+ * @author Edgar
+ */
+class MemoryPartition {
+
+  private final Message[] log;
+
+  /**
+   * 最早保留的偏移量
+   */
+  private long start = 0;
+
+  /**
+   * 下一条消息的偏移量
+   */
+  private long end = 0;
+
+  MemoryPartition(int capacity) {
+    this.log = new Message[capacity];
+  }
+
+  /**
+   * 追加一条消息
+   *
+   * @param message 消息
+   * @return 消息的偏移量
+   */
+  synchronized long append(Message message) {
+    if (end - start == log.length) {
+      start++;
+    }
+    log[(int) (end % log.length)] = message;
+    return end++;
+  }
+
+  /**
+   * 从偏移量from开始读取最多max条消息，from已经被删除时从最早保留的偏移量开始读取
+   *
+   * @param from 起始偏移量
+   * @param max 最大数量
+   * @param out 读取到的消息
+   * @return 下一次读取的偏移量
+   */
+  synchronized long read(long from, int max, List<Message> out) {
+    long pos = Math.max(from, start);
+    long to = Math.min(end, pos + max);
+    for (long offset = pos; offset < to; offset++) {
+      out.add(log[(int) (offset % log.length)]);
+    }
+    return Math.max(to, from);
+  }
+
+  synchronized long startOffset() {
+    return start;
+  }
+
+  synchronized long endOffset() {
+    return end;
+  }
+}
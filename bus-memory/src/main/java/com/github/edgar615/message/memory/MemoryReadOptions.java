@@ -0,0 +1,109 @@
+package com.github.edgar615.message.memory;
+
+import com.google.common.collect.ImmutableList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 内存消息日志消费者的属性.
+ *
+ * @author Edgar
+ */
+public class MemoryReadOptions {
+
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  public static final long DEFAULT_BLOCK_MS = 100L;
+
+  /**
+   * 订阅的主题
+   */
+  private final Set<String> topics = new LinkedHashSet<>();
+
+  /**
+   * 消费组，同一个消费组的消费者分摊主题的分区
+   */
+  private final String group;
+
+  /**
+   * 消费者名称，默认随机生成
+   */
+  private String consumer = UUID.randomUUID().toString();
+
+  /**
+   * 消费组第一次订阅主题时是否从最早保留的消息开始消费，默认true；false表示只消费之后写入的消息
+   */
+  private boolean fromBeginning = true;
+
+  /**
+   * 每次拉取的最大数量
+   */
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  /**
+   * 没有消息时阻塞的时间，单位毫秒
+   */
+  private long blockMs = DEFAULT_BLOCK_MS;
+
+  public MemoryReadOptions(String group) {
+    Objects.requireNonNull(group);
+    this.group = group;
+  }
+
+  public List<String> getTopics() {
+    return ImmutableList.copyOf(topics);
+  }
+
+  public MemoryReadOptions addTopic(String topic) {
+    this.topics.add(topic);
+    return this;
+  }
+
+  public String getGroup() {
+    return group;
+  }
+
+  public String getConsumer() {
+    return consumer;
+  }
+
+  public MemoryReadOptions setConsumer(String consumer) {
+    Objects.requireNonNull(consumer);
+    this.consumer = consumer;
+    return this;
+  }
+
+  public boolean isFromBeginning() {
+    return fromBeginning;
+  }
+
+  public MemoryReadOptions setFromBeginning(boolean fromBeginning) {
+    this.fromBeginning = fromBeginning;
+    return this;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public MemoryReadOptions setBatchSize(int batchSize) {
+    if (batchSize > 0) {
+      this.batchSize = batchSize;
+    }
+    return this;
+  }
+
+  public long getBlockMs() {
+    return blockMs;
+  }
+
+  public MemoryReadOptions setBlockMs(long blockMs) {
+    if (blockMs > 0) {
+      this.blockMs = blockMs;
+    }
+    return this;
+  }
+}
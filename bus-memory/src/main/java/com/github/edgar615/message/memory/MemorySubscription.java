@@ -0,0 +1,106 @@
+package com.github.edgar615.message.memory;
+
+import com.github.edgar615.message.core.Message;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 消费组中的一个消费者，通过{@link MemoryBroker#subscribe(MemoryReadOptions)}创建.
+ * <p>
+ * 拉取到的消息立即提交偏移量，同一个消费组内每条消息只投递一次；关闭时已经拉取、还没有处理的消息不会重新投递给组内的其他消费者.
+ * poll只能在一个线程中调用.
+ *
+ * @author Edgar
+ */
+public class MemorySubscription {
+
+  private final MemoryBroker broker;
+
+  private final MemoryGroup group;
+
+  private final String consumer;
+
+  private final List<String> topics;
+
+  private volatile List<MemoryGroup.Claim> claims = ImmutableList.of();
+
+  private volatile boolean closed = false;
+
+  /**
+   * 下一次拉取从哪个分区开始，避免前面的分区一直占满batch
+   */
+  private int cursor = 0;
+
+  MemorySubscription(MemoryBroker broker, MemoryGroup group, String consumer,
+      List<String> topics) {
+    this.broker = broker;
+    this.group = group;
+    this.consumer = consumer;
+    this.topics = ImmutableList.copyOf(topics);
+  }
+
+  /**
+   * 拉取消息，没有消息时最多等待timeoutMs毫秒
+   *
+   * @param max 最大数量
+   * @param timeoutMs 等待的时间，0表示不等待
+   * @return 消息，线程被中断或者已经关闭时返回已经读到的消息
+   */
+  public List<Message> poll(int max, long timeoutMs) {
+    List<Message> messages = new ArrayList<>();
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    while (!closed) {
+      long version = broker.version();
+      read(max, messages);
+      long remaining = deadline - System.currentTimeMillis();
+      if (!messages.isEmpty() || remaining <= 0 || !broker.await(version, remaining)) {
+        break;
+      }
+    }
+    return messages;
+  }
+
+  public String consumer() {
+    return consumer;
+  }
+
+  /**
+   * 当前分配的分区
+   *
+   * @return topic-partition
+   */
+  public List<String> assignment() {
+    List<String> assignment = new ArrayList<>();
+    for (MemoryGroup.Claim claim : claims) {
+      assignment.add(claim.toString());
+    }
+    return assignment;
+  }
+
+  public void close() {
+    closed = true;
+    group.leave(this);
+  }
+
+  List<String> topics() {
+    return topics;
+  }
+
+  void assign(List<MemoryGroup.Claim> claims) {
+    this.claims = ImmutableList.copyOf(claims);
+  }
+
+  private void read(int max, List<Message> out) {
+    List<MemoryGroup.Claim> current = claims;
+    int size = current.size();
+    if (size == 0) {
+      return;
+    }
+    int first = cursor % size;
+    cursor = (first + 1) % size;
+    for (int i = 0; i < size && out.size() < max; i++) {
+      current.get((first + i) % size).read(max - out.size(), out);
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package com.github.edgar615.message.memory;
+
+/**
+ * 主题，由固定数量的分区组成.
+ *
+ * @author Edgar
+ */
+class MemoryTopic {
+
+  private final String name;
+
+  private final MemoryPartition[] partitions;
+
+  MemoryTopic(String name, int partitionCount, int capacity) {
+    this.name = name;
+    this.partitions = new MemoryPartition[partitionCount];
+    for (int i = 0; i < partitionCount; i++) {
+      partitions[i] = new MemoryPartition(capacity);
+    }
+  }
+
+  String name() {
+    return name;
+  }
+
+  int partitionCount() {
+    return partitions.length;
+  }
+
+  MemoryPartition partition(int partition) {
+    return partitions[partition];
+  }
+}
@@ -0,0 +1,138 @@
+package com.github.edgar615.message.memory;
+
+import com.github.edgar615.message.core.Event;
+import com.github.edgar615.message.core.Message;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MemoryBrokerTest {
+
+  @Test
+  public void testRetention() {
+    MemoryBroker broker = MemoryBroker.create(new MemoryBrokerOptions()
+        .setPartitions(1).setPartitionCapacity(4));
+    for (int i = 0; i < 6; i++) {
+      Assert.assertEquals(i, broker.append(message("test", i)));
+    }
+    Assert.assertEquals(2, broker.startOffset("test", 0));
+    Assert.assertEquals(6, broker.endOffset("test", 0));
+
+    MemorySubscription subscription = broker.subscribe(new MemoryReadOptions("group")
+        .addTopic("test"));
+    List<Message> messages = subscription.poll(10, 0);
+    Assert.assertEquals(4, messages.size());
+    Assert.assertEquals(2, seq(messages.get(0)));
+    Assert.assertEquals(6, broker.committed("group", "test", 0));
+    Assert.assertTrue(subscription.poll(10, 0).isEmpty());
+  }
+
+  @Test
+  public void testPartitionKey() {
+    MemoryBroker broker = MemoryBroker.create(new MemoryBrokerOptions()
+        .setPartitions(4)
+        .setPartitionKeyExtractor(m -> "same"));
+    for (int i = 0; i < 10; i++) {
+      broker.append(message("test", i));
+    }
+    MemorySubscription subscription = broker.subscribe(new MemoryReadOptions("group")
+        .addTopic("test"));
+    List<Message> messages = subscription.poll(100, 0);
+    Assert.assertEquals(10, messages.size());
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(i, seq(messages.get(i)));
+    }
+  }
+
+  @Test
+  public void testGroup() {
+    MemoryBroker broker = MemoryBroker.create(new MemoryBrokerOptions().setPartitions(4));
+    MemorySubscription first = broker.subscribe(new MemoryReadOptions("group").addTopic("test"));
+    MemorySubscription second = broker.subscribe(new MemoryReadOptions("group").addTopic("test"));
+    MemorySubscription other = broker.subscribe(new MemoryReadOptions("other").addTopic("test"));
+    Assert.assertEquals(2, first.assignment().size());
+    Assert.assertEquals(2, second.assignment().size());
+    Assert.assertEquals(4, other.assignment().size());
+
+    for (int i = 0; i < 100; i++) {
+      broker.append(message("test", i));
+    }
+    Set<Integer> received = new HashSet<>();
+    List<Message> messages = new ArrayList<>();
+    messages.addAll(first.poll(1000, 0));
+    messages.addAll(second.poll(1000, 0));
+    for (Message message : messages) {
+      received.add(seq(message));
+    }
+    Assert.assertEquals(100, messages.size());
+    Assert.assertEquals(100, received.size());
+    Assert.assertEquals(100, other.poll(1000, 0).size());
+
+    //离开后分区分配给剩下的消费者
+    second.close();
+    Assert.assertEquals(4, first.assignment().size());
+    broker.append(message("test", 100));
+    Assert.assertEquals(1, first.poll(1000, 0).size());
+  }
+
+  @Test
+  public void testFromEnd() {
+    MemoryBroker broker = MemoryBroker.create();
+    broker.append(message("test", 0));
+    MemorySubscription subscription = broker.subscribe(new MemoryReadOptions("group")
+        .addTopic("test").setFromBeginning(false));
+    Assert.assertTrue(subscription.poll(10, 0).isEmpty());
+    broker.append(message("test", 1));
+    List<Message> messages = subscription.poll(10, 0);
+    Assert.assertEquals(1, messages.size());
+    Assert.assertEquals(1, seq(messages.get(0)));
+  }
+
+  @Test
+  public void testBlockingPoll() throws InterruptedException {
+    MemoryBroker broker = MemoryBroker.create();
+    MemorySubscription subscription = broker.subscribe(new MemoryReadOptions("group")
+        .addTopic("test"));
+    long start = System.currentTimeMillis();
+    Assert.assertTrue(subscription.poll(10, 50).isEmpty());
+    Assert.assertTrue(System.currentTimeMillis() - start >= 50);
+
+    Thread producer = new Thread(() -> {
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      broker.append(message("test", 0));
+    });
+    producer.start();
+    start = System.currentTimeMillis();
+    Assert.assertEquals(1, subscription.poll(10, 5000).size());
+    Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+    producer.join();
+  }
+
+  @Test
+  public void testCopy() {
+    MemoryBroker broker = MemoryBroker.create(new MemoryBrokerOptions().setCopy(true));
+    Message message = message("test", 0);
+    broker.append(message);
+    MemorySubscription subscription = broker.subscribe(new MemoryReadOptions("group")
+        .addTopic("test"));
+    Message received = subscription.poll(10, 0).get(0);
+    Assert.assertNotSame(message, received);
+    Assert.assertEquals(message.header().id(), received.header().id());
+  }
+
+  private static Message message(String topic, int seq) {
+    return Message.create(topic, Event.create("test", ImmutableMap.of("seq", seq)));
+  }
+
+  private static int seq(Message message) {
+    return Integer.parseInt(((Event) message.body()).content().get("seq").toString());
+  }
+}
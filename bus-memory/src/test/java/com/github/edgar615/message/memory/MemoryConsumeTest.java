@@ -0,0 +1,62 @@
+package com.github.edgar615.message.memory;
+
+import com.github.edgar615.message.bus.ConsumerOptions;
+import com.github.edgar615.message.bus.MessageConsumer;
+import com.github.edgar615.message.bus.MessageProducer;
+import com.github.edgar615.message.bus.ProducerOptions;
+import com.github.edgar615.message.core.Event;
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.utils.DefaultMessageQueue;
+import com.github.edgar615.message.utils.MessageQueue;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.awaitility.Awaitility;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MemoryConsumeTest {
+
+  @Test
+  public void testLoopback() {
+    MemoryBroker broker = MemoryBroker.create();
+    MessageProducer producer = MessageProducer.create(new ProducerOptions(),
+        new MemoryMessageWriteStream(broker));
+    producer.start();
+
+    Set<String> handled = ConcurrentHashMap.newKeySet();
+    List<MemoryMessageReadStream> readStreams = new ArrayList<>();
+    List<MessageConsumer> consumers = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      MessageQueue queue = DefaultMessageQueue.create(100);
+      MemoryMessageReadStream readStream = new MemoryMessageReadStream(broker, queue, null,
+          new MemoryReadOptions("loopback").addTopic("memory_loopback").setBatchSize(10));
+      MessageConsumer consumer = MessageConsumer.create(new ConsumerOptions(), queue);
+      consumer.start();
+      readStream.start();
+      readStreams.add(readStream);
+      consumers.add(consumer);
+    }
+    consumers.get(0).consumer("memory_loopback", "loopback",
+        message -> handled.add(message.header().id()));
+
+    List<Message> messages = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      messages.add(Message.create("memory_loopback",
+          Event.create("loopback", ImmutableMap.of("seq", i))));
+    }
+    Assert.assertTrue(producer.sendAll(messages).join().allSucceeded());
+    Awaitility.await().until(() -> handled.size() == 1000);
+
+    long committed = 0;
+    for (int i = 0; i < broker.partitions("memory_loopback"); i++) {
+      committed += broker.committed("loopback", "memory_loopback", i);
+    }
+    Assert.assertEquals(1000, committed);
+    readStreams.forEach(MemoryMessageReadStream::close);
+    consumers.forEach(MessageConsumer::close);
+    producer.close();
+  }
+}
@@ -0,0 +1,191 @@
+package com.github.edgar615.message.metrics;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.Timer;
+import com.github.edgar615.message.utils.MessageMetrics;
+import com.github.edgar615.message.utils.MessageQueue;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 使用Dropwizard Metrics记录消息总线的指标.
+ * <p>
+ * 所有的Timer和Histogram都使用{@link SlidingWindowReservoir}，记录时不会分配对象；按主题、资源、写入流、存储方法区分的指标在第一次出现时创建并缓存，
+ * 之后只有Map的查找.
+ * <p>
+ * 使用方式：
+ * <pre>
+ *   MessageMetricsHolder.set(DropwizardMessageMetrics.create(registry));
+ * </pre>
+ * 需要在创建消费者和生产者之前设置.
+ *
+ * @author Edgar
+ */
+public class DropwizardMessageMetrics implements MessageMetrics {
+
+  public static final String DEFAULT_PREFIX = "message";
+
+  /**
+   * 滑动窗口保留的样本数量
+   */
+  private static final int WINDOW_SIZE = 1028;
+
+  /**
+   * 消息没有resource时使用的名称
+   */
+  private static final String NO_RESOURCE = "none";
+
+  private final MetricRegistry registry;
+
+  private final String prefix;
+
+  private final Histogram pollSize;
+
+  private final Timer queueWait;
+
+  private final Meter pauses;
+
+  private final Timer pauseDuration;
+
+  private final AtomicLong backlog = new AtomicLong();
+
+  /**
+   * topic -> resource -> 处理的指标
+   */
+  private final Map<String, Map<String, Outcome>> handlers = new ConcurrentHashMap<>();
+
+  private final Map<String, Outcome> streams = new ConcurrentHashMap<>();
+
+  private final Map<String, Outcome> repositories = new ConcurrentHashMap<>();
+
+  private DropwizardMessageMetrics(MetricRegistry registry, String prefix) {
+    this.registry = registry;
+    this.prefix = prefix;
+    this.pollSize = registry.register(name(prefix, "poll", "size"),
+        new Histogram(new SlidingWindowReservoir(WINDOW_SIZE)));
+    this.queueWait = registry.register(name(prefix, "queue", "wait"), newTimer());
+    this.pauses = registry.meter(name(prefix, "poll", "pauses"));
+    this.pauseDuration = registry.register(name(prefix, "poll", "paused"), newTimer());
+    registry.register(name(prefix, "outbox", "backlog"), (Gauge<Long>) backlog::get);
+  }
+
+  public static DropwizardMessageMetrics create(MetricRegistry registry) {
+    return new DropwizardMessageMetrics(registry, DEFAULT_PREFIX);
+  }
+
+  /**
+   * @param registry MetricRegistry
+   * @param prefix 所有指标名称的前缀
+   */
+  public static DropwizardMessageMetrics create(MetricRegistry registry, String prefix) {
+    Objects.requireNonNull(registry);
+    Objects.requireNonNull(prefix);
+    return new DropwizardMessageMetrics(registry, prefix);
+  }
+
+  @Override
+  public void polled(int count) {
+    pollSize.update(count);
+  }
+
+  @Override
+  public void waited(long nanos) {
+    queueWait.update(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void handled(String topic, String resource, long nanos, boolean succeeded) {
+    handler(topic, resource == null ? NO_RESOURCE : resource).update(nanos, succeeded);
+  }
+
+  @Override
+  public void register(String name, MessageQueue queue) {
+    String metricName = name(prefix, "queue", name, "depth");
+    //同名的队列重新创建时替换原来的指标
+    registry.remove(metricName);
+    registry.register(metricName, (Gauge<Integer>) queue::size);
+  }
+
+  @Override
+  public void paused() {
+    pauses.mark();
+  }
+
+  @Override
+  public void resumed(long pausedMillis) {
+    pauseDuration.update(pausedMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void sent(String stream, long nanos, boolean succeeded) {
+    Outcome outcome = streams.get(stream);
+    if (outcome == null) {
+      outcome = streams.computeIfAbsent(stream, k -> new Outcome(name(prefix, "send", k)));
+    }
+    outcome.update(nanos, succeeded);
+  }
+
+  @Override
+  public void backlog(int count) {
+    backlog.set(count);
+  }
+
+  @Override
+  public void called(String operation, long nanos, boolean succeeded) {
+    Outcome outcome = repositories.get(operation);
+    if (outcome == null) {
+      outcome = repositories.computeIfAbsent(operation,
+          k -> new Outcome(name(prefix, "repository", k)));
+    }
+    outcome.update(nanos, succeeded);
+  }
+
+  private Outcome handler(String topic, String resource) {
+    //先get再computeIfAbsent，已经存在时不会创建lambda
+    Map<String, Outcome> resources = handlers.get(topic);
+    if (resources == null) {
+      resources = handlers.computeIfAbsent(topic, k -> new ConcurrentHashMap<>());
+    }
+    Outcome outcome = resources.get(resource);
+    if (outcome == null) {
+      outcome = resources.computeIfAbsent(resource,
+          k -> new Outcome(name(prefix, "handle", topic, k)));
+    }
+    return outcome;
+  }
+
+  private Timer newTimer() {
+    return new Timer(new SlidingWindowReservoir(WINDOW_SIZE));
+  }
+
+  /**
+   * 一类调用的耗时和失败次数，失败率通过failures和timer的计数计算
+   */
+  private class Outcome {
+
+    private final Timer timer;
+
+    private final Meter failures;
+
+    private Outcome(String name) {
+      this.timer = registry.register(name, newTimer());
+      this.failures = registry.meter(name(name, "failures"));
+    }
+
+    private void update(long nanos, boolean succeeded) {
+      timer.update(nanos, TimeUnit.NANOSECONDS);
+      if (!succeeded) {
+        failures.mark();
+      }
+    }
+  }
+}
@@ -1,44 +1,395 @@
 package com.github.edgar615.message.redis;
 
+import static net.logstash.logback.marker.Markers.append;
+
 import com.github.edgar615.message.bus.AbstractMessageReadStream;
 import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.MessageConsumerRepository;
+import com.github.edgar615.message.utils.LoggingMarker;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
 import com.github.edgar615.message.utils.MessageQueue;
+import com.github.edgar615.message.utils.MessageSerDe;
+import com.github.edgar615.message.utils.NamedThreadFactory;
+import io.lettuce.core.Consumer;
+import io.lettuce.core.Limit;
+import io.lettuce.core.Range;
 import io.lettuce.core.RedisClient;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XReadArgs;
+import io.lettuce.core.XReadArgs.StreamOffset;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.async.RedisStreamAsyncCommands;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
 
+/**
+ * 使用Redis Stream的消费组消费消息.
+ * <p>
+ * 拉取线程通过XREADGROUP阻塞读取，每次最多读取batchSize条；消息在队列中complete（或者因为重复被丢弃）之后才XACK，
+ * 确认累积到ackBatchSize条或者每隔ackIntervalMs批量发送.
+ * <p>
+ * 启动时先读取当前消费者未确认的消息（上一次退出时没有处理完成的消息），之后每隔claimIntervalMs通过XPENDING检查其他消费者超过claimIdleMs没有确认的消息，
+ * 用XCLAIM转移给当前消费者处理，消息至少会被处理一次，但是可能会重复.
+ * <p>
+ * 阻塞读取和确认使用不同的连接，避免XACK排在XREADGROUP后面等待.
+ *
+ * @author Edgar
+ */
 public class RedisMessageReadStream extends AbstractMessageReadStream {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(RedisMessageReadStream.class);
+
   private final RedisClient redisClient;
 
+  private final RedisReadOptions options;
+
+  private final Consumer<String> consumer;
+
   private StatefulRedisConnection<String, String> connection;
 
+  private StatefulRedisConnection<String, String> ackConnection;
+
   private RedisStreamAsyncCommands<String, String> streamCommands;
 
+  private RedisStreamAsyncCommands<String, String> ackCommands;
+
+  private ExecutorService consumerExecutor;
+
+  private ScheduledExecutorService ackExecutor;
+
+  /**
+   * 已经创建了消费组的stream，只在拉取线程中访问
+   */
+  private final Set<String> grouped = new LinkedHashSet<>();
+
+  /**
+   * 读取当前消费者未确认消息的位置，读取完成后为null，只在拉取线程中访问
+   */
+  private Map<String, String> recovering = new HashMap<>();
+
+  private long lastClaimTime = System.currentTimeMillis();
+
+  /**
+   * 已经读取还没有确认的消息，Message没有重写equals，按对象区分
+   */
+  private final Map<Message, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * 等待确认的消息ID
+   */
+  private final Map<String, List<String>> acks = new HashMap<>();
+
+  private int ackCount = 0;
+
+  private volatile boolean closed = false;
+
   public RedisMessageReadStream(RedisClient redisClient, MessageQueue queue,
-      MessageConsumerRepository consumerRepository) {
+      MessageConsumerRepository consumerRepository, RedisReadOptions options) {
     super(queue, consumerRepository);
     this.redisClient = redisClient;
+    this.options = options;
+    this.consumer = Consumer.from(options.getGroup(), options.getConsumer());
+    for (String topic : options.getTopics()) {
+      recovering.put(topic, "0");
+    }
+    queue.addListener(this::completed);
   }
 
   @Override
   public List<Message> poll() {
-    return null;
+    if (paused()) {
+      // 暂停时不读取，等待pollAndEnqueue检查恢复条件
+      sleep(100);
+      return Collections.emptyList();
+    }
+    createGroups();
+    if (grouped.isEmpty()) {
+      sleep(options.getBlockMs());
+      return Collections.emptyList();
+    }
+    List<StreamMessage<String, String>> records = new ArrayList<>();
+    try {
+      if (recovering != null) {
+        records.addAll(recover());
+      }
+      if (System.currentTimeMillis() - lastClaimTime >= options.getClaimIntervalMs()) {
+        lastClaimTime = System.currentTimeMillis();
+        records.addAll(claim());
+      }
+      if (records.isEmpty()) {
+        records.addAll(read());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Collections.emptyList();
+    } catch (ExecutionException e) {
+      LOGGER.error("read from redis failed", e.getCause());
+      sleep(options.getBlockMs());
+      return Collections.emptyList();
+    }
+    List<Message> messages = new ArrayList<>(records.size());
+    for (StreamMessage<String, String> record : records) {
+      decode(record, messages);
+    }
+    return messages;
+  }
+
+  private void decode(StreamMessage<String, String> record, List<Message> messages) {
+    Map<String, Object> extra = new HashMap<>();
+    extra.put("topic", record.getStream());
+    extra.put("id", record.getId());
+    try {
+      String source = record.getBody() == null ? null : record.getBody().get("message");
+      Message message = MessageSerDe.deserialize(record.getStream(), source);
+      if (message == null) {
+        throw new IllegalArgumentException("message is missing");
+      }
+      MessageLogging.log(LOGGER, Stage.POLL, message.header().id(),
+          () -> LoggingMarker.getLoggingMarker(message, true, extra), "poll from redis");
+      entries.put(message, new Entry(record.getStream(), record.getId()));
+      messages.add(message);
+    } catch (Exception e) {
+      Marker messageMarker = append("topic", record.getStream()).and(append("id", record.getId()));
+      LOGGER.warn(messageMarker, "poll from redis, bus deserialize failed");
+      //无法反序列化的消息不会再处理，直接确认
+      ack(record.getStream(), record.getId());
+    }
+  }
+
+  /**
+   * 读取新消息
+   */
+  private List<StreamMessage<String, String>> read()
+      throws ExecutionException, InterruptedException {
+    List<StreamOffset<String>> offsets = new ArrayList<>(grouped.size());
+    for (String topic : grouped) {
+      offsets.add(StreamOffset.lastConsumed(topic));
+    }
+    XReadArgs args = XReadArgs.Builder.count(options.getBatchSize()).block(options.getBlockMs());
+    return streamCommands.xreadgroup(consumer, args, toArray(offsets)).get();
+  }
+
+  /**
+   * 读取当前消费者已经读取但是没有确认的消息，全部读取完成后不再执行
+   */
+  private List<StreamMessage<String, String>> recover()
+      throws ExecutionException, InterruptedException {
+    List<StreamOffset<String>> offsets = new ArrayList<>();
+    for (String topic : grouped) {
+      if (recovering.containsKey(topic)) {
+        offsets.add(StreamOffset.from(topic, recovering.get(topic)));
+      }
+    }
+    if (offsets.isEmpty()) {
+      return Collections.emptyList();
+    }
+    XReadArgs args = XReadArgs.Builder.count(options.getBatchSize());
+    List<StreamMessage<String, String>> records =
+        streamCommands.xreadgroup(consumer, args, toArray(offsets)).get();
+    Set<String> remaining = new LinkedHashSet<>();
+    for (StreamMessage<String, String> record : records) {
+      recovering.put(record.getStream(), record.getId());
+      remaining.add(record.getStream());
+    }
+    // 没有返回消息的stream已经读取完成
+    recovering.keySet().removeIf(topic -> grouped.contains(topic) && !remaining.contains(topic));
+    if (recovering.isEmpty()) {
+      recovering = null;
+      LOGGER.info("recover pending messages finished");
+    }
+    return records;
+  }
+
+  /**
+   * 转移其他消费者长时间没有确认的消息
+   */
+  private List<StreamMessage<String, String>> claim()
+      throws ExecutionException, InterruptedException {
+    List<StreamMessage<String, String>> records = new ArrayList<>();
+    for (String topic : grouped) {
+      List<Object> pending = streamCommands.xpending(topic, options.getGroup(),
+          Range.create("-", "+"), Limit.from(options.getBatchSize())).get();
+      List<String> ids = new ArrayList<>();
+      // 每一项是[ID, 消费者, 空闲时间, 投递次数]
+      for (Object item : pending) {
+        List<?> fields = (List<?>) item;
+        String owner = String.valueOf(fields.get(1));
+        long idle = ((Number) fields.get(2)).longValue();
+        if (!options.getConsumer().equals(owner) && idle >= options.getClaimIdleMs()) {
+          ids.add(String.valueOf(fields.get(0)));
+        }
+      }
+      if (ids.isEmpty()) {
+        continue;
+      }
+      // 其他消费者可能同时转移，XCLAIM会再次检查空闲时间
+      List<StreamMessage<String, String>> claimed = streamCommands.xclaim(topic, consumer,
+          options.getClaimIdleMs(), ids.toArray(new String[0])).get();
+      LOGGER.info(append("topic", topic), "claim {} pending messages", claimed.size());
+      records.addAll(claimed);
+    }
+    return records;
+  }
+
+  private void createGroups() {
+    if (grouped.size() == options.getTopics().size()) {
+      return;
+    }
+    for (String topic : options.getTopics()) {
+      if (grouped.contains(topic)) {
+        continue;
+      }
+      try {
+        streamCommands.xgroupCreate(StreamOffset.from(topic, options.getStartId()),
+            options.getGroup()).get();
+        LOGGER.info("create group:{} on {}", options.getGroup(), topic);
+        grouped.add(topic);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        String error = String.valueOf(e.getCause().getMessage());
+        if (error.startsWith("BUSYGROUP")) {
+          grouped.add(topic);
+        } else {
+          // stream还不存在，等生产者写入后再创建
+          LOGGER.warn("create group:{} on {} failed, {}", options.getGroup(), topic, error);
+        }
+      }
+    }
+  }
+
+  @Override
+  protected void discard(Message message) {
+    completed(message);
+  }
+
+  private void completed(Message message) {
+    Entry entry = entries.remove(message);
+    if (entry != null) {
+      ack(entry.stream, entry.id);
+    }
+  }
+
+  private void ack(String stream, String id) {
+    boolean flush;
+    synchronized (acks) {
+      acks.computeIfAbsent(stream, k -> new ArrayList<>()).add(id);
+      ackCount++;
+      flush = ackCount >= options.getAckBatchSize();
+    }
+    if (flush) {
+      flushAcks();
+    }
+  }
+
+  private void flushAcks() {
+    Map<String, List<String>> batch;
+    synchronized (acks) {
+      if (acks.isEmpty()) {
+        return;
+      }
+      batch = new HashMap<>(acks);
+      acks.clear();
+      ackCount = 0;
+    }
+    for (Map.Entry<String, List<String>> entry : batch.entrySet()) {
+      // 确认失败的消息留在pending列表中，会被重新处理
+      ackCommands.xack(entry.getKey(), options.getGroup(),
+          entry.getValue().toArray(new String[0]))
+          .exceptionally(throwable -> {
+            LOGGER.warn(append("topic", entry.getKey()), "ack {} messages failed",
+                entry.getValue().size(), throwable);
+            return null;
+          });
+    }
   }
 
   @Override
   public void start() {
     this.connection = redisClient.connect();
     this.streamCommands = connection.async();
+    this.ackConnection = redisClient.connect();
+    this.ackCommands = ackConnection.async();
+    this.ackExecutor = Executors.newSingleThreadScheduledExecutor(
+        NamedThreadFactory.create("redis-acker"));
+    ackExecutor.scheduleWithFixedDelay(this::flushAcks, options.getAckIntervalMs(),
+        options.getAckIntervalMs(), TimeUnit.MILLISECONDS);
+    this.consumerExecutor = Executors.newSingleThreadExecutor(
+        NamedThreadFactory.create("redis-consumer"));
+    consumerExecutor.submit(() -> {
+      while (!closed) {
+        try {
+          pollAndEnqueue();
+        } catch (Exception e) {
+          LOGGER.error("poll core from redis occur error", e);
+        }
+      }
+      LOGGER.info("closing redis consumer");
+    });
   }
 
   @Override
   public void close() {
+    closed = true;
+    if (consumerExecutor != null) {
+      consumerExecutor.shutdown();
+      try {
+        consumerExecutor.awaitTermination(options.getBlockMs() * 2, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (ackExecutor != null) {
+      ackExecutor.shutdown();
+      flushAcks();
+    }
     if (connection != null && connection.isOpen()) {
       connection.close();
     }
+    if (ackConnection != null && ackConnection.isOpen()) {
+      ackConnection.close();
+    }
 //    redisClient.shutdown();
   }
+
+  @SuppressWarnings("unchecked")
+  private static StreamOffset<String>[] toArray(List<StreamOffset<String>> offsets) {
+    return offsets.toArray(new StreamOffset[0]);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class Entry {
+
+    private final String stream;
+
+    private final String id;
+
+    private Entry(String stream, String id) {
+      this.stream = stream;
+      this.id = id;
+    }
+  }
 }
@@ -3,59 +3,135 @@ package com.github.edgar615.message.redis;
 import static net.logstash.logback.marker.Markers.append;
 
 import com.github.edgar615.message.bus.MessageWriteStream;
+import com.github.edgar615.message.bus.SendResult;
 import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.utils.MessageSerDe;
 import com.github.edgar615.message.utils.LoggingMarker;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
+import com.github.edgar615.message.utils.NamedThreadFactory;
 import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.XAddArgs;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.async.RedisStreamAsyncCommands;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.Marker;
 
+/**
+ * 使用XADD把消息写入Redis Stream.
+ * <p>
+ * 设置了{@link RedisWriteOptions#setBatchSize(int)}时关闭连接的自动flush，XADD先写入缓冲区，
+ * 累积到batchSize条或者等待lingerMicros后一次flush，减少网络往返.
+ * <p>
+ * {@link #sendAll(List)}使用另外一个关闭了自动flush的连接，一次调用的XADD全部写入缓冲区后flush一次，和batchSize无关；
+ * 两个连接之间不保证顺序.
+ */
 public class RedisMessageWriteStream implements MessageWriteStream {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(MessageWriteStream.class);
 
   private final RedisClient redisClient;
 
+  private final RedisWriteOptions options;
+
+  /**
+   * XADD的参数，没有设置maxLen时为null
+   */
+  private final XAddArgs addArgs;
+
   private StatefulRedisConnection<String, String> connection;
 
   private RedisStreamAsyncCommands<String, String> streamCommands;
 
+  /**
+   * 批量发送使用的连接，不自动flush
+   */
+  private StatefulRedisConnection<String, String> batchConnection;
+
+  private RedisStreamAsyncCommands<String, String> batchCommands;
+
+  private ScheduledExecutorService lingerExecutor;
+
+  /**
+   * 缓冲区中还没有flush的命令数量
+   */
+  private int buffered = 0;
+
+  private ScheduledFuture<?> lingerTask;
+
   public RedisMessageWriteStream(RedisClient redisClient) {
-    this.redisClient = redisClient;
+    this(redisClient, new RedisWriteOptions());
   }
 
+  public RedisMessageWriteStream(RedisClient redisClient, RedisWriteOptions options) {
+    this.redisClient = redisClient;
+    this.options = options;
+    if (options.getMaxLen() > 0) {
+      this.addArgs = XAddArgs.Builder.maxlen(options.getMaxLen()).approximateTrimming();
+    } else {
+      this.addArgs = null;
+    }
+  }
 
   @Override
   public void start() {
     this.connection = redisClient.connect();
     this.streamCommands = connection.async();
+    this.batchConnection = redisClient.connect();
+    batchConnection.setAutoFlushCommands(false);
+    this.batchCommands = batchConnection.async();
+    if (options.getBatchSize() > 1) {
+      connection.setAutoFlushCommands(false);
+      this.lingerExecutor = Executors.newSingleThreadScheduledExecutor(
+          NamedThreadFactory.create("redis-writer"));
+    }
   }
 
   @Override
   public CompletableFuture<Message> send(Message message) {
     CompletableFuture<Message> future = new CompletableFuture<>();
-    String source = null;
+    String source;
     try {
       source = MessageSerDe.serialize(message);
     } catch (Exception e) {
       future.completeExceptionally(e);
+      return future;
     }
 
     Map<String, String> body =  new HashMap<>();
     body.put("message", source);
-    streamCommands.xadd(message.header().to(), body)
-        .thenAccept(id -> {
-          Marker messageMarker =
-              append("traceId", message.header().id())
+    RedisFuture<String> result;
+    if (lingerExecutor == null) {
+      result = xadd(streamCommands, message.header().to(), body);
+    } else {
+      // 同一个连接的命令按写入缓冲区的顺序发送，写入和flush需要互斥
+      synchronized (this) {
+        result = xadd(streamCommands, message.header().to(), body);
+        buffered++;
+        if (buffered >= options.getBatchSize()) {
+          flushCommands();
+        } else if (lingerTask == null) {
+          lingerTask = scheduleFlush();
+        }
+      }
+    }
+    result.thenAccept(id -> {
+          MessageLogging.log(LOGGER, Stage.SEND, message.header().id(),
+              () -> append("traceId", message.header().id())
                   .and(append("topic", message.header().to()))
-                  .and(append("id", id));
-          LOGGER.info(messageMarker, "write to redis");
+                  .and(append("id", id)),
+              "write to redis");
           future.complete(message);
         })
         .exceptionally(throwable -> {
@@ -66,11 +142,105 @@ public class RedisMessageWriteStream implements MessageWriteStream {
     return future;
   }
 
+  /**
+   * 批量发送，所有XADD写入批量连接的缓冲区后一次flush.
+   */
+  @Override
+  public CompletableFuture<SendResult> sendAll(List<Message> messages) {
+    CompletableFuture<SendResult> future = new CompletableFuture<>();
+    SendResult.Collector collector = SendResult.collect(messages, future::complete);
+    List<RedisFuture<String>> results = new ArrayList<>(messages.size());
+    // 写入和flush需要互斥，否则可能flush其他线程写了一半的命令
+    synchronized (batchConnection) {
+      for (int i = 0; i < messages.size(); i++) {
+        results.add(xadd(messages.get(i), collector, i));
+      }
+      batchConnection.flushCommands();
+    }
+    for (int i = 0; i < messages.size(); i++) {
+      RedisFuture<String> result = results.get(i);
+      if (result == null) {
+        continue;
+      }
+      Message message = messages.get(i);
+      int index = i;
+      result.thenAccept(id -> {
+        MessageLogging.log(LOGGER, Stage.SEND, message.header().id(),
+            () -> append("traceId", message.header().id())
+                .and(append("topic", message.header().to()))
+                .and(append("id", id)),
+            "write to redis");
+        collector.succeed(index);
+      }).exceptionally(throwable -> {
+        LOGGER.info(LoggingMarker.getIdLoggingMarker(message.header().id()), "write to redis failed");
+        collector.fail(index, throwable);
+        return null;
+      });
+    }
+    return future;
+  }
+
+  /**
+   * 序列化失败时直接记录失败，返回null
+   */
+  private RedisFuture<String> xadd(Message message, SendResult.Collector collector, int index) {
+    Map<String, String> body = new HashMap<>();
+    try {
+      body.put("message", MessageSerDe.serialize(message));
+    } catch (Exception e) {
+      collector.fail(index, e);
+      return null;
+    }
+    return xadd(batchCommands, message.header().to(), body);
+  }
+
+  private RedisFuture<String> xadd(RedisStreamAsyncCommands<String, String> commands, String key,
+      Map<String, String> body) {
+    if (addArgs == null) {
+      return commands.xadd(key, body);
+    }
+    return commands.xadd(key, addArgs, body);
+  }
+
+  private ScheduledFuture<?> scheduleFlush() {
+    try {
+      return lingerExecutor.schedule(this::flush, options.getLingerMicros(),
+          TimeUnit.MICROSECONDS);
+    } catch (RejectedExecutionException e) {
+      //已经关闭，直接发送
+      flushCommands();
+      return null;
+    }
+  }
+
+  private synchronized void flush() {
+    flushCommands();
+  }
+
+  private void flushCommands() {
+    if (lingerTask != null) {
+      lingerTask.cancel(false);
+      lingerTask = null;
+    }
+    if (buffered == 0) {
+      return;
+    }
+    buffered = 0;
+    connection.flushCommands();
+  }
+
   @Override
   public void close() {
+    if (lingerExecutor != null) {
+      lingerExecutor.shutdown();
+      flush();
+    }
     if (connection != null && connection.isOpen()) {
       connection.close();
     }
+    if (batchConnection != null && batchConnection.isOpen()) {
+      batchConnection.close();
+    }
 //    redisClient.shutdown();
   }
 
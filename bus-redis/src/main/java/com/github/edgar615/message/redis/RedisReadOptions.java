@@ -0,0 +1,194 @@
+package com.github.edgar615.message.redis;
+
+import com.google.common.collect.ImmutableList;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Redis Stream消费者的属性.
+ *
+ * @author Edgar
+ */
+public class RedisReadOptions {
+
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  public static final long DEFAULT_BLOCK_MS = 1000L;
+
+  public static final int DEFAULT_ACK_BATCH_SIZE = 100;
+
+  public static final long DEFAULT_ACK_INTERVAL_MS = 100L;
+
+  public static final long DEFAULT_CLAIM_INTERVAL_MS = 30000L;
+
+  public static final long DEFAULT_CLAIM_IDLE_MS = 60000L;
+
+  /**
+   * 订阅的stream，即消息的topic
+   */
+  private final Set<String> topics = new LinkedHashSet<>();
+
+  /**
+   * 消费组
+   */
+  private final String group;
+
+  /**
+   * 消费者名称，同一个消费组内的消费者名称不能重复，默认使用pid@hostname
+   */
+  private String consumer = ManagementFactory.getRuntimeMXBean().getName();
+
+  /**
+   * 创建消费组时的起始ID，默认$，即只消费创建消费组之后的消息
+   */
+  private String startId = "$";
+
+  /**
+   * XREADGROUP每次读取的最大数量
+   */
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  /**
+   * XREADGROUP没有消息时阻塞的时间，单位毫秒
+   */
+  private long blockMs = DEFAULT_BLOCK_MS;
+
+  /**
+   * 累积多少条消息一起XACK
+   */
+  private int ackBatchSize = DEFAULT_ACK_BATCH_SIZE;
+
+  /**
+   * 没有达到ackBatchSize时XACK的间隔，单位毫秒
+   */
+  private long ackIntervalMs = DEFAULT_ACK_INTERVAL_MS;
+
+  /**
+   * 检查其他消费者未确认消息的间隔，单位毫秒
+   */
+  private long claimIntervalMs = DEFAULT_CLAIM_INTERVAL_MS;
+
+  /**
+   * 其他消费者的消息超过这个时间没有确认就转移给当前消费者，单位毫秒
+   */
+  private long claimIdleMs = DEFAULT_CLAIM_IDLE_MS;
+
+  public RedisReadOptions(String group) {
+    Objects.requireNonNull(group);
+    this.group = group;
+  }
+
+  public List<String> getTopics() {
+    return ImmutableList.copyOf(topics);
+  }
+
+  public RedisReadOptions addTopic(String topic) {
+    this.topics.add(topic);
+    return this;
+  }
+
+  public String getGroup() {
+    return group;
+  }
+
+  public String getConsumer() {
+    return consumer;
+  }
+
+  public RedisReadOptions setConsumer(String consumer) {
+    Objects.requireNonNull(consumer);
+    this.consumer = consumer;
+    return this;
+  }
+
+  public String getStartId() {
+    return startId;
+  }
+
+  /**
+   * 设置创建消费组时的起始ID，0表示从头消费，$表示只消费新消息.消费组已经存在时不起作用.
+   *
+   * @param startId 起始ID
+   * @return RedisReadOptions
+   */
+  public RedisReadOptions setStartId(String startId) {
+    Objects.requireNonNull(startId);
+    this.startId = startId;
+    return this;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public RedisReadOptions setBatchSize(int batchSize) {
+    if (batchSize > 0) {
+      this.batchSize = batchSize;
+    }
+    return this;
+  }
+
+  public long getBlockMs() {
+    return blockMs;
+  }
+
+  public RedisReadOptions setBlockMs(long blockMs) {
+    if (blockMs > 0) {
+      this.blockMs = blockMs;
+    }
+    return this;
+  }
+
+  public int getAckBatchSize() {
+    return ackBatchSize;
+  }
+
+  /**
+   * 设置批量确认的数量，小于等于1表示每条消息处理完成后立即确认.
+   *
+   * @param ackBatchSize 数量
+   * @return RedisReadOptions
+   */
+  public RedisReadOptions setAckBatchSize(int ackBatchSize) {
+    if (ackBatchSize > 0) {
+      this.ackBatchSize = ackBatchSize;
+    }
+    return this;
+  }
+
+  public long getAckIntervalMs() {
+    return ackIntervalMs;
+  }
+
+  public RedisReadOptions setAckIntervalMs(long ackIntervalMs) {
+    if (ackIntervalMs > 0) {
+      this.ackIntervalMs = ackIntervalMs;
+    }
+    return this;
+  }
+
+  public long getClaimIntervalMs() {
+    return claimIntervalMs;
+  }
+
+  public RedisReadOptions setClaimIntervalMs(long claimIntervalMs) {
+    if (claimIntervalMs > 0) {
+      this.claimIntervalMs = claimIntervalMs;
+    }
+    return this;
+  }
+
+  public long getClaimIdleMs() {
+    return claimIdleMs;
+  }
+
+  public RedisReadOptions setClaimIdleMs(long claimIdleMs) {
+    if (claimIdleMs > 0) {
+      this.claimIdleMs = claimIdleMs;
+    }
+    return this;
+  }
+}
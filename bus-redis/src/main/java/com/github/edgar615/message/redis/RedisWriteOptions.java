@@ -0,0 +1,76 @@
+package com.github.edgar615.message.redis;
+
+/**
+ * Redis Stream生产者的属性.
+ *
+ * @author Edgar
+ */
+public class RedisWriteOptions {
+
+  public static final int DEFAULT_BATCH_SIZE = 1;
+
+  public static final long DEFAULT_LINGER_MICROS = 1000L;
+
+  /**
+   * 累积多少条XADD一起发送，默认1，即每条消息立即发送
+   */
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  /**
+   * 没有达到batchSize时最多等待的时间，单位微秒
+   */
+  private long lingerMicros = DEFAULT_LINGER_MICROS;
+
+  /**
+   * stream的最大长度，使用MAXLEN ~近似裁剪，默认0，即不裁剪
+   */
+  private long maxLen = 0;
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * 设置批量发送的数量.
+   * <p>
+   * 大于1时关闭连接的自动flush，XADD命令先写入缓冲区，累积到batchSize条或者等待lingerMicros后作为一个pipeline发送，
+   * 每条消息的结果仍然单独返回.
+   *
+   * @param batchSize 数量
+   * @return RedisWriteOptions
+   */
+  public RedisWriteOptions setBatchSize(int batchSize) {
+    if (batchSize > 0) {
+      this.batchSize = batchSize;
+    }
+    return this;
+  }
+
+  public long getLingerMicros() {
+    return lingerMicros;
+  }
+
+  public RedisWriteOptions setLingerMicros(long lingerMicros) {
+    if (lingerMicros > 0) {
+      this.lingerMicros = lingerMicros;
+    }
+    return this;
+  }
+
+  public long getMaxLen() {
+    return maxLen;
+  }
+
+  /**
+   * 设置stream的最大长度，XADD时附带MAXLEN ~ maxLen，由redis在合适的时候删除旧的消息.
+   *
+   * @param maxLen 最大长度
+   * @return RedisWriteOptions
+   */
+  public RedisWriteOptions setMaxLen(long maxLen) {
+    if (maxLen >= 0) {
+      this.maxLen = maxLen;
+    }
+    return this;
+  }
+}
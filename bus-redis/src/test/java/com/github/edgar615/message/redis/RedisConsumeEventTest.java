@@ -0,0 +1,39 @@
+package com.github.edgar615.message.redis;
+
+import com.github.edgar615.message.bus.ConsumerOptions;
+import com.github.edgar615.message.bus.MessageConsumer;
+import com.github.edgar615.message.utils.DefaultMessageQueue;
+import com.github.edgar615.message.utils.MessageQueue;
+import io.lettuce.core.RedisClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Created by Edgar on 2017/3/22.
+ *
+ * @author Edgar  Date 2017/3/22
+ */
+public class RedisConsumeEventTest {
+
+  private static Logger logger = LoggerFactory.getLogger(RedisConsumeEventTest.class);
+
+  public static void main(String[] args) {
+    RedisClient redisClient = RedisClient.create("redis://tabao@192.168.1.204:6379/0");
+    RedisReadOptions options = new RedisReadOptions("user")
+        .addTopic("DeviceControlEvent")
+        .setStartId("0");
+    MessageQueue messageQueue = DefaultMessageQueue.create(100);
+    RedisMessageReadStream readStream =
+        new RedisMessageReadStream(redisClient, messageQueue, null, options);
+    ConsumerOptions consumerOptions = new ConsumerOptions()
+        .setWorkerPoolSize(5)
+        .setBlockedCheckerMs(1000);
+    MessageConsumer consumer = MessageConsumer.create(consumerOptions, messageQueue);
+    consumer.consumer(null, null, e -> {
+      logger.info("---| handle {}", e);
+    });
+    consumer.start();
+    readStream.start();
+  }
+
+}
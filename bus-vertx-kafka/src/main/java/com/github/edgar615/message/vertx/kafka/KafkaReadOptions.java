@@ -10,6 +10,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 
 /**
@@ -33,11 +34,16 @@ public class KafkaReadOptions {
 
   private final Map<String, String> configs = new HashMap<>();
 
+  /**
+   * 每个分区最多未处理完成的消息数量，默认0，即队列满时暂停所有分区
+   */
+  private int partitionBudget = 0;
+
   public KafkaReadOptions(Map<String, String> configs) {
     Objects.requireNonNull(configs);
     this.configs.putAll(configs);
     this.configs.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-    this.configs.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+    this.configs.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
   }
 
   public Long getStartingOffset(TopicPartition tp) {
@@ -93,4 +99,24 @@ public class KafkaReadOptions {
   public Map<String, String> getConfigs() {
     return configs;
   }
+
+  public int getPartitionBudget() {
+    return partitionBudget;
+  }
+
+  /**
+   * 设置每个分区最多未处理完成的消息数量.
+   * <p>
+   * 大于0时单独统计每个分区已经拉取但是还没有处理完成的消息，超过budget的分区暂停拉取，降到一半以下再恢复，其他分区不受影响.
+   * 队列满时仍然会暂停所有分区.
+   *
+   * @param partitionBudget 每个分区的消息数量
+   * @return KafkaReadOptions
+   */
+  public KafkaReadOptions setPartitionBudget(int partitionBudget) {
+    if (partitionBudget >= 0) {
+      this.partitionBudget = partitionBudget;
+    }
+    return this;
+  }
 }
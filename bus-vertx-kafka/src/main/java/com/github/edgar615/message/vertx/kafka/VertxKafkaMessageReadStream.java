@@ -8,8 +8,9 @@ import com.github.edgar615.message.utils.MessageSerDe;
 import com.github.edgar615.message.utils.LoggingMarker;
 import com.github.edgar615.message.vertx.AbstractVertxMessageReadStream;
 import com.github.edgar615.message.vertx.VertxMessageConsumerRepository;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
 import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
@@ -17,25 +18,32 @@ import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.kafka.client.common.TopicPartition;
 import io.vertx.kafka.client.consumer.KafkaConsumer;
+import io.vertx.kafka.client.consumer.KafkaConsumerRecords;
 import io.vertx.kafka.client.consumer.OffsetAndMetadata;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
 
+/**
+ * 设置了{@link KafkaReadOptions#setPartitionBudget(int)}时，单独统计每个分区已经拉取但是还没有处理完成的消息，只暂停超过budget的分区.
+ */
 public class VertxKafkaMessageReadStream extends AbstractVertxMessageReadStream {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(VertxKafkaMessageReadStream.class);
 
-  private final KafkaConsumer<String, String> consumer;
+  private final KafkaConsumer<String, byte[]> consumer;
 
   private final List<TopicPartition> partitionsAssigned = new CopyOnWriteArrayList<>();
 
@@ -51,6 +59,23 @@ public class VertxKafkaMessageReadStream extends AbstractVertxMessageReadStream
 
   private final KafkaReadOptions options;
 
+  private final int partitionBudget;
+
+  /**
+   * 每个分区未处理完成的消息数量，分区被回收时删除
+   */
+  private final Map<TopicPartition, AtomicInteger> pending = new ConcurrentHashMap<>();
+
+  /**
+   * 未处理完成的消息所在的分区，Message没有重写equals，按对象区分
+   */
+  private final Map<Message, Position> positions = new ConcurrentHashMap<>();
+
+  /**
+   * 因为超过budget暂停的分区
+   */
+  private final Set<TopicPartition> budgetPaused = ConcurrentHashMap.newKeySet();
+
   private boolean enableAutoCommit;
 
   /**
@@ -75,47 +100,115 @@ public class VertxKafkaMessageReadStream extends AbstractVertxMessageReadStream
     } else {
       enableAutoCommit = Boolean.parseBoolean(enableAutoCommitConfig.toString());
     }
+    this.partitionBudget = options.getPartitionBudget();
+    if (partitionBudget > 0) {
+      queue.addListener(this::completed);
+    }
   }
 
   @Override
   public void start() {
+    // 消息在batchHandler中批量处理，但是必须设置handler才会开始拉取
     consumer.handler(record -> {
-      Map<String, Object> extra = new HashMap<>();
-      extra.put("topic", record.topic());
-      extra.put("timestamp", record.timestamp());
-      extra.put("partition", record.partition());
-      extra.put("offset", record.offset());
+    });
+    consumer.batchHandler(this::handleRecords);
+    partitionsAssigned();
+    partitionsRevoked();
+    subscribe();
+  }
+
+
+  /**
+   * 一次拉取的消息一起反序列化、入库去重和入队，手动提交时每批只提交一次
+   */
+  private void handleRecords(KafkaConsumerRecords<String, byte[]> records) {
+    List<Message> messages = new ArrayList<>(records.size());
+    for (ConsumerRecord<String, byte[]> record : records.records()) {
       try {
         Message message = MessageSerDe.deserialize(record.topic(), record.value());
-        LOGGER.info(LoggingMarker.getLoggingMarker(message, true, extra), "poll from kafka");
-        enqueue(Lists.newArrayList(message), ar -> {
-          if (ar.failed()) {
-            return;
-          }
-          int count = ar.result();
-          // 手动提交，只要入队（DB）就认为消费了，消费失败或未正常消费的问题应该交由业务方处理
-          if (!enableAutoCommit && count > 0) {
-            commit();
-          }
-        });
+        MessageLogging.log(LOGGER, Stage.POLL, message.header().id(),
+            () -> LoggingMarker.getLoggingMarker(message, true, recordExtra(record)),
+            "poll from kafka");
+        if (partitionBudget > 0) {
+          track(new TopicPartition(record.topic(), record.partition()), message);
+        }
+        messages.add(message);
       } catch (Exception e) {
         Marker messageMarker =
-            appendEntries(extra);
+            appendEntries(recordExtra(record));
         LOGGER.warn(messageMarker, "poll from kafka, bus deserialize failed");
       }
-
-      // 记录最近的偏移量，
+      // 记录下一次要读取的偏移量
       if (!enableAutoCommit) {
         TopicPartition topicPartition = new TopicPartition(record.topic(), record.partition());
-        pollOffsets.put(topicPartition, record.offset());
+        pollOffsets.put(topicPartition, record.offset() + 1);
+      }
+    }
+    if (messages.isEmpty()) {
+      if (!enableAutoCommit) {
+        commit();
+      }
+      return;
+    }
+    enqueue(messages, ar -> {
+      if (ar.failed()) {
+        //入队失败的消息不会再complete
+        messages.forEach(this::completed);
+        return;
+      }
+      // 手动提交，只要入队（DB）就认为消费了，消费失败或未正常消费的问题应该交由业务方处理
+      if (!enableAutoCommit) {
+        commit();
       }
-
     });
-    partitionsAssigned();
-    partitionsRevoked();
-    subscribe();
   }
 
+  private Map<String, Object> recordExtra(ConsumerRecord<String, byte[]> record) {
+    Map<String, Object> extra = new HashMap<>();
+    extra.put("topic", record.topic());
+    extra.put("timestamp", record.timestamp());
+    extra.put("partition", record.partition());
+    extra.put("offset", record.offset());
+    return extra;
+  }
+
+  private void track(TopicPartition tp, Message message) {
+    AtomicInteger counter = pending.computeIfAbsent(tp, k -> new AtomicInteger());
+    positions.put(message, new Position(tp, counter));
+    if (counter.incrementAndGet() >= partitionBudget && budgetPaused.add(tp)) {
+      Map<String, Object> extra = new HashMap<>();
+      extra.put("topic", tp.getTopic());
+      extra.put("partition", tp.getPartition());
+      extra.put("pending", counter.get());
+      LOGGER.info(appendEntries(extra), "pause partition");
+      consumer.pause(tp);
+    }
+  }
+
+  private void completed(Message message) {
+    Position position = positions.remove(message);
+    if (position == null) {
+      return;
+    }
+    int count = position.counter.decrementAndGet();
+    // 分区已经被回收的消息不再影响暂停状态
+    if (count > partitionBudget / 2 || pending.get(position.tp) != position.counter) {
+      return;
+    }
+    if (budgetPaused.remove(position.tp) && !paused()) {
+      Map<String, Object> extra = new HashMap<>();
+      extra.put("topic", position.tp.getTopic());
+      extra.put("partition", position.tp.getPartition());
+      extra.put("pending", count);
+      LOGGER.info(appendEntries(extra), "resume partition");
+      consumer.resume(position.tp);
+    }
+  }
+
+  @Override
+  protected void discard(Message message) {
+    completed(message);
+  }
 
   /**
    * commit完成的消息
@@ -131,6 +224,9 @@ public class VertxKafkaMessageReadStream extends AbstractVertxMessageReadStream
         needCommitOffsets.put(topicPartition, new OffsetAndMetadata(pollOffset, null));
       }
     }
+    if (needCommitOffsets.isEmpty()) {
+      return;
+    }
     consumer.commit(needCommitOffsets, ar -> {
       if (ar.failed()) {
         LOGGER.warn("commit failed", ar.cause());
@@ -205,6 +301,8 @@ public class VertxKafkaMessageReadStream extends AbstractVertxMessageReadStream
         Marker messageMarker =
             appendEntries(extra);
         LOGGER.info(messageMarker, "partitionsRevoked");
+        pending.remove(tp);
+        budgetPaused.remove(tp);
       }
     });
   }
@@ -284,11 +382,26 @@ public class VertxKafkaMessageReadStream extends AbstractVertxMessageReadStream
   @Override
   public boolean resume() {
     boolean result = super.resume();
-    consumer.resume(new HashSet<>(partitionsAssigned), ar -> {
+    // 超过budget的分区保持暂停
+    Set<TopicPartition> partitions = new HashSet<>(partitionsAssigned);
+    partitions.removeAll(budgetPaused);
+    consumer.resume(partitions, ar -> {
       if (ar.failed()) {
         super.pause();
       }
     });
     return result;
   }
+
+  private static class Position {
+
+    private final TopicPartition tp;
+
+    private final AtomicInteger counter;
+
+    private Position(TopicPartition tp, AtomicInteger counter) {
+      this.tp = tp;
+      this.counter = counter;
+    }
+  }
 }
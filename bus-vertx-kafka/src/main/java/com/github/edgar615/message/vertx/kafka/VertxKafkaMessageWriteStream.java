@@ -2,53 +2,68 @@ package com.github.edgar615.message.vertx.kafka;
 
 import static net.logstash.logback.marker.Markers.append;
 
+import com.github.edgar615.message.bus.SendResult;
 import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.utils.MessageSerDe;
 import com.github.edgar615.message.utils.LoggingMarker;
 import com.github.edgar615.message.vertx.VertxMessageWriteStream;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.kafka.client.producer.KafkaProducer;
 import io.vertx.kafka.client.producer.KafkaProducerRecord;
 import io.vertx.kafka.client.producer.RecordMetadata;
+import java.util.List;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.Marker;
 
 public class VertxKafkaMessageWriteStream implements VertxMessageWriteStream {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(VertxKafkaMessageWriteStream.class);
 
-  private final KafkaProducer<String, String> producer;
+  private final KafkaProducer<String, byte[]> producer;
+
+  private final KafkaWriteOptions options;
+
+  private final Vertx vertx;
 
   public VertxKafkaMessageWriteStream(Vertx vertx, KafkaWriteOptions options) {
+    this.vertx = vertx;
+    this.options = options;
     this.producer = KafkaProducer.create(vertx, options.getConfigs());
   }
 
   @Override
   public void send(Message message, Handler<AsyncResult<Message>> resultHandler) {
-    LOGGER.info(LoggingMarker.getLoggingMarker(message, false), "waiting for send");
+    MessageLogging.log(LOGGER, Stage.SEND, message.header().id(),
+        () -> LoggingMarker.getLoggingMarker(message, false), "waiting for send");
 
-    String source = null;
+    byte[] source = null;
     try {
-      source = MessageSerDe.serialize(message);
+      source = MessageSerDe
+          .serializeToBytes(message, options.getFormat(message.header().to()));
     } catch (Exception e) {
       resultHandler.handle(Future.failedFuture(e));
+      return;
     }
 
-    KafkaProducerRecord<String, String> record =
+    KafkaProducerRecord<String, byte[]> record =
         KafkaProducerRecord.create(message.header().to(), source);
     producer.send(record, done -> {
       if (done.succeeded()) {
         RecordMetadata recordMetadata = done.result();
-        Marker messageMarker =
-            append("traceId", message.header().id())
+        MessageLogging.log(LOGGER, Stage.SEND, message.header().id(),
+            () -> append("traceId", message.header().id())
                 .and(append("topic", recordMetadata.getTopic()))
                 .and(append("partition", recordMetadata.getPartition()))
-                .and(append("offset", recordMetadata.getOffset()));
-        LOGGER.info(messageMarker, "write to kafka");
+                .and(append("offset", recordMetadata.getOffset())),
+            "write to kafka");
         resultHandler.handle(Future.succeededFuture(message));
       } else {
         LOGGER.info(LoggingMarker.getIdLoggingMarker(message.header().id()), "write to kafka failed");
@@ -58,6 +73,52 @@ public class VertxKafkaMessageWriteStream implements VertxMessageWriteStream {
     });
   }
 
+  /**
+   * 批量发送，所有消息在一个worker任务中交给底层的KafkaProducer，不再逐条切换线程，结果在调用者的context中回调.
+   */
+  @Override
+  public void sendAll(List<Message> messages,
+      Handler<AsyncResult<SendResult>> resultHandler) {
+    Context context = vertx.getOrCreateContext();
+    SendResult.Collector collector = SendResult.collect(messages,
+        result -> context.runOnContext(v -> resultHandler.handle(Future.succeededFuture(result))));
+    if (messages.isEmpty()) {
+      return;
+    }
+    Producer<String, byte[]> kafkaProducer = producer.asStream().unwrap();
+    vertx.<Void>executeBlocking(future -> {
+      for (int i = 0; i < messages.size(); i++) {
+        int index = i;
+        Message message = messages.get(i);
+        try {
+          byte[] source = MessageSerDe
+              .serializeToBytes(message, options.getFormat(message.header().to()));
+          ProducerRecord<String, byte[]> record =
+              new ProducerRecord<>(message.header().to(), source);
+          kafkaProducer.send(record, (metadata, exception) -> {
+            if (exception == null) {
+              MessageLogging.log(LOGGER, Stage.SEND, message.header().id(),
+                  () -> append("traceId", message.header().id())
+                      .and(append("topic", metadata.topic()))
+                      .and(append("partition", metadata.partition()))
+                      .and(append("offset", metadata.offset())),
+                  "write to kafka");
+              collector.succeed(index);
+            } else {
+              LOGGER.info(LoggingMarker.getIdLoggingMarker(message.header().id()),
+                  "write to kafka failed");
+              collector.fail(index, exception);
+            }
+          });
+        } catch (Exception e) {
+          collector.fail(index, e);
+        }
+      }
+      future.complete();
+    }, false, ar -> {
+    });
+  }
+
   @Override
   public void close() {
     this.producer.close();
@@ -0,0 +1,108 @@
+package com.github.edgar615.message.vertx.memory;
+
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.memory.MemoryBroker;
+import com.github.edgar615.message.memory.MemoryReadOptions;
+import com.github.edgar615.message.memory.MemorySubscription;
+import com.github.edgar615.message.utils.MessageQueue;
+import com.github.edgar615.message.vertx.AbstractVertxMessageReadStream;
+import com.github.edgar615.message.vertx.VertxMessageConsumerRepository;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 从{@link MemoryBroker}读取消息.
+ * <p>
+ * 写入消息时由MemoryBroker通知，在自己的context中不阻塞地拉取，一批消息入队之后立即拉取下一批；
+ * 另外每隔blockMs检查一次，用于从暂停状态恢复之后继续拉取.
+ *
+ * @author Edgar
+ */
+public class VertxMemoryMessageReadStream extends AbstractVertxMessageReadStream {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VertxMemoryMessageReadStream.class);
+
+  private final Vertx vertx;
+
+  private final MemoryBroker broker;
+
+  private final MemoryReadOptions options;
+
+  private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+  private final Runnable listener = this::schedulePoll;
+
+  private MemorySubscription subscription;
+
+  private Context context;
+
+  private long timerId = -1;
+
+  /**
+   * 上一批消息是否还在入队，只在context中访问
+   */
+  private boolean enqueuing = false;
+
+  private volatile boolean closed = false;
+
+  public VertxMemoryMessageReadStream(Vertx vertx, MemoryBroker broker, MessageQueue queue,
+      VertxMessageConsumerRepository consumerRepository, MemoryReadOptions options) {
+    super(vertx, queue, consumerRepository);
+    this.vertx = vertx;
+    this.broker = broker;
+    this.options = options;
+  }
+
+  @Override
+  public void start() {
+    this.context = vertx.getOrCreateContext();
+    this.subscription = broker.subscribe(options);
+    LOGGER.info("subscribe {}, group:{}, consumer:{}, assignment:{}", options.getTopics(),
+        options.getGroup(), options.getConsumer(), subscription.assignment());
+    broker.addListener(listener);
+    timerId = vertx.setPeriodic(options.getBlockMs(), l -> schedulePoll());
+    schedulePoll();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    broker.removeListener(listener);
+    if (timerId >= 0) {
+      vertx.cancelTimer(timerId);
+    }
+    if (subscription != null) {
+      subscription.close();
+    }
+  }
+
+  private void schedulePoll() {
+    if (!closed && scheduled.compareAndSet(false, true)) {
+      context.runOnContext(v -> poll());
+    }
+  }
+
+  private void poll() {
+    scheduled.set(false);
+    if (closed || enqueuing || paused()) {
+      return;
+    }
+    List<Message> messages = subscription.poll(options.getBatchSize(), 0);
+    if (messages.isEmpty()) {
+      return;
+    }
+    enqueuing = true;
+    enqueue(messages, ar -> {
+      enqueuing = false;
+      if (ar.failed()) {
+        // 偏移量在拉取时已经提交，这些消息不会重新投递
+        LOGGER.error("enqueue {} records failed", messages.size(), ar.cause());
+      }
+      schedulePoll();
+    });
+  }
+}
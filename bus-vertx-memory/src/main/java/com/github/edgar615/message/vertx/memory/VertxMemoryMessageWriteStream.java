@@ -0,0 +1,53 @@
+package com.github.edgar615.message.vertx.memory;
+
+import static net.logstash.logback.marker.Markers.append;
+
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.memory.MemoryBroker;
+import com.github.edgar615.message.utils.LoggingMarker;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
+import com.github.edgar615.message.vertx.VertxMessageWriteStream;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 把消息写入{@link MemoryBroker}，写入是同步的，在调用send的线程中回调.
+ *
+ * @author Edgar
+ */
+public class VertxMemoryMessageWriteStream implements VertxMessageWriteStream {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VertxMessageWriteStream.class);
+
+  private final MemoryBroker broker;
+
+  public VertxMemoryMessageWriteStream(MemoryBroker broker) {
+    this.broker = broker;
+  }
+
+  @Override
+  public void send(Message message, Handler<AsyncResult<Message>> handler) {
+    long offset;
+    try {
+      offset = broker.append(message);
+    } catch (Exception e) {
+      LOGGER.info(LoggingMarker.getIdLoggingMarker(message.header().id()), "write to memory failed");
+      handler.handle(Future.failedFuture(e));
+      return;
+    }
+    MessageLogging.log(LOGGER, Stage.SEND, message.header().id(),
+        () -> append("traceId", message.header().id())
+            .and(append("topic", message.header().to()))
+            .and(append("offset", offset)),
+        "write to memory");
+    handler.handle(Future.succeededFuture(message));
+  }
+
+  @Override
+  public void close() {
+  }
+}
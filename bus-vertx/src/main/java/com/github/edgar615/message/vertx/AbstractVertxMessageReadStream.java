@@ -2,13 +2,19 @@ package com.github.edgar615.message.vertx;
 
 import com.github.edgar615.message.bus.MessageReadStream;
 import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.repository.PartialInsertException;
 import com.github.edgar615.message.utils.MessageQueue;
 import com.github.edgar615.message.utils.LoggingMarker;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
+import com.github.edgar615.message.utils.MessageMetrics;
+import com.github.edgar615.message.utils.MessageMetricsHolder;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
@@ -44,6 +50,9 @@ public abstract class AbstractVertxMessageReadStream implements VertxMessageRead
     boolean result = pause.compareAndSet(false, true);
     int count = pauseCount.incrementAndGet();
     latestPaused = System.currentTimeMillis();
+    if (result) {
+      MessageMetricsHolder.get().paused();
+    }
     LOGGER.info("pause poll, pause times:{}", count);
     return result;
   }
@@ -51,7 +60,11 @@ public abstract class AbstractVertxMessageReadStream implements VertxMessageRead
   @Override
   public boolean resume() {
     boolean result = pause.compareAndSet(true, false);
-    LOGGER.info("resume poll, paused {}ms", System.currentTimeMillis() - latestPaused);
+    long duration = System.currentTimeMillis() - latestPaused;
+    if (result) {
+      MessageMetricsHolder.get().resumed(duration);
+    }
+    LOGGER.info("resume poll, paused {}ms", duration);
     return result;
   }
 
@@ -65,26 +78,60 @@ public abstract class AbstractVertxMessageReadStream implements VertxMessageRead
    */
   public final void enqueue(List<Message> messages, Handler<AsyncResult<Integer>> handler) {
     if (messages.size() > 0) {
+      MessageMetricsHolder.get().polled(messages.size());
       LOGGER.info("poll {} records", messages.size());
     }
-    for (Message message : messages) {
-      //先入库
-      if (consumerRepository != null) {
-        Future<Boolean> duplicated = Future.future();
-        consumerRepository.insert(message, duplicated);
-        duplicated.setHandler(dar -> {
-          if (dar.succeeded() && dar.result()) {
-            LOGGER.info(LoggingMarker.getLoggingMarker(message, true), "duplicate message, do nothing");
-          } else if (dar.succeeded() && !dar.result()) {
-            queue.enqueue(message);
-            LOGGER.info(LoggingMarker.getLoggingMarker(message, true), "poll and enqueue");
-          }
-        });
-      } else {
+    if (consumerRepository == null || messages.isEmpty()) {
+      for (Message message : messages) {
         queue.enqueue(message);
-        LOGGER.info(LoggingMarker.getLoggingMarker(message, true), "poll and enqueue");
+        logEnqueue(message, "poll and enqueue");
       }
+      handler.handle(Future.succeededFuture(checkPause(messages.size())));
+      return;
     }
+    //先入库，一次拉取的消息批量去重
+    long start = System.nanoTime();
+    consumerRepository.insertAll(messages, ar -> {
+      MessageMetricsHolder.get().called(MessageMetrics.INSERT_ALL, System.nanoTime() - start,
+          ar.succeeded());
+      if (ar.failed()) {
+        LOGGER.error("insert {} records failed", messages.size(), ar.cause());
+        if (ar.cause() instanceof PartialInsertException) {
+          //已经入库的消息再次拉取时是重复消息，必须放入队列
+          Set<String> inserted = ((PartialInsertException) ar.cause()).inserted();
+          for (Message message : messages) {
+            if (inserted.contains(message.header().id())) {
+              queue.enqueue(message);
+              logEnqueue(message, "poll and enqueue");
+            }
+          }
+        }
+        handler.handle(Future.failedFuture(ar.cause()));
+        return;
+      }
+      Set<String> inserted = ar.result();
+      for (Message message : messages) {
+        if (inserted.contains(message.header().id())) {
+          queue.enqueue(message);
+          logEnqueue(message, "poll and enqueue");
+        } else {
+          logEnqueue(message, "duplicate message, do nothing");
+          discard(message);
+        }
+      }
+      handler.handle(Future.succeededFuture(checkPause(messages.size())));
+    });
+  }
+
+  /**
+   * 重复的消息不会放入队列，也就不会被complete，需要跟踪消息处理进度的实现可以在这里把消息当作已经处理完成
+   *
+   * @param message 重复的消息
+   */
+  protected void discard(Message message) {
+  }
+
+  private int checkPause(int count) {
     //暂停和恢复，避免过多的消息造成内存溢出
     if (pause.get()) {
       //队列中等待的消息降到一半才恢复
@@ -94,12 +141,10 @@ public abstract class AbstractVertxMessageReadStream implements VertxMessageRead
     } else {
       if (checkPauseCondition()) {
         pause();
-        handler.handle(Future.succeededFuture(0));
-        return;
+        return 0;
       }
     }
-    handler.handle(Future.succeededFuture(messages.size()));
-
+    return count;
   }
 
   protected final boolean checkPauseCondition() {
@@ -109,4 +154,9 @@ public abstract class AbstractVertxMessageReadStream implements VertxMessageRead
   protected final boolean checkResumeCondition() {
     return queue.isLowWaterMark();
   }
+
+  private void logEnqueue(Message message, String msg) {
+    MessageLogging.log(LOGGER, Stage.ENQUEUE, message.header().id(),
+        () -> LoggingMarker.getLoggingMarker(message, true), msg);
+  }
 }
@@ -1,14 +1,13 @@
 package com.github.edgar615.message.vertx;
 
-import com.google.common.base.MoreObjects;
-import com.google.common.collect.Maps;
+import com.github.edgar615.message.bus.HandlerIndex;
 import java.util.Collection;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.stream.Collectors;
+import java.util.List;
 
 /**
  * 借鉴guava的eventbus代码.
+ * <p>
+ * 处理器按topic/resource索引，查找结果会被缓存，见{@link HandlerIndex}.
  *
  * @author Edgar  Date 2017/4/14
  */
@@ -16,8 +15,7 @@ class VertxHandlerRegistry {
 
   private static final VertxHandlerRegistry INSTANCE = new VertxHandlerRegistry();
 
-  private final ConcurrentMap<VertxHandlerKey, CopyOnWriteArraySet<VertxMessageHandler>> handlers =
-      Maps.newConcurrentMap();
+  private final HandlerIndex<VertxMessageHandler> handlers = HandlerIndex.create();
 
   private VertxHandlerRegistry() {
   }
@@ -27,44 +25,22 @@ class VertxHandlerRegistry {
   }
 
   void register(VertxHandlerKey key, VertxMessageHandler handler) {
-    Collection<VertxMessageHandler> eventHandlers = handlers.get(key);
-    if (eventHandlers == null) {
-      CopyOnWriteArraySet<VertxMessageHandler> newSet = new CopyOnWriteArraySet<>();
-      eventHandlers =
-          MoreObjects.firstNonNull(handlers.putIfAbsent(key, newSet), newSet);
-    }
-    eventHandlers.add(handler);
+    handlers.register(key.topic(), key.resource(), handler);
   }
 
   void unregister(VertxHandlerKey key, VertxMessageHandler handler) {
-    Collection<VertxMessageHandler> eventHandlers = handlers.get(key);
-    if (eventHandlers == null) {
-      return;
-    }
-    eventHandlers.remove(handler);
+    handlers.unregister(key.topic(), key.resource(), handler);
   }
 
   void unregisterAll(VertxHandlerKey key) {
-    handlers.remove(key);
+    handlers.unregisterAll(key.topic(), key.resource());
   }
 
   Collection<VertxMessageHandler> findAllHandler(VertxHandlerKey key) {
-    return handlers.keySet().stream()
-        .filter(registerKey -> this.match(registerKey, key))
-        .flatMap(
-            registerKey -> handlers.getOrDefault(registerKey, new CopyOnWriteArraySet<>()).stream())
-        .collect(Collectors.toList());
+    return handlers.find(key.topic(), key.resource());
   }
 
-  private boolean match(VertxHandlerKey registerKey, VertxHandlerKey eventKey) {
-    boolean topicMatch = true;
-    if (registerKey.topic() != null) {
-      topicMatch = registerKey.topic().equals(eventKey.topic());
-    }
-    boolean resourceMatch = true;
-    if (registerKey.resource() != null) {
-      resourceMatch = registerKey.resource().equals(eventKey.resource());
-    }
-    return topicMatch && resourceMatch;
+  List<VertxMessageHandler> findAllHandler(String topic, String resource) {
+    return handlers.find(topic, resource);
   }
 }
@@ -2,9 +2,15 @@ package com.github.edgar615.message.vertx;
 
 import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.ConsumeMessageState;
+import com.github.edgar615.message.repository.PartialInsertException;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Created by Edgar on 2018/5/12.
@@ -16,10 +22,48 @@ public interface VertxMessageConsumerRepository {
   /**
    * 插入一个事件，插入的过程中需要判断任务是否是重复消息，重复消息不在继续处理
    *
-   * @return 重复消息false，非重复消息 true
+   * @return 重复消息true，非重复消息 false
    */
   void insert(Message message, Handler<AsyncResult<Boolean>> resultHandler);
 
+  /**
+   * 批量插入事件，一次拉取的消息只需要一次入库.
+   * <p>
+   * 默认实现逐条调用insert，实现类可以覆盖这个方法，例如使用一条多行的insert ignore语句完成去重.
+   * 如果失败时已经有消息写入，需要以{@link PartialInsertException}失败，否则这些消息会被当作重复消息永远不会被处理.
+   *
+   * @param messages 消息列表
+   * @param resultHandler 非重复消息的ID，这些消息需要继续处理
+   */
+  default void insertAll(List<Message> messages, Handler<AsyncResult<Set<String>>> resultHandler) {
+    List<Future<Boolean>> futures = new ArrayList<>(messages.size());
+    for (Message message : messages) {
+      Future<Boolean> future = Future.future();
+      insert(message, future);
+      futures.add(future);
+    }
+    //等待所有的insert都有结果，不能在第一条失败时就返回
+    CompositeFuture.join(new ArrayList<>(futures)).setHandler(ar -> {
+      Set<String> inserted = new LinkedHashSet<>();
+      Throwable cause = null;
+      for (int i = 0; i < messages.size(); i++) {
+        Future<Boolean> future = futures.get(i);
+        if (future.failed()) {
+          cause = cause == null ? future.cause() : cause;
+        } else if (!future.result()) {
+          inserted.add(messages.get(i).header().id());
+        }
+      }
+      if (cause == null) {
+        resultHandler.handle(Future.succeededFuture(inserted));
+      } else if (inserted.isEmpty()) {
+        resultHandler.handle(Future.failedFuture(cause));
+      } else {
+        resultHandler.handle(Future.failedFuture(new PartialInsertException(inserted, cause)));
+      }
+    });
+  }
+
   /**
    * 从数据库中取出十条未处理的事件
    *
@@ -2,6 +2,8 @@ package com.github.edgar615.message.vertx;
 
 import com.github.edgar615.message.bus.MessageProducerScheduler;
 import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.utils.MessageMetrics;
+import com.github.edgar615.message.utils.MessageMetricsHolder;
 import com.github.edgar615.message.utils.MessageQueue;
 import io.vertx.core.Vertx;
 import java.util.List;
@@ -77,7 +79,10 @@ class VertxMessageConsumerSchedulerImpl implements VertxMessageConsumerScheduler
       schedule(fetchPeriod);
       return;
     }
+    long start = System.nanoTime();
     eventConsumerRepository.waitingForConsume(ar -> {
+      MessageMetricsHolder.get().called(MessageMetrics.WAITING_FOR_CONSUME,
+          System.nanoTime() - start, ar.succeeded());
       if (ar.failed()) {
         schedule(fetchPeriod);
         return;
@@ -6,19 +6,29 @@ import com.github.edgar615.message.bus.ConsumerOptions;
 import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.ConsumeMessageState;
 import com.github.edgar615.message.utils.MessageQueue;
+import com.github.edgar615.message.utils.MessageQueueListener;
 import com.github.edgar615.message.utils.LoggingMarker;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
+import com.github.edgar615.message.utils.MessageMetricsHolder;
 import com.google.common.collect.ImmutableMap;
-import io.vertx.core.AsyncResult;
 import io.vertx.core.CompositeFuture;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
-import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * 消息入队时由队列通知消费者，消费者在自己的context中从队列取出消息处理，最多同时处理maxInFlight条消息，
+ * 一条消息处理完成后立即取下一条.
+ * <p>
+ * 队列不支持监听器时退化成每隔100毫秒检查一次队列.
+ */
 class VertxMessageConsumreImpl implements VertxMessageConsumer {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(VertxMessageConsumer.class);
@@ -30,11 +40,25 @@ class VertxMessageConsumreImpl implements VertxMessageConsumer {
 
   private final long blockedCheckerMs;
 
-  private final Handler<AsyncResult<Message>> resultHandler;
-
   private final Vertx vertx;
 
-  private long timerId;
+  private final int maxInFlight;
+
+  /**
+   * 正在处理的消息数量，只在context中访问
+   */
+  private int inFlight = 0;
+
+  /**
+   * 是否已经提交了取消息的任务，避免每次入队都提交一个任务
+   */
+  private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+  private Context context;
+
+  private long timerId = -1;
+
+  private volatile boolean running = false;
 
   VertxMessageConsumreImpl(Vertx vertx, ConsumerOptions options, MessageQueue queue,
       VertxMessageConsumerRepository consumerRepository) {
@@ -44,22 +68,38 @@ class VertxMessageConsumreImpl implements VertxMessageConsumer {
     // TODO blocker
     this.blockedCheckerMs = options.getBlockedCheckerMs();
     this.checker = BlockedMessageChecker.create(this.blockedCheckerMs);
-//    running = true;
-    this.resultHandler = ar -> {
-      messageQueue.complete(ar.result());
-      //处理完成后立刻拉取下一个消息
-      schedule(0);
-    };
+    this.maxInFlight = options.getMaxInFlight();
+    MessageMetricsHolder.get().register("vertx-consumer", queue);
   }
 
   @Override
   public void start() {
-    schedule(100);
+    this.context = vertx.getOrCreateContext();
+    running = true;
+    try {
+      messageQueue.addListener(new MessageQueueListener() {
+        @Override
+        public void onComplete(Message message) {
+        }
+
+        @Override
+        public void onEnqueue(int count) {
+          scheduleDrain();
+        }
+      });
+    } catch (UnsupportedOperationException e) {
+      LOGGER.warn("queue does not support listener, check it every 100ms");
+      timerId = vertx.setPeriodic(100, l -> drain());
+    }
+    scheduleDrain();
   }
 
   @Override
   public void close() {
-    vertx.cancelTimer(timerId);
+    running = false;
+    if (timerId >= 0) {
+      vertx.cancelTimer(timerId);
+    }
     checker.close();
   }
 
@@ -70,43 +110,65 @@ class VertxMessageConsumreImpl implements VertxMessageConsumer {
 
   @Override
   public long waitForHandle() {
-    return 0;
+    return messageQueue.size();
   }
 
   @Override
   public boolean isRunning() {
-    return false;
+    return running;
   }
 
-  private void schedule(long delay) {
-    if (delay > 0) {
-      timerId = vertx.setTimer(delay, l -> run(resultHandler));
-    } else {
-      run(resultHandler);
+  private void scheduleDrain() {
+    if (drainScheduled.compareAndSet(false, true)) {
+      context.runOnContext(v -> {
+        drainScheduled.set(false);
+        drain();
+      });
     }
   }
 
-  private void run(Handler<AsyncResult<Message>> resultHandler) {
-    Message message = messageQueue.poll();
-    if (message == null) {
-      //如果没有事件，等待100毫秒
-      schedule(100);
-      return;
+  /**
+   * 在context中执行，取出消息直到达到maxInFlight或者队列中没有可以处理的消息
+   */
+  private void drain() {
+    while (running && inFlight < maxInFlight) {
+      Message message = messageQueue.poll();
+      if (message == null) {
+        return;
+      }
+      inFlight++;
+      doHandle(message);
     }
-    doHandle(message, resultHandler);
   }
 
-  private void doHandle(Message message, Handler<AsyncResult<Message>> resultHandler) {
+  private void finished(Message message) {
+    messageQueue.complete(message);
+    if (Vertx.currentContext() == context) {
+      inFlight--;
+      // 处理器可能同步完成，不能直接调用drain，否则每条消息都会增加调用栈的深度
+      scheduleDrain();
+    } else {
+      // 处理器可能在其他context中回调
+      context.runOnContext(v -> {
+        inFlight--;
+        drain();
+      });
+    }
+  }
+
+  private void doHandle(Message message) {
     BlockedMessageHolder holder = BlockedMessageHolder
         .create(message.header().id(), blockedCheckerMs);
     if (checker != null) {
       checker.register(holder);
     }
-    long start = System.currentTimeMillis();
+    long start = System.nanoTime();
+    String topic = message.header().to();
+    String resource = message.body().resource();
     Future<CompositeFuture> completeFuture = Future.future();
-    Collection<VertxMessageHandler> handlers = VertxHandlerRegistry.instance()
-        .findAllHandler(new VertxHandlerKey(message.header().to(), message.body().resource()));
-    if (handlers == null || handlers.isEmpty()) {
+    List<VertxMessageHandler> handlers = VertxHandlerRegistry.instance()
+        .findAllHandler(topic, resource);
+    if (handlers.isEmpty()) {
       LOGGER.warn(LoggingMarker.getIdLoggingMarker(message.header().id()), "no handler");
       completeFuture.complete();
     } else {
@@ -114,31 +176,38 @@ class VertxMessageConsumreImpl implements VertxMessageConsumer {
       for (VertxMessageHandler handler : handlers) {
         Future<Void> future = Future.future();
         futures.add(future);
-        handler.handle(message, ar -> {
-          if (ar.succeeded()) {
-            future.complete();
-          } else {
-            future.fail(ar.cause());
-          }
-        });
+        try {
+          handler.handle(message, ar -> {
+            if (ar.succeeded()) {
+              future.tryComplete();
+            } else {
+              future.tryFail(ar.cause());
+            }
+          });
+        } catch (Exception e) {
+          // 处理器同步抛出异常时按处理失败处理，否则这条消息永远不会完成
+          future.tryFail(e);
+        }
       }
       CompositeFuture.all(futures)
           .setHandler(completeFuture);
     }
     completeFuture.setHandler(ar -> {
+      long nanos = System.nanoTime() - start;
+      MessageMetricsHolder.get().handled(topic, resource, nanos, ar.succeeded());
       if (ar.succeeded()) {
-        long duration = System.currentTimeMillis() - start;
-        LOGGER.info(
-            LoggingMarker.getLoggingMarker(message.header().id(), ImmutableMap.of("duration", duration)),
+        MessageLogging.log(LOGGER, Stage.CONSUME, message.header().id(),
+            () -> LoggingMarker.getLoggingMarker(message.header().id(),
+                ImmutableMap.of("duration", TimeUnit.NANOSECONDS.toMillis(nanos))),
             "consume succeed");
-        resultHandler.handle(Future.succeededFuture(message));
+        finished(message);
         if (consumerRepository != null) {
           markSucess(message);
         }
       } else {
         LOGGER.error(LoggingMarker.getIdLoggingMarker(message.header().id()), "consume failed",
             ar.cause().getMessage());
-        resultHandler.handle(Future.failedFuture(ar.cause()));
+        finished(message);
         if (consumerRepository != null) {
           markFailed(message, ar.cause());
         }
@@ -1,9 +1,12 @@
 package com.github.edgar615.message.vertx;
 
+import com.github.edgar615.message.bus.SendResult;
 import com.github.edgar615.message.core.Message;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import java.util.List;
 
 /**
  * Created by Edgar on 2019/7/16.
@@ -14,6 +17,27 @@ public interface VertxMessageProducer {
 
   void send(Message message, Handler<AsyncResult<Message>> resultHandler);
 
+  /**
+   * 批量发送消息.
+   *
+   * @param messages 消息
+   * @param resultHandler 所有消息都有了结果之后回调，每条消息的结果从SendResult中获取
+   */
+  default void sendAll(List<Message> messages, Handler<AsyncResult<SendResult>> resultHandler) {
+    SendResult.Collector collector = SendResult.collect(messages,
+        result -> resultHandler.handle(Future.succeededFuture(result)));
+    for (int i = 0; i < messages.size(); i++) {
+      int index = i;
+      send(messages.get(i), ar -> {
+        if (ar.succeeded()) {
+          collector.succeed(index);
+        } else {
+          collector.fail(index, ar.cause());
+        }
+      });
+    }
+  }
+
   void save(Message message, Handler<AsyncResult<Void>> resultHandler);
 
   void close();
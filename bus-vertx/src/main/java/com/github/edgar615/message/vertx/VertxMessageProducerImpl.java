@@ -1,10 +1,16 @@
 package com.github.edgar615.message.vertx;
 
+import com.github.edgar615.message.bus.SendResult;
 import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.utils.LoggingMarker;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
+import com.github.edgar615.message.utils.MessageMetrics;
+import com.github.edgar615.message.utils.MessageMetricsHolder;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,6 +22,11 @@ class VertxMessageProducerImpl implements VertxMessageProducer {
 
   private final VertxMessageWriteStream writeStream;
 
+  /**
+   * 记录发送指标时使用的名称
+   */
+  private final String streamName;
+
   private final VertxMessageProducerRepository producerRepository;
 
   VertxMessageProducerImpl(Vertx vertx,
@@ -23,16 +34,21 @@ class VertxMessageProducerImpl implements VertxMessageProducer {
       VertxMessageProducerRepository producerRepository) {
     this.vertx = vertx;
     this.writeStream = writeStream;
+    this.streamName = writeStream.getClass().getSimpleName();
     this.producerRepository = producerRepository;
   }
 
   @Override
   public void send(Message message, Handler<AsyncResult<Message>> resultHandler) {
-    LOGGER.info(LoggingMarker.getLoggingMarker(message, false), "waiting for send");
     String id = message.header().id();
+    MessageLogging.log(LOGGER, Stage.SEND, id,
+        () -> LoggingMarker.getLoggingMarker(message, false), "waiting for send");
+    long start = System.nanoTime();
     writeStream.send(message, ar -> {
+      MessageMetricsHolder.get().sent(streamName, System.nanoTime() - start, ar.succeeded());
       if (ar.succeeded()) {
-        LOGGER.info(LoggingMarker.getIdLoggingMarker(id), "send succeed");
+        MessageLogging.log(LOGGER, Stage.SEND, id,
+            () -> LoggingMarker.getIdLoggingMarker(id), "send succeed");
       } else {
         LOGGER.error(LoggingMarker.getIdLoggingMarker(id), "send failed", ar.cause().getMessage());
       }
@@ -40,14 +56,47 @@ class VertxMessageProducerImpl implements VertxMessageProducer {
     });
   }
 
+  @Override
+  public void sendAll(List<Message> messages, Handler<AsyncResult<SendResult>> resultHandler) {
+    LOGGER.debug("waiting for send {} messages", messages.size());
+    long start = System.nanoTime();
+    writeStream.sendAll(messages, ar -> {
+      MessageMetrics metrics = MessageMetricsHolder.get();
+      long duration = System.nanoTime() - start;
+      if (ar.succeeded()) {
+        SendResult result = ar.result();
+        for (int i = 0; i < messages.size(); i++) {
+          String id = messages.get(i).header().id();
+          metrics.sent(streamName, duration, result.succeeded(i));
+          if (!result.succeeded(i)) {
+            LOGGER.error(LoggingMarker.getIdLoggingMarker(id), "send failed",
+                result.cause(i).getMessage());
+          } else {
+            MessageLogging.log(LOGGER, Stage.SEND, id,
+                () -> LoggingMarker.getIdLoggingMarker(id), "send succeed");
+          }
+        }
+      } else {
+        for (int i = 0; i < messages.size(); i++) {
+          metrics.sent(streamName, duration, false);
+        }
+      }
+      resultHandler.handle(ar);
+    });
+  }
+
   @Override
   public void save(Message message, Handler<AsyncResult<Void>> resultHandler) {
     if (producerRepository == null) {
       throw new UnsupportedOperationException("required repository");
     }
+    long start = System.nanoTime();
     producerRepository.insert(message, ar -> {
+      MessageMetricsHolder.get().called(MessageMetrics.INSERT, System.nanoTime() - start,
+          ar.succeeded());
       if (ar.succeeded()) {
-        LOGGER.info(LoggingMarker.getLoggingMarker(message, false), "write to db, waiting for send");
+        MessageLogging.log(LOGGER, Stage.SEND, message.header().id(),
+            () -> LoggingMarker.getLoggingMarker(message, false), "write to db, waiting for send");
       } else {
         LOGGER.error(LoggingMarker.getLoggingMarker(message, false), "write to db failed");
       }
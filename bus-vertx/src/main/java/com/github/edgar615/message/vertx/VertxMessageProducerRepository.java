@@ -3,6 +3,7 @@ package com.github.edgar615.message.vertx;
 import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.SendMessageState;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import java.util.List;
 
@@ -37,6 +38,15 @@ public interface VertxMessageProducerRepository {
    */
   void waitingForSend(int fetchCount, Handler<AsyncResult<List<Message>>> resultHandler);
 
+  /**
+   * 统计未处理的事件数量，用于记录积压的指标，默认返回-1表示不支持统计.
+   *
+   * @param resultHandler 待发送的事件数量，-1表示未知
+   */
+  default void countWaitingForSend(Handler<AsyncResult<Integer>> resultHandler) {
+    resultHandler.handle(Future.succeededFuture(-1));
+  }
+
   /**
    * 标记事件,这个方法应该尽量不要阻塞发布线程，否则会影响发布事件的性能。
    *
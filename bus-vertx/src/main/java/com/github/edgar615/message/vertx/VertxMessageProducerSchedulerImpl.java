@@ -4,6 +4,10 @@ import com.github.edgar615.message.bus.MessageProducerScheduler;
 import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.SendMessageState;
 import com.github.edgar615.message.utils.LoggingMarker;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
+import com.github.edgar615.message.utils.MessageMetrics;
+import com.github.edgar615.message.utils.MessageMetricsHolder;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 import java.util.ArrayList;
@@ -32,6 +36,11 @@ class VertxMessageProducerSchedulerImpl implements VertxMessageProducerScheduler
 
   private final VertxMessageWriteStream writeStream;
 
+  /**
+   * 记录发送指标时使用的名称
+   */
+  private final String streamName;
+
   private final AtomicInteger processing = new AtomicInteger(0);
 
   private volatile boolean closed = false;
@@ -45,6 +54,7 @@ class VertxMessageProducerSchedulerImpl implements VertxMessageProducerScheduler
       VertxMessageWriteStream writeStream, long fetchPeriod) {
     this.vertx = vertx;
     this.writeStream = writeStream;
+    this.streamName = writeStream.getClass().getSimpleName();
     this.eventProducerRepository = eventProducerRepository;
     if (fetchPeriod <= 0) {
       this.fetchPeriod = DEFAULT_PREIOD;
@@ -83,12 +93,16 @@ class VertxMessageProducerSchedulerImpl implements VertxMessageProducerScheduler
       return;
     }
     Future<List<Message>> future = Future.future();
+    long start = System.nanoTime();
     eventProducerRepository.waitingForSend(ar -> {
+      MessageMetrics metrics = MessageMetricsHolder.get();
+      metrics.called(MessageMetrics.WAITING_FOR_SEND, System.nanoTime() - start, ar.succeeded());
       if (ar.failed()) {
         future.complete(new ArrayList<>());
         return;
       }
       List<Message> waitingForSend = ar.result();
+      recordBacklog(metrics);
       LOGGER.trace("{} events to be send", waitingForSend.size());
       //没有数据，等待
       if (waitingForSend.isEmpty()) {
@@ -101,11 +115,31 @@ class VertxMessageProducerSchedulerImpl implements VertxMessageProducerScheduler
     future.compose(this::doSend);
   }
 
+  /**
+   * 记录存储中等待发送的消息数量，存储不支持统计时不记录
+   */
+  private void recordBacklog(MessageMetrics metrics) {
+    long start = System.nanoTime();
+    eventProducerRepository.countWaitingForSend(ar -> {
+      if (ar.failed()) {
+        metrics.called(MessageMetrics.COUNT_WAITING_FOR_SEND, System.nanoTime() - start, false);
+        LOGGER.warn("count waiting for send message failed", ar.cause());
+        return;
+      }
+      if (ar.result() >= 0) {
+        metrics.called(MessageMetrics.COUNT_WAITING_FOR_SEND, System.nanoTime() - start, true);
+        metrics.backlog(ar.result());
+      }
+    });
+  }
+
   private Future<Void> doSend(List<Message> messages) {
     for (Message message : messages) {
       Future<Message> future = Future.future();
+      long start = System.nanoTime();
       writeStream.send(message, future);
       future.setHandler(ar -> {
+        MessageMetricsHolder.get().sent(streamName, System.nanoTime() - start, ar.succeeded());
         int len = processing.addAndGet(-1);
         if (len == 0) {
           // 有数据，立即继续执行
@@ -122,7 +156,8 @@ class VertxMessageProducerSchedulerImpl implements VertxMessageProducerScheduler
   }
 
   private void markSucess(Message message) {
-    LOGGER.info(LoggingMarker.getIdLoggingMarker(message.header().id()), "send succeed");
+    MessageLogging.log(LOGGER, Stage.SEND, message.header().id(),
+        () -> LoggingMarker.getIdLoggingMarker(message.header().id()), "send succeed");
     eventProducerRepository.mark(message.header().id(), SendMessageState.SUCCEED, ar -> {
       if (ar.failed()) {
         LOGGER.error(LoggingMarker.getIdLoggingMarker(message.header().id()), "mark message failed",
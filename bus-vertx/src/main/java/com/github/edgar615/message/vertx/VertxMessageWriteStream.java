@@ -1,13 +1,37 @@
 package com.github.edgar615.message.vertx;
 
+import com.github.edgar615.message.bus.SendResult;
 import com.github.edgar615.message.core.Message;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import java.util.List;
 
 public interface VertxMessageWriteStream {
 
   void send(Message message, Handler<AsyncResult<Message>> handler);
 
+  /**
+   * 批量发送消息，默认逐条调用send，可以批量交给客户端的实现应该重写这个方法.
+   *
+   * @param messages 消息
+   * @param handler 所有消息都有了结果之后回调，每条消息的结果从SendResult中获取
+   */
+  default void sendAll(List<Message> messages, Handler<AsyncResult<SendResult>> handler) {
+    SendResult.Collector collector = SendResult.collect(messages,
+        result -> handler.handle(Future.succeededFuture(result)));
+    for (int i = 0; i < messages.size(); i++) {
+      int index = i;
+      send(messages.get(i), ar -> {
+        if (ar.succeeded()) {
+          collector.succeed(index);
+        } else {
+          collector.fail(index, ar.cause());
+        }
+      });
+    }
+  }
+
   void close();
 
 }
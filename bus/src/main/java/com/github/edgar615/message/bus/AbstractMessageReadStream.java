@@ -2,9 +2,15 @@ package com.github.edgar615.message.bus;
 
 import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.MessageConsumerRepository;
+import com.github.edgar615.message.repository.PartialInsertException;
 import com.github.edgar615.message.utils.MessageQueue;
 import com.github.edgar615.message.utils.LoggingMarker;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
+import com.github.edgar615.message.utils.MessageMetrics;
+import com.github.edgar615.message.utils.MessageMetricsHolder;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,13 +39,16 @@ public abstract class AbstractMessageReadStream implements MessageReadStream {
     pause = true;
     int count = pauseCount.incrementAndGet();
     latestPaused = System.currentTimeMillis();
+    MessageMetricsHolder.get().paused();
     LOGGER.info("pause poll, pause times:{}", count);
   }
 
   @Override
   public void resume() {
     pause = false;
-    LOGGER.info("resume poll, paused {}ms", System.currentTimeMillis() - latestPaused);
+    long duration = System.currentTimeMillis() - latestPaused;
+    MessageMetricsHolder.get().resumed(duration);
+    LOGGER.info("resume poll, paused {}ms", duration);
   }
 
   @Override
@@ -51,21 +60,50 @@ public abstract class AbstractMessageReadStream implements MessageReadStream {
    * 对于从MQ读取消息的主线程应该在while循环中调用这个pollAndEnqueue，否则可能会出现无法从暂停状态恢复的问题
    */
   public final int pollAndEnqueue() {
-    List<Message> messages = poll();
+    return enqueue(poll());
+  }
+
+  /**
+   * 把拉取到的消息入库并放入队列，同时处理暂停和恢复.
+   * <p>
+   * 适用于不通过{@link #poll()}拉取消息的实现，例如多个线程各自从MQ拉取消息，这个方法可以在多个线程中同时调用.
+   *
+   * @param messages 拉取到的消息
+   * @return 入队的消息数量，暂停时返回0
+   */
+  protected final int enqueue(List<Message> messages) {
+    MessageMetrics metrics = MessageMetricsHolder.get();
     if (messages.size() > 0) {
+      metrics.polled(messages.size());
       LOGGER.info("poll {} records", messages.size());
     }
-    for (Message message : messages) {
-      //先入库
-      boolean duplicated = false;
-      if (consumerRepository != null) {
-        duplicated = consumerRepository.insert(message);
+    //先入库，一次拉取的消息批量去重
+    Set<String> inserted = null;
+    if (consumerRepository != null && !messages.isEmpty()) {
+      try {
+        inserted = insertAll(metrics, messages);
+      } catch (PartialInsertException e) {
+        //已经入库的消息再次拉取时是重复消息，必须先放入队列再抛出异常
+        for (Message message : messages) {
+          if (e.inserted().contains(message.header().id())) {
+            queue.enqueue(message);
+            MessageLogging.log(LOGGER, Stage.ENQUEUE, message.header().id(),
+                () -> LoggingMarker.getLoggingMarker(message, true), "poll and enqueue");
+          }
+        }
+        throw e;
       }
+    }
+    for (Message message : messages) {
+      boolean duplicated = inserted != null && !inserted.contains(message.header().id());
       if (duplicated) {
-        LOGGER.info(LoggingMarker.getLoggingMarker(message, true), "duplicate message, do nothing");
+        MessageLogging.log(LOGGER, Stage.ENQUEUE, message.header().id(),
+            () -> LoggingMarker.getLoggingMarker(message, true), "duplicate message, do nothing");
+        discard(message);
       } else {
         queue.enqueue(message);
-        LOGGER.info(LoggingMarker.getLoggingMarker(message, true), "poll and enqueue");
+        MessageLogging.log(LOGGER, Stage.ENQUEUE, message.header().id(),
+            () -> LoggingMarker.getLoggingMarker(message, true), "poll and enqueue");
       }
     }
     //暂停和恢复，避免过多的消息造成内存溢出
@@ -83,6 +121,26 @@ public abstract class AbstractMessageReadStream implements MessageReadStream {
     return messages.size();
   }
 
+  private Set<String> insertAll(MessageMetrics metrics, List<Message> messages) {
+    long start = System.nanoTime();
+    boolean succeeded = false;
+    try {
+      Set<String> inserted = consumerRepository.insertAll(messages);
+      succeeded = true;
+      return inserted;
+    } finally {
+      metrics.called(MessageMetrics.INSERT_ALL, System.nanoTime() - start, succeeded);
+    }
+  }
+
+  /**
+   * 重复的消息不会放入队列，也就不会被complete，需要跟踪消息处理进度的实现可以在这里把消息当作已经处理完成
+   *
+   * @param message 重复的消息
+   */
+  protected void discard(Message message) {
+  }
+
   protected final boolean checkPauseCondition() {
     return queue.isFull();
   }
@@ -1,5 +1,9 @@
 package com.github.edgar615.message.bus;
 
+import com.github.edgar615.message.core.Message;
+import java.util.Objects;
+import java.util.function.Function;
+
 /**
  * Created by Edgar on 2016/5/17.
  *
@@ -15,6 +19,31 @@ public class ConsumerOptions {
 
   private static int DEFAULT_BLOCKER_CHECKER_MS = 1000;
 
+  /**
+   * 默认的通道数量 = 机器的核数
+   */
+  public static final int DEFAULT_LANE_COUNT = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * 默认的定时拉取间隔
+   */
+  public static final long DEFAULT_FETCH_PERIOD = 1000L;
+
+  /**
+   * 默认的最大拉取间隔
+   */
+  public static final long DEFAULT_MAX_FETCH_PERIOD = 16000L;
+
+  /**
+   * 默认每次从持久层拉取的数量
+   */
+  public static final int DEFAULT_FETCH_SIZE = 100;
+
+  /**
+   * 默认的批量标记间隔
+   */
+  public static final long DEFAULT_MARK_FLUSH_INTERVAL_MS = 100L;
+
   /**
    * 工作线程数量
    */
@@ -25,6 +54,46 @@ public class ConsumerOptions {
    */
   private int blockedCheckerMs = DEFAULT_BLOCKER_CHECKER_MS;
 
+  /**
+   * 通道数量，只对StripedMessageQueue有效
+   */
+  private int laneCount = DEFAULT_LANE_COUNT;
+
+  /**
+   * 计算消息所属通道的key，相同key的消息按顺序处理，默认使用消息ID，即不保证顺序
+   */
+  private Function<Message, String> laneKeyExtractor = m -> m.header().id();
+
+  /**
+   * 批量标记消费状态的数量，默认1，即每条消息消费完后立即标记
+   */
+  private int markBatchSize = 1;
+
+  /**
+   * 批量标记消费状态的最大间隔
+   */
+  private long markFlushIntervalMs = DEFAULT_MARK_FLUSH_INTERVAL_MS;
+
+  /**
+   * 定时从持久层拉取未处理消息的间隔
+   */
+  private long fetchPeriod = DEFAULT_FETCH_PERIOD;
+
+  /**
+   * 持续没有未处理消息时，拉取间隔逐渐增加到maxFetchPeriod
+   */
+  private long maxFetchPeriod = DEFAULT_MAX_FETCH_PERIOD;
+
+  /**
+   * 每次从持久层拉取未处理消息的数量
+   */
+  private int fetchSize = DEFAULT_FETCH_SIZE;
+
+  /**
+   * Vert.x消费者同时处理的消息数量
+   */
+  private int maxInFlight = 1;
+
   public ConsumerOptions() {
 
   }
@@ -60,4 +129,142 @@ public class ConsumerOptions {
     this.workerPoolSize = workerPoolSize;
     return this;
   }
+
+  public int getLaneCount() {
+    return laneCount;
+  }
+
+  /**
+   * 设置StripedMessageQueue通道的数量，每个通道由一个线程处理，workerPoolSize不再生效.
+   *
+   * @param laneCount 通道数量
+   * @return ConsumerOptions
+   */
+  public ConsumerOptions setLaneCount(int laneCount) {
+    if (laneCount > 0) {
+      this.laneCount = laneCount;
+    }
+    return this;
+  }
+
+  public Function<Message, String> getLaneKeyExtractor() {
+    return laneKeyExtractor;
+  }
+
+  /**
+   * 设置计算通道的key，例如设备ID，相同key的消息会进入同一个通道，按入队顺序处理.
+   *
+   * @param laneKeyExtractor 计算key的函数
+   * @return ConsumerOptions
+   */
+  public ConsumerOptions setLaneKeyExtractor(Function<Message, String> laneKeyExtractor) {
+    Objects.requireNonNull(laneKeyExtractor);
+    this.laneKeyExtractor = laneKeyExtractor;
+    return this;
+  }
+
+  public int getMarkBatchSize() {
+    return markBatchSize;
+  }
+
+  /**
+   * 设置批量标记消费状态的数量，大于1时消费状态先放入缓冲区，达到数量或者超过markFlushIntervalMs后调用一次
+   * MessageConsumerRepository.markAll.
+   *
+   * @param markBatchSize 批量标记的数量
+   * @return ConsumerOptions
+   */
+  public ConsumerOptions setMarkBatchSize(int markBatchSize) {
+    if (markBatchSize > 0) {
+      this.markBatchSize = markBatchSize;
+    }
+    return this;
+  }
+
+  public long getMarkFlushIntervalMs() {
+    return markFlushIntervalMs;
+  }
+
+  /**
+   * 设置批量标记消费状态的最大间隔，只在markBatchSize大于1时有效.
+   *
+   * @param markFlushIntervalMs 最大间隔
+   * @return ConsumerOptions
+   */
+  public ConsumerOptions setMarkFlushIntervalMs(long markFlushIntervalMs) {
+    if (markFlushIntervalMs > 0) {
+      this.markFlushIntervalMs = markFlushIntervalMs;
+    }
+    return this;
+  }
+
+  public long getFetchPeriod() {
+    return fetchPeriod;
+  }
+
+  /**
+   * 设置定时从持久层拉取未处理消息的间隔，只对MessageConsumerScheduler有效.
+   *
+   * @param fetchPeriod 间隔，单位毫秒
+   * @return ConsumerOptions
+   */
+  public ConsumerOptions setFetchPeriod(long fetchPeriod) {
+    if (fetchPeriod > 0) {
+      this.fetchPeriod = fetchPeriod;
+    }
+    return this;
+  }
+
+  public long getMaxFetchPeriod() {
+    return maxFetchPeriod;
+  }
+
+  /**
+   * 设置最大的拉取间隔，没有拉取到未处理的消息时拉取间隔翻倍，直到maxFetchPeriod，拉取到消息后恢复为fetchPeriod.
+   *
+   * @param maxFetchPeriod 最大间隔，单位毫秒
+   * @return ConsumerOptions
+   */
+  public ConsumerOptions setMaxFetchPeriod(long maxFetchPeriod) {
+    if (maxFetchPeriod > 0) {
+      this.maxFetchPeriod = maxFetchPeriod;
+    }
+    return this;
+  }
+
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  /**
+   * 设置每次从持久层拉取未处理消息的数量，拉满一页时会立即拉取下一页.
+   *
+   * @param fetchSize 拉取数量
+   * @return ConsumerOptions
+   */
+  public ConsumerOptions setFetchSize(int fetchSize) {
+    if (fetchSize > 0) {
+      this.fetchSize = fetchSize;
+    }
+    return this;
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  /**
+   * 设置Vert.x消费者同时处理的消息数量，默认1，即上一条消息处理完成后才处理下一条.
+   * <p>
+   * Vert.x的消息处理是异步的，同时处理多条消息不需要额外的线程.
+   *
+   * @param maxInFlight 数量
+   * @return ConsumerOptions
+   */
+  public ConsumerOptions setMaxInFlight(int maxInFlight) {
+    if (maxInFlight > 0) {
+      this.maxInFlight = maxInFlight;
+    }
+    return this;
+  }
 }
@@ -2,13 +2,15 @@ package com.github.edgar615.message.bus;
 
 import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.ConsumeMessageState;
-import com.github.edgar615.message.repository.MessageConsumerRepository;
 import com.github.edgar615.message.utils.MessageIdTracing;
 import com.github.edgar615.message.utils.MessageIdTracingHolder;
 import com.github.edgar615.message.utils.MessageQueue;
 import com.github.edgar615.message.utils.LoggingMarker;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
+import com.github.edgar615.message.utils.MessageMetricsHolder;
 import com.google.common.collect.ImmutableMap;
-import java.util.Collection;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -19,12 +21,12 @@ class ConsumerWorker implements Runnable {
   private final MessageQueue queue;
   private final BlockedMessageChecker checker;
   private final long blockedCheckerMs;
-  private final MessageConsumerRepository consumerRepository;
+  private final MessageStateRecorder<ConsumeMessageState> stateRecorder;
 
-  ConsumerWorker(MessageQueue queue, MessageConsumerRepository consumerRepository,
+  ConsumerWorker(MessageQueue queue, MessageStateRecorder<ConsumeMessageState> stateRecorder,
       BlockedMessageChecker checker, long blockedCheckerMs) {
     this.queue = queue;
-    this.consumerRepository = consumerRepository;
+    this.stateRecorder = stateRecorder;
     this.checker = checker;
     this.blockedCheckerMs = blockedCheckerMs;
   }
@@ -51,9 +53,10 @@ class ConsumerWorker implements Runnable {
         checker.register(holder);
       }
       doHandle(message);
+      String id = message.header().id();
       long duration = System.currentTimeMillis() - start;
-      LOGGER.info(
-          LoggingMarker.getLoggingMarker(message.header().id(), ImmutableMap.of("duration", duration)),
+      MessageLogging.log(LOGGER, Stage.CONSUME, id,
+          () -> LoggingMarker.getLoggingMarker(id, ImmutableMap.of("duration", duration)),
           "consume succeed");
     } catch (InterruptedException e) {
       LOGGER.warn(LoggingMarker.getIdLoggingMarker(message.header().id()), "thread interrupted");
@@ -79,41 +82,30 @@ class ConsumerWorker implements Runnable {
   }
 
   private void doHandle(Message message) {
+    String topic = message.header().to();
+    String resource = message.body().resource();
+    long start = System.nanoTime();
+    boolean succeeded = false;
     try {
-      Collection<MessageHandler> handlers =
-          HandlerRegistry.instance()
-              .findAllHandler(new HandlerKey(message.header().to(), message.body().resource()));
-      if (handlers == null || handlers.isEmpty()) {
+      List<MessageHandler> handlers = HandlerRegistry.instance().findAllHandler(topic, resource);
+      if (handlers.isEmpty()) {
         LOGGER.warn(LoggingMarker.getIdLoggingMarker(message.header().id()), "no handler");
       } else {
-        for (MessageHandler handler : handlers) {
-          handler.handle(message);
+        for (int i = 0; i < handlers.size(); i++) {
+          handlers.get(i).handle(message);
         }
       }
-      if (consumerRepository != null) {
-        markSucess(message);
+      if (stateRecorder != null) {
+        stateRecorder.record(message.header().id(), ConsumeMessageState.SUCCEED);
       }
+      succeeded = true;
     } catch (Exception e) {
-      if (consumerRepository != null) {
-        markFailed(message, e);
+      if (stateRecorder != null) {
+        stateRecorder.record(message.header().id(), ConsumeMessageState.FAILED);
       }
       throw e;
-    }
-  }
-
-  private void markSucess(Message message) {
-    try {
-      consumerRepository.mark(message.header().id(), ConsumeMessageState.SUCCEED);
-    } catch (Exception e) {
-      LOGGER.error(LoggingMarker.getIdLoggingMarker(message.header().id()), "mark message failed", e);
-    }
-  }
-
-  private void markFailed(Message message, Throwable throwable) {
-    try {
-      consumerRepository.mark(message.header().id(), ConsumeMessageState.FAILED);
-    } catch (Exception e) {
-      LOGGER.error(LoggingMarker.getIdLoggingMarker(message.header().id()), "mark message failed", e);
+    } finally {
+      MessageMetricsHolder.get().handled(topic, resource, System.nanoTime() - start, succeeded);
     }
   }
 }
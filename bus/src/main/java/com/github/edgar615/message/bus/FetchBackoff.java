@@ -0,0 +1,42 @@
+package com.github.edgar615.message.bus;
+
+/**
+ * 定时拉取的退避策略.
+ * <p>
+ * 每次没有拉取到数据，下一次拉取的间隔翻倍，直到maxPeriod；拉取到数据或者被唤醒后恢复为period.
+ *
+ * @author Edgar
+ */
+class FetchBackoff {
+
+  private final long period;
+
+  private final long maxPeriod;
+
+  private long current;
+
+  private FetchBackoff(long period, long maxPeriod) {
+    this.period = period;
+    this.maxPeriod = Math.max(period, maxPeriod);
+    this.current = period;
+  }
+
+  static FetchBackoff create(long period, long maxPeriod) {
+    return new FetchBackoff(period, maxPeriod);
+  }
+
+  /**
+   * 没有拉取到数据，返回下一次拉取的间隔
+   *
+   * @return 间隔，单位毫秒
+   */
+  synchronized long next() {
+    long delay = current;
+    current = Math.min(maxPeriod, current * 2);
+    return delay;
+  }
+
+  synchronized void reset() {
+    current = period;
+  }
+}
@@ -0,0 +1,177 @@
+package com.github.edgar615.message.bus;
+
+import com.google.common.collect.ImmutableList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按topic/resource索引的处理器表.
+ * <p>
+ * 注册的topic或resource为null表示通配，处理器分别保存在精确、topic通配、resource通配和全通配四张表中。
+ * 每个(topic, resource)组合第一次查找时合并出一个不可变的处理器列表并缓存，之后的查找只是一次map查询，不再分配对象；
+ * register/unregister会丢弃整个缓存。
+ * <p>
+ * 写操作加锁，读操作只在缓存未命中时加锁，适合注册很少、查找很多的场景。
+ *
+ * @author Edgar
+ */
+public final class HandlerIndex<T> {
+
+  /**
+   * 缓存的(topic, resource)组合的上限，超过后的组合每次实时计算，避免resource过多时缓存无限增长
+   */
+  private static final int DEFAULT_MAX_CACHED = 4096;
+
+  private final int maxCached;
+
+  private final Map<String, Map<String, Set<T>>> exact = new HashMap<>();
+
+  private final Map<String, Set<T>> topicOnly = new HashMap<>();
+
+  private final Map<String, Set<T>> resourceOnly = new HashMap<>();
+
+  private final Set<T> wildcard = new LinkedHashSet<>();
+
+  private volatile ResolvedCache<T> cache = new ResolvedCache<>();
+
+  private HandlerIndex(int maxCached) {
+    this.maxCached = maxCached;
+  }
+
+  public static <T> HandlerIndex<T> create() {
+    return new HandlerIndex<>(DEFAULT_MAX_CACHED);
+  }
+
+  public static <T> HandlerIndex<T> create(int maxCached) {
+    return new HandlerIndex<>(maxCached);
+  }
+
+  public synchronized void register(String topic, String resource, T handler) {
+    handlers(topic, resource, true).add(handler);
+    invalidate();
+  }
+
+  public synchronized void unregister(String topic, String resource, T handler) {
+    Set<T> handlers = handlers(topic, resource, false);
+    if (handlers != null && handlers.remove(handler)) {
+      invalidate();
+    }
+  }
+
+  /**
+   * 删除某个注册键上的所有处理器，只删除完全相同的键，不会按通配删除.
+   */
+  public synchronized void unregisterAll(String topic, String resource) {
+    if (topic != null && resource != null) {
+      Map<String, Set<T>> byResource = exact.get(topic);
+      if (byResource != null) {
+        byResource.remove(resource);
+        if (byResource.isEmpty()) {
+          exact.remove(topic);
+        }
+      }
+    } else if (topic != null) {
+      topicOnly.remove(topic);
+    } else if (resource != null) {
+      resourceOnly.remove(resource);
+    } else {
+      wildcard.clear();
+    }
+    invalidate();
+  }
+
+  /**
+   * 查找能处理(topic, resource)的所有处理器，返回的列表不可修改.
+   * <p>
+   * 顺序为：精确匹配、topic匹配、resource匹配、全通配，同一张表内按注册顺序。
+   */
+  public List<T> find(String topic, String resource) {
+    if (topic == null || resource == null) {
+      // ConcurrentMap不支持null键，这种消息很少，直接计算
+      return resolve(topic, resource);
+    }
+    ResolvedCache<T> current = cache;
+    ConcurrentMap<String, List<T>> byResource = current.resolved.get(topic);
+    if (byResource != null) {
+      List<T> handlers = byResource.get(resource);
+      if (handlers != null) {
+        return handlers;
+      }
+    }
+    List<T> handlers = resolve(topic, resource);
+    if (current.size.get() < maxCached) {
+      // 如果在计算期间缓存被替换，结果只会写入旧的缓存，不会污染新缓存
+      byResource = current.resolved.computeIfAbsent(topic, k -> new ConcurrentHashMap<>());
+      if (byResource.putIfAbsent(resource, handlers) == null) {
+        current.size.incrementAndGet();
+      }
+    }
+    return handlers;
+  }
+
+  private synchronized List<T> resolve(String topic, String resource) {
+    ImmutableList.Builder<T> builder = ImmutableList.builder();
+    if (topic != null && resource != null) {
+      Map<String, Set<T>> byResource = exact.get(topic);
+      if (byResource != null) {
+        addAll(builder, byResource.get(resource));
+      }
+    }
+    if (topic != null) {
+      addAll(builder, topicOnly.get(topic));
+    }
+    if (resource != null) {
+      addAll(builder, resourceOnly.get(resource));
+    }
+    addAll(builder, wildcard);
+    return builder.build();
+  }
+
+  private void addAll(ImmutableList.Builder<T> builder, Set<T> handlers) {
+    if (handlers != null) {
+      builder.addAll(handlers);
+    }
+  }
+
+  private Set<T> handlers(String topic, String resource, boolean create) {
+    if (topic != null && resource != null) {
+      Map<String, Set<T>> byResource = exact.get(topic);
+      if (byResource == null) {
+        if (!create) {
+          return null;
+        }
+        byResource = new HashMap<>();
+        exact.put(topic, byResource);
+      }
+      return create ? byResource.computeIfAbsent(resource, k -> new LinkedHashSet<>())
+          : byResource.get(resource);
+    }
+    if (topic != null) {
+      return create ? topicOnly.computeIfAbsent(topic, k -> new LinkedHashSet<>())
+          : topicOnly.get(topic);
+    }
+    if (resource != null) {
+      return create ? resourceOnly.computeIfAbsent(resource, k -> new LinkedHashSet<>())
+          : resourceOnly.get(resource);
+    }
+    return wildcard;
+  }
+
+  private void invalidate() {
+    cache = new ResolvedCache<>();
+  }
+
+  private static class ResolvedCache<T> {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, List<T>>> resolved =
+        new ConcurrentHashMap<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+  }
+}
@@ -1,14 +1,12 @@
 package com.github.edgar615.message.bus;
 
-import com.google.common.base.MoreObjects;
-import com.google.common.collect.Maps;
 import java.util.Collection;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.stream.Collectors;
+import java.util.List;
 
 /**
  * 借鉴guava的eventbus代码.
+ * <p>
+ * 处理器按topic/resource索引，查找结果会被缓存，见{@link HandlerIndex}.
  *
  * @author Edgar  Date 2017/4/14
  */
@@ -16,8 +14,7 @@ class HandlerRegistry {
 
   private static final HandlerRegistry INSTANCE = new HandlerRegistry();
 
-  private final ConcurrentMap<HandlerKey, CopyOnWriteArraySet<MessageHandler>> handlers =
-      Maps.newConcurrentMap();
+  private final HandlerIndex<MessageHandler> handlers = HandlerIndex.create();
 
   private HandlerRegistry() {
   }
@@ -27,43 +24,22 @@ class HandlerRegistry {
   }
 
   void register(HandlerKey key, MessageHandler handler) {
-    Collection<MessageHandler> messageHandlers = handlers.get(key);
-    if (messageHandlers == null) {
-      CopyOnWriteArraySet<MessageHandler> newSet = new CopyOnWriteArraySet<>();
-      messageHandlers =
-          MoreObjects.firstNonNull(handlers.putIfAbsent(key, newSet), newSet);
-    }
-    messageHandlers.add(handler);
+    handlers.register(key.topic(), key.resource(), handler);
   }
 
   void unregister(HandlerKey key, MessageHandler handler) {
-    Collection<MessageHandler> messageHandlers = handlers.get(key);
-    if (messageHandlers == null) {
-      return;
-    }
-    messageHandlers.remove(handler);
+    handlers.unregister(key.topic(), key.resource(), handler);
   }
 
   void unregisterAll(HandlerKey key) {
-    handlers.remove(key);
+    handlers.unregisterAll(key.topic(), key.resource());
   }
 
   Collection<MessageHandler> findAllHandler(HandlerKey key) {
-    return handlers.keySet().stream()
-        .filter(registerKey -> this.match(registerKey, key))
-        .flatMap(registerKey -> handlers.getOrDefault(registerKey, new CopyOnWriteArraySet<>()).stream())
-        .collect(Collectors.toList());
+    return handlers.find(key.topic(), key.resource());
   }
 
-  private boolean match(HandlerKey registerKey, HandlerKey eventKey) {
-    boolean topicMatch = true;
-    if (registerKey.topic() != null) {
-      topicMatch = registerKey.topic().equals(eventKey.topic());
-    }
-    boolean resourceMatch = true;
-    if (registerKey.resource() != null) {
-      resourceMatch = registerKey.resource().equals(eventKey.resource());
-    }
-    return topicMatch && resourceMatch;
+  List<MessageHandler> findAllHandler(String topic, String resource) {
+    return handlers.find(topic, resource);
   }
 }
@@ -5,6 +5,8 @@ import com.github.edgar615.message.utils.MessageQueue;
 
 /**
  * Created by Edgar on 2017/4/18.
+ * <p>
+ * 如果queue分通道（例如{@link StripedMessageQueue}），每个通道启动一个线程，相同key的消息按顺序处理；否则启动workerPoolSize个线程.
  *
  * @author Edgar  Date 2017/4/18
  */
@@ -1,8 +1,13 @@
 package com.github.edgar615.message.bus;
 
+import com.github.edgar615.message.repository.ConsumeMessageState;
 import com.github.edgar615.message.repository.MessageConsumerRepository;
+import com.github.edgar615.message.utils.MessageMetrics;
+import com.github.edgar615.message.utils.MessageMetricsHolder;
 import com.github.edgar615.message.utils.MessageQueue;
 import com.github.edgar615.message.utils.NamedThreadFactory;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import org.slf4j.Logger;
@@ -25,20 +30,44 @@ class MessageConsumerImpl implements MessageConsumer {
 
   private volatile boolean running = false;
 
-  private MessageConsumerRepository consumerRepository;
+  private final MessageStateRecorder<ConsumeMessageState> stateRecorder;
 
-  private final int workerCount;
+  /**
+   * 每个线程出队的队列，队列分通道时每个通道一个线程，否则workerPoolSize个线程共用一个队列
+   */
+  private final List<MessageQueue> workerQueues;
 
   private final long blockedCheckerMs;
 
   MessageConsumerImpl(ConsumerOptions options, MessageQueue queue,
       MessageConsumerRepository consumerRepository) {
-    this.workerCount = options.getWorkerPoolSize();
-    this.workerExecutor = Executors.newFixedThreadPool(options.getWorkerPoolSize(),
+    List<MessageQueue> lanes = queue.lanes();
+    if (lanes.size() == 1 && lanes.get(0) == queue) {
+      this.workerQueues = Collections.nCopies(options.getWorkerPoolSize(), queue);
+    } else {
+      this.workerQueues = lanes;
+    }
+    this.workerExecutor = Executors.newFixedThreadPool(workerQueues.size(),
         NamedThreadFactory.create
             ("core-consumer-worker"));
     this.messageQueue = queue;
-    this.consumerRepository = consumerRepository;
+    if (consumerRepository == null) {
+      this.stateRecorder = null;
+    } else {
+      this.stateRecorder = MessageStateRecorder.create("consumer-state-recorder",
+          options.getMarkBatchSize(), options.getMarkFlushIntervalMs(), states -> {
+            long start = System.nanoTime();
+            boolean succeeded = false;
+            try {
+              consumerRepository.markAll(states);
+              succeeded = true;
+            } finally {
+              MessageMetricsHolder.get().called(MessageMetrics.MARK_ALL,
+                  System.nanoTime() - start, succeeded);
+            }
+          });
+    }
+    MessageMetricsHolder.get().register("consumer", queue);
     this.blockedCheckerMs = options.getBlockedCheckerMs();
     this.checker = BlockedMessageChecker.create(this.blockedCheckerMs);
     running = true;
@@ -46,8 +75,8 @@ class MessageConsumerImpl implements MessageConsumer {
 
   @Override
   public void start() {
-    for (int i = 0; i < workerCount; i++) {
-      ConsumerWorker worker = new ConsumerWorker(messageQueue, consumerRepository, checker,
+    for (MessageQueue workerQueue : workerQueues) {
+      ConsumerWorker worker = new ConsumerWorker(workerQueue, stateRecorder, checker,
           blockedCheckerMs);
       workerExecutor.submit(worker);
       // TODO shutdown
@@ -61,6 +90,9 @@ class MessageConsumerImpl implements MessageConsumer {
     LOGGER.info("closing consumer, remaining:{}", waitForHandle());
     workerExecutor.shutdown();
     checker.close();
+    if (stateRecorder != null) {
+      stateRecorder.close();
+    }
   }
 
   @Override
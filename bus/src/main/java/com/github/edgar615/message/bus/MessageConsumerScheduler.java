@@ -7,11 +7,22 @@ public interface MessageConsumerScheduler {
 
   static MessageConsumerScheduler create(MessageConsumerRepository messageConsumerRepository,
       MessageQueue queue, long fetchPeriod) {
-    return new MessageConsumerSchedulerImpl(messageConsumerRepository, queue, fetchPeriod);
+    return new MessageConsumerSchedulerImpl(messageConsumerRepository, queue,
+        new ConsumerOptions().setFetchPeriod(fetchPeriod));
+  }
+
+  static MessageConsumerScheduler create(MessageConsumerRepository messageConsumerRepository,
+      MessageQueue queue, ConsumerOptions options) {
+    return new MessageConsumerSchedulerImpl(messageConsumerRepository, queue, options);
   }
 
   void start();
 
   void close();
 
+  /**
+   * 唤醒调度器立即拉取未处理的消息，不需要等待下一次定时拉取.
+   */
+  void wakeUp();
+
 }
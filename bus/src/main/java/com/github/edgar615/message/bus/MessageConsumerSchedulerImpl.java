@@ -2,29 +2,42 @@ package com.github.edgar615.message.bus;
 
 import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.MessageConsumerRepository;
+import com.github.edgar615.message.utils.MessageMetrics;
+import com.github.edgar615.message.utils.MessageMetricsHolder;
 import com.github.edgar615.message.utils.MessageQueue;
 import com.github.edgar615.message.utils.NamedThreadFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * 定时从存储中拉取未处理任务处理
+ * <p>
+ * 拉满一页后立即拉取下一页，没有拉取到消息时拉取间隔逐渐增加到maxFetchPeriod，调用{@link #wakeUp()}会立即拉取.
+ * <p>
+ * 已经放入队列但是还没有处理完成的消息仍然会被拉取到，这些消息的ID保存在dispatched中，再次拉取到时直接跳过，
+ * 不再出现在拉取结果中的消息已经处理完成，从dispatched中删除.
+ *
  * @author Edgar
  */
 class MessageConsumerSchedulerImpl implements MessageConsumerScheduler {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(MessageConsumerScheduler.class);
 
-  private static final int DEFAULT_PREIOD = 1000;
-
   /**
    * 定时从持久层拉取待发送消息的方法
    */
-  private long fetchPeriod;
+  private final long fetchPeriod;
+
+  private final int fetchSize;
 
   private final MessageConsumerRepository messageConsumerRepository;
 
@@ -32,25 +45,34 @@ class MessageConsumerSchedulerImpl implements MessageConsumerScheduler {
 
   private final MessageQueue queue;
 
+  private final FetchBackoff backoff;
+
+  /**
+   * 已经放入队列的消息，只在调度线程中访问
+   */
+  private final Set<String> dispatched = new HashSet<>();
+
+  /**
+   * 等待执行的拉取任务
+   */
+  private ScheduledFuture<?> pending;
+
   private volatile boolean closed = false;
 
   MessageConsumerSchedulerImpl(MessageConsumerRepository messageConsumerRepository,
-      MessageQueue queue, long fetchPeriod) {
+      MessageQueue queue, ConsumerOptions options) {
     this.scheduledExecutor = Executors.newSingleThreadScheduledExecutor(
         NamedThreadFactory.create("consumer-scheduler"));
     this.queue = queue;
     this.messageConsumerRepository = messageConsumerRepository;
-    if (fetchPeriod <= 0) {
-      this.fetchPeriod = DEFAULT_PREIOD;
-    } else {
-      this.fetchPeriod = fetchPeriod;
-    }
-
+    this.fetchPeriod = options.getFetchPeriod();
+    this.fetchSize = options.getFetchSize();
+    this.backoff = FetchBackoff.create(fetchPeriod, options.getMaxFetchPeriod());
   }
 
   @Override
   public void start() {
-    LOGGER.info("start consumer scheduler, period:{}ms", fetchPeriod);
+    LOGGER.info("start consumer scheduler, period:{}ms, fetchSize:{}", fetchPeriod, fetchSize);
     schedule(fetchPeriod);
   }
 
@@ -61,29 +83,81 @@ class MessageConsumerSchedulerImpl implements MessageConsumerScheduler {
     scheduledExecutor.shutdown();
   }
 
-  private void schedule(long delay) {
-    Runnable scheduledCommand = () -> {
-      // 如果processing大于0说明有任务在执行，直接返回，在任务执行完成后会重新只执行定时任务
-      if (closed || queue.isFull()) {
-        LOGGER.trace("skip scheduler, closed:{}, queue:{}", closed,  queue.size());
-        schedule(fetchPeriod);
-        return;
+  @Override
+  public void wakeUp() {
+    backoff.reset();
+    synchronized (this) {
+      //取消还在等待的拉取任务，立即拉取
+      if (pending != null && pending.getDelay(TimeUnit.MILLISECONDS) > 0 && pending.cancel(false)) {
+        pending = null;
       }
+    }
+    schedule(0);
+  }
 
-      List<Message> waitingForConsume = messageConsumerRepository.waitingForConsume();
-      //没有数据，等待
-      LOGGER.trace("{} events to be consume", waitingForConsume.size());
-      if (waitingForConsume.isEmpty()) {
-        schedule(fetchPeriod);
-        return;
+  private synchronized void schedule(long delay) {
+    if (closed || pending != null) {
+      return;
+    }
+    try {
+      pending = scheduledExecutor.schedule(this::fetch, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      pending = null;
+    }
+  }
+
+  private void fetch() {
+    synchronized (this) {
+      pending = null;
+    }
+    if (closed || queue.isFull()) {
+      LOGGER.trace("skip scheduler, closed:{}, queue:{}", closed, queue.size());
+      schedule(fetchPeriod);
+      return;
+    }
+    MessageMetrics metrics = MessageMetricsHolder.get();
+    List<Message> waitingForConsume;
+    long start = System.nanoTime();
+    try {
+      // 存储层返回的前面几条可能是已经放入队列、但是还没有处理完成的消息，所以多取dispatched条
+      waitingForConsume = messageConsumerRepository.waitingForConsume(fetchSize + dispatched.size());
+    } catch (Exception e) {
+      metrics.called(MessageMetrics.WAITING_FOR_CONSUME, System.nanoTime() - start, false);
+      LOGGER.error("fetch waiting for consume message failed", e);
+      schedule(backoff.next());
+      return;
+    }
+    metrics.called(MessageMetrics.WAITING_FOR_CONSUME, System.nanoTime() - start, true);
+    LOGGER.trace("{} events to be consume", waitingForConsume.size());
+    if (waitingForConsume.isEmpty()) {
+      //没有数据，逐渐增加等待的时间
+      dispatched.clear();
+      schedule(backoff.next());
+      return;
+    }
+    Set<String> fetched = new HashSet<>();
+    List<Message> messages = new ArrayList<>();
+    for (Message message : waitingForConsume) {
+      String id = message.header().id();
+      fetched.add(id);
+      if (messages.size() < fetchSize && !dispatched.contains(id)) {
+        messages.add(message);
       }
-      queue.enqueue(waitingForConsume);
-    };
-    if (delay > 0) {
-      scheduledExecutor.schedule(scheduledCommand, delay, TimeUnit.MILLISECONDS);
+    }
+    dispatched.retainAll(fetched);
+    for (Message message : messages) {
+      dispatched.add(message.header().id());
+    }
+    if (!messages.isEmpty()) {
+      queue.enqueue(messages);
+    }
+    backoff.reset();
+    if (messages.size() < fetchSize) {
+      //没有更多数据，等待
+      schedule(fetchPeriod);
     } else {
-      //直接运行
-      scheduledExecutor.submit(scheduledCommand);
+      // 取满了一页，立即拉取下一页
+      schedule(0);
     }
   }
 
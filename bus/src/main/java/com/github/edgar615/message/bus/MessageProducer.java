@@ -2,6 +2,7 @@ package com.github.edgar615.message.bus;
 
 import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.MessageProducerRepository;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -33,6 +34,14 @@ public interface MessageProducer {
     return new MessageProducerImpl(options, writeStream, messageProducerRepository);
   }
 
+  /**
+   * 持久化的消息会唤醒scheduler立即发送.
+   */
+  static MessageProducer create(ProducerOptions options, MessageWriteStream writeStream,
+      MessageProducerRepository messageProducerRepository, MessageProducerScheduler scheduler) {
+    return new MessageProducerImpl(options, writeStream, messageProducerRepository, scheduler);
+  }
+
   /**
    * 直接调用MQ的API发送消息.
    *
@@ -41,6 +50,32 @@ public interface MessageProducer {
    */
   CompletableFuture<Message> send(Message message);
 
+  /**
+   * 直接调用MQ的API批量发送消息.
+   *
+   * @param messages 事件
+   * @return 所有消息都有了结果之后完成，不会异常完成，每条消息的结果从SendResult中获取
+   */
+  default CompletableFuture<SendResult> sendAll(List<Message> messages) {
+    CompletableFuture<SendResult> future = new CompletableFuture<>();
+    SendResult.Collector collector = SendResult.collect(messages, future::complete);
+    for (int i = 0; i < messages.size(); i++) {
+      int index = i;
+      try {
+        send(messages.get(i)).whenComplete((message, throwable) -> {
+          if (throwable == null) {
+            collector.succeed(index);
+          } else {
+            collector.fail(index, throwable);
+          }
+        });
+      } catch (Exception e) {
+        collector.fail(index, e);
+      }
+    }
+    return future;
+  }
+
   /**
    * 先将消息持久化，稍后通过一个线程发送消息，保证消息不丢 这里没有返回值，为了降低eventbus的复杂度，这里没有订阅消息是否发送成功，
    * 如果想知道事件是否发送成功，可以在dao的mark方法上增加通知。
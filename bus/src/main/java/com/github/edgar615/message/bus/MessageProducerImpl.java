@@ -3,6 +3,11 @@ package com.github.edgar615.message.bus;
 import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.MessageProducerRepository;
 import com.github.edgar615.message.utils.LoggingMarker;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
+import com.github.edgar615.message.utils.MessageMetrics;
+import com.github.edgar615.message.utils.MessageMetricsHolder;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,13 +20,27 @@ class MessageProducerImpl implements MessageProducer {
 
   private final MessageWriteStream writeStream;
 
+  /**
+   * 记录发送指标时使用的名称
+   */
+  private final String streamName;
+
   private final ProducerOptions options;
 
+  private final MessageProducerScheduler scheduler;
+
   MessageProducerImpl(ProducerOptions options, MessageWriteStream writeStream,
       MessageProducerRepository messageProducerRepository) {
+    this(options, writeStream, messageProducerRepository, null);
+  }
+
+  MessageProducerImpl(ProducerOptions options, MessageWriteStream writeStream,
+      MessageProducerRepository messageProducerRepository, MessageProducerScheduler scheduler) {
     this.options = options;
     this.writeStream = writeStream;
+    this.streamName = writeStream.getClass().getSimpleName();
     this.messageProducerRepository = messageProducerRepository;
+    this.scheduler = scheduler;
   }
 
   @Override
@@ -31,13 +50,18 @@ class MessageProducerImpl implements MessageProducer {
 
   @Override
   public CompletableFuture<Message> send(Message message) {
-    LOGGER.info(LoggingMarker.getLoggingMarker(message, false), "waiting for send");
-    CompletableFuture<Message> future = new CompletableFuture<>();
     String id = message.header().id();
+    MessageLogging.log(LOGGER, Stage.SEND, id,
+        () -> LoggingMarker.getLoggingMarker(message, false), "waiting for send");
+    CompletableFuture<Message> future = new CompletableFuture<>();
+    long start = System.nanoTime();
     writeStream.send(message).thenAccept(e -> {
-      LOGGER.info(LoggingMarker.getIdLoggingMarker(id), "send succeed");
+      MessageMetricsHolder.get().sent(streamName, System.nanoTime() - start, true);
+      MessageLogging.log(LOGGER, Stage.SEND, id,
+          () -> LoggingMarker.getIdLoggingMarker(id), "send succeed");
       future.complete(e);
     }).exceptionally(throwable -> {
+      MessageMetricsHolder.get().sent(streamName, System.nanoTime() - start, false);
       LOGGER.error(LoggingMarker.getIdLoggingMarker(id), "send failed", throwable.getMessage());
       future.completeExceptionally(throwable);
       return null;
@@ -45,13 +69,48 @@ class MessageProducerImpl implements MessageProducer {
     return future;
   }
 
+  @Override
+  public CompletableFuture<SendResult> sendAll(List<Message> messages) {
+    LOGGER.debug("waiting for send {} messages", messages.size());
+    long start = System.nanoTime();
+    return writeStream.sendAll(messages).thenApply(result -> {
+      MessageMetrics metrics = MessageMetricsHolder.get();
+      long duration = System.nanoTime() - start;
+      for (int i = 0; i < messages.size(); i++) {
+        String id = messages.get(i).header().id();
+        metrics.sent(streamName, duration, result.succeeded(i));
+        if (!result.succeeded(i)) {
+          LOGGER.error(LoggingMarker.getIdLoggingMarker(id), "send failed",
+              result.cause(i).getMessage());
+        } else {
+          MessageLogging.log(LOGGER, Stage.SEND, id,
+              () -> LoggingMarker.getIdLoggingMarker(id), "send succeed");
+        }
+      }
+      return result;
+    });
+  }
+
   @Override
   public void save(Message message) {
     if (messageProducerRepository == null) {
       throw new UnsupportedOperationException("required repository");
     }
-    messageProducerRepository.insert(message);
-    LOGGER.info(LoggingMarker.getLoggingMarker(message, false),"write to db, waiting for send");
+    long start = System.nanoTime();
+    boolean succeeded = false;
+    try {
+      messageProducerRepository.insert(message);
+      succeeded = true;
+    } finally {
+      MessageMetricsHolder.get().called(MessageMetrics.INSERT, System.nanoTime() - start,
+          succeeded);
+    }
+    MessageLogging.log(LOGGER, Stage.SEND, message.header().id(),
+        () -> LoggingMarker.getLoggingMarker(message, false), "write to db, waiting for send");
+    //同一个JVM中直接交给调度器发送，否则唤醒调度器拉取
+    if (scheduler != null && !scheduler.offer(message)) {
+      scheduler.wakeUp();
+    }
   }
 
   @Override
@@ -1,16 +1,38 @@
 package com.github.edgar615.message.bus;
 
+import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.MessageProducerRepository;
 
 public interface MessageProducerScheduler {
 
   static MessageProducerScheduler create(MessageProducerRepository messageProducerRepository,
       MessageWriteStream writeStream, long fetchPeriod) {
-    return new MessageProducerSchedulerImpl(messageProducerRepository, writeStream, fetchPeriod);
+    return new MessageProducerSchedulerImpl(messageProducerRepository, writeStream,
+        new ProducerOptions().setFetchPeriod(fetchPeriod));
+  }
+
+  static MessageProducerScheduler create(MessageProducerRepository messageProducerRepository,
+      MessageWriteStream writeStream, ProducerOptions options) {
+    return new MessageProducerSchedulerImpl(messageProducerRepository, writeStream, options);
   }
 
   void start();
 
   void close();
 
+  /**
+   * 唤醒调度器立即拉取待发送的消息，例如在消息持久化之后调用，不需要等待下一次定时拉取.
+   */
+  void wakeUp();
+
+  /**
+   * 把已经持久化的消息直接交给调度器发送.
+   * <p>
+   * 只有设置了ProducerOptions.handOffBufferSize才会直接发送，超过handOffTimeoutMs没有确认发送结果的消息仍然会被定时拉取发送.
+   *
+   * @param message 已经持久化的消息
+   * @return 没有开启或者缓冲区已满返回false
+   */
+  boolean offer(Message message);
+
 }
@@ -4,30 +4,55 @@ import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.MessageProducerRepository;
 import com.github.edgar615.message.repository.SendMessageState;
 import com.github.edgar615.message.utils.LoggingMarker;
+import com.github.edgar615.message.utils.MessageLogging;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
+import com.github.edgar615.message.utils.MessageMetrics;
+import com.github.edgar615.message.utils.MessageMetricsHolder;
 import com.github.edgar615.message.utils.NamedThreadFactory;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * 定时从存储中拉取未发送任务进行发送
+ * <p>
+ * 拉取和发送是流水线式的：每次最多拉取fetchSize条消息，只要发送中的消息没有超过maxInFlight，拉满一页后立即拉取下一页，不需要等待上一页发送完成.
+ * 没有拉取到消息时拉取间隔逐渐增加到maxFetchPeriod，调用{@link #wakeUp()}会立即拉取.
+ * <p>
+ * 开启handOffBufferSize后，同一个JVM中持久化的消息通过{@link #offer(Message)}直接发送，
+ * 超过handOffTimeoutMs还留在缓冲区中没有发送的消息从inFlight中删除，由定时拉取发送；已经开始发送的消息和定时拉取的消息一样，
+ * 写入发送状态之后才从inFlight中删除.
+ * <p>
+ * 已经发送但是状态还没有写入存储的消息ID保存在inFlight中，拉取过程中刚写入状态的消息ID保存在recentlyMarked中，
+ * 再次拉取到这些消息时直接跳过，避免重复发送.
+ *
  * @author Edgar
  */
 class MessageProducerSchedulerImpl implements MessageProducerScheduler {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(MessageProducerScheduler.class);
 
-  private static final int DEFAULT_PREIOD = 1000;
-
   /**
    * 定时从持久层拉取待发送消息的方法
    */
-  private long fetchPeriod;
+  private final long fetchPeriod;
+
+  private final int fetchSize;
+
+  private final int maxInFlight;
 
   private final MessageProducerRepository messageProducerRepository;
 
@@ -35,92 +60,307 @@ class MessageProducerSchedulerImpl implements MessageProducerScheduler {
 
   private final MessageWriteStream writeStream;
 
+  /**
+   * 记录发送指标时使用的名称
+   */
+  private final String streamName;
+
+  /**
+   * 正在发送的消息数量
+   */
   private final AtomicInteger processing = new AtomicInteger(0);
 
+  /**
+   * 已经发送，但是发送状态还没有写入存储的消息
+   */
+  private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+  /**
+   * 上一次拉取之后写入了状态的消息，拉取的同时写入的状态可能没有体现在拉取结果中
+   */
+  private final Set<String> recentlyMarked = ConcurrentHashMap.newKeySet();
+
+  /**
+   * 等待执行的拉取任务
+   */
+  private ScheduledFuture<?> pending;
+
+  private final FetchBackoff backoff;
+
+  /**
+   * 发送窗口已满，等待发送完成后再拉取
+   */
+  private final AtomicBoolean windowFull = new AtomicBoolean(false);
+
+  private final MessageStateRecorder<SendMessageState> stateRecorder;
+
+  /**
+   * 本地直接发送的缓冲区，没有开启时为null
+   */
+  private final BlockingQueue<Message> handOff;
+
+  private final long handOffTimeoutMs;
+
+  /**
+   * 本地直接发送、还在缓冲区中的消息和超时时间
+   */
+  private final Map<String, Long> handOffDeadlines = new ConcurrentHashMap<>();
+
+  private final AtomicBoolean draining = new AtomicBoolean(false);
+
   private volatile boolean closed = false;
 
   MessageProducerSchedulerImpl(MessageProducerRepository messageProducerRepository,
-      MessageWriteStream writeStream, long fetchPeriod) {
+      MessageWriteStream writeStream, ProducerOptions options) {
     this.scheduledExecutor = Executors.newSingleThreadScheduledExecutor(
         NamedThreadFactory.create("producer-scheduler"));
     this.writeStream = writeStream;
+    this.streamName = writeStream.getClass().getSimpleName();
     this.messageProducerRepository = messageProducerRepository;
-    if (fetchPeriod <= 0) {
-      this.fetchPeriod = DEFAULT_PREIOD;
+    this.fetchPeriod = options.getFetchPeriod();
+    this.fetchSize = options.getFetchSize();
+    this.maxInFlight = options.getMaxInFlight();
+    this.backoff = FetchBackoff.create(fetchPeriod, options.getMaxFetchPeriod());
+    if (options.getHandOffBufferSize() > 0) {
+      this.handOff = new ArrayBlockingQueue<>(options.getHandOffBufferSize());
     } else {
-      this.fetchPeriod = fetchPeriod;
+      this.handOff = null;
     }
-
+    this.handOffTimeoutMs = options.getHandOffTimeoutMs();
+    this.stateRecorder = MessageStateRecorder.create("producer-state-recorder",
+        options.getMarkBatchSize(), options.getMarkFlushIntervalMs(), this::markAll);
   }
 
   @Override
   public void start() {
-    LOGGER.info("start producer scheduler, period:{}ms", fetchPeriod);
+    LOGGER.info("start producer scheduler, period:{}ms, fetchSize:{}, maxInFlight:{}",
+        fetchPeriod, fetchSize, maxInFlight);
     schedule(fetchPeriod);
   }
 
   @Override
   public void close() {
-    LOGGER.info("close producer scheduler");
+    closed = true;
+    LOGGER.info("close producer scheduler, processing:{}", processing.get());
     scheduledExecutor.shutdown();
+    stateRecorder.close();
   }
 
-  private void schedule(long delay) {
-    Runnable scheduledCommand = () -> {
-      // 如果processing大于0说明有任务在执行，直接返回，在任务执行完成后会重新只执行定时任务
-      if (closed || processing.get() > 0) {
-        LOGGER.trace("skip scheduler, closed:{}, processing:{}", closed, processing.get());
-        return;
+  @Override
+  public void wakeUp() {
+    backoff.reset();
+    synchronized (this) {
+      //取消还在等待的拉取任务，立即拉取
+      if (pending != null && pending.getDelay(TimeUnit.MILLISECONDS) > 0 && pending.cancel(false)) {
+        pending = null;
       }
-      List<Message> waitingForSend = messageProducerRepository.waitingForSend();
-      //没有数据，等待
-      LOGGER.trace("{} events to be send", waitingForSend.size());
-      if (waitingForSend.isEmpty()) {
-        schedule(fetchPeriod);
+    }
+    schedule(0);
+  }
+
+  @Override
+  public boolean offer(Message message) {
+    if (handOff == null || closed) {
+      return false;
+    }
+    String id = message.header().id();
+    if (!inFlight.add(id)) {
+      //已经被定时拉取发送
+      return true;
+    }
+    handOffDeadlines.put(id, System.currentTimeMillis() + handOffTimeoutMs);
+    if (!handOff.offer(message)) {
+      handOffDeadlines.remove(id);
+      inFlight.remove(id);
+      return false;
+    }
+    drain();
+    return true;
+  }
+
+  private void drain() {
+    if (!draining.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      scheduledExecutor.execute(this::drainHandOff);
+    } catch (RejectedExecutionException e) {
+      draining.set(false);
+    }
+  }
+
+  private void drainHandOff() {
+    draining.set(false);
+    while (!closed && processing.get() < maxInFlight) {
+      Message message = handOff.poll();
+      if (message == null) {
         return;
       }
-      processing.addAndGet(waitingForSend.size());
-      for (Message event : waitingForSend) {
-        CompletableFuture<Message> future = writeStream.send(event);
-        // 这里是不是应该用一个新的线程处理回调？
-        future.thenAccept(this::markSucess)
-            .exceptionally(throwable -> {
-              markFailed(event, throwable);
-              return null;
-            }).thenAccept(v -> {
-          int len = processing.addAndGet(-1);
-          if (len == 0) {
-            // 有数据，立即继续执行
-            schedule(0);
-          }
-        });
+      //已经超时的消息交由定时拉取发送，没有超时的消息开始发送后不再超时
+      if (handOffDeadlines.remove(message.header().id()) != null) {
+        dispatch(message);
+      }
+    }
+  }
+
+  private void expireHandOff() {
+    long now = System.currentTimeMillis();
+    handOffDeadlines.entrySet().removeIf(entry -> {
+      if (entry.getValue() < now) {
+        inFlight.remove(entry.getKey());
+        return true;
+      }
+      return false;
+    });
+  }
+
+  private synchronized void schedule(long delay) {
+    if (closed || pending != null) {
+      return;
+    }
+    try {
+      pending = scheduledExecutor.schedule(this::relay, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      pending = null;
+    }
+  }
+
+  private void relay() {
+    synchronized (this) {
+      pending = null;
+    }
+    if (closed) {
+      return;
+    }
+    if (handOff != null) {
+      expireHandOff();
+    }
+    int window = maxInFlight - processing.get();
+    if (window <= 0) {
+      // 发送窗口已满，在发送完成后会重新执行
+      windowFull.set(true);
+      if (maxInFlight - processing.get() > 0 && windowFull.compareAndSet(true, false)) {
+        schedule(0);
+      }
+      LOGGER.trace("skip scheduler, processing:{}", processing.get());
+      return;
+    }
+    int expected = Math.min(fetchSize, window);
+    MessageMetrics metrics = MessageMetricsHolder.get();
+    List<Message> waitingForSend;
+    recentlyMarked.clear();
+    long start = System.nanoTime();
+    try {
+      // 存储层返回的前面几条可能是已经发送、但是状态还没有写入的消息，所以多取inFlight条
+      waitingForSend = messageProducerRepository.waitingForSend(expected + inFlight.size());
+    } catch (Exception e) {
+      metrics.called(MessageMetrics.WAITING_FOR_SEND, System.nanoTime() - start, false);
+      LOGGER.error("fetch waiting for send message failed", e);
+      schedule(backoff.next());
+      return;
+    }
+    metrics.called(MessageMetrics.WAITING_FOR_SEND, System.nanoTime() - start, true);
+    int dispatched = 0;
+    for (Message message : waitingForSend) {
+      if (dispatched >= expected) {
+        break;
+      }
+      String id = message.header().id();
+      if (!recentlyMarked.contains(id) && inFlight.add(id)) {
+        dispatched++;
+        dispatch(message);
       }
-    };
-    if (delay > 0) {
-      scheduledExecutor.schedule(scheduledCommand, delay, TimeUnit.MILLISECONDS);
+    }
+    LOGGER.trace("{} events to be send", dispatched);
+    recordBacklog(metrics);
+    if (waitingForSend.isEmpty()) {
+      //没有数据，逐渐增加等待的时间
+      schedule(backoff.next());
+    } else if (dispatched < expected) {
+      //没有更多数据，等待
+      backoff.reset();
+      schedule(fetchPeriod);
     } else {
-      //直接运行
-      scheduledExecutor.submit(scheduledCommand);
+      // 取满了一页，不等待这一页发送完成，立即拉取下一页
+      backoff.reset();
+      schedule(0);
     }
   }
 
-  private void markSucess(Message message) {
-    LOGGER.info(LoggingMarker.getIdLoggingMarker(message.header().id()), "send succeed");
+  /**
+   * 记录存储中等待发送的消息数量，存储不支持统计时不记录
+   */
+  private void recordBacklog(MessageMetrics metrics) {
+    long start = System.nanoTime();
+    int count;
     try {
-      messageProducerRepository.mark(message.header().id(), SendMessageState.SUCCEED);
+      count = messageProducerRepository.countWaitingForSend();
     } catch (Exception e) {
-      LOGGER.error(LoggingMarker.getIdLoggingMarker(message.header().id()), "mark message failed", e);
+      metrics.called(MessageMetrics.COUNT_WAITING_FOR_SEND, System.nanoTime() - start, false);
+      LOGGER.warn("count waiting for send message failed", e);
+      return;
+    }
+    if (count >= 0) {
+      metrics.called(MessageMetrics.COUNT_WAITING_FOR_SEND, System.nanoTime() - start, true);
+      metrics.backlog(count);
     }
   }
 
-  private void markFailed(Message message, Throwable throwable) {
-    LOGGER.error(LoggingMarker.getIdLoggingMarker(message.header().id()), "send failed",
-        throwable.getMessage());
+  private void dispatch(Message message) {
+    processing.incrementAndGet();
+    long start = System.nanoTime();
+    CompletableFuture<Message> future;
     try {
-      messageProducerRepository.mark(message.header().id(), SendMessageState.FAILED);
+      future = writeStream.send(message);
     } catch (Exception e) {
-      LOGGER.error(LoggingMarker.getIdLoggingMarker(message.header().id()), "mark message failed", e);
+      future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+    }
+    // 这里是不是应该用一个新的线程处理回调？
+    future.thenAccept(m -> {
+      MessageMetricsHolder.get().sent(streamName, System.nanoTime() - start, true);
+      markSucess(m);
+    }).exceptionally(throwable -> {
+      MessageMetricsHolder.get().sent(streamName, System.nanoTime() - start, false);
+      markFailed(message, throwable);
+      return null;
+    }).thenAccept(v -> {
+      processing.decrementAndGet();
+      if (handOff != null && !handOff.isEmpty()) {
+        drain();
+      }
+      if (windowFull.compareAndSet(true, false)) {
+        // 窗口有空余，立即继续执行
+        schedule(0);
+      }
+    });
+  }
+
+  private void markAll(Map<String, SendMessageState> states) {
+    long start = System.nanoTime();
+    boolean succeeded = false;
+    try {
+      messageProducerRepository.markAll(states);
+      succeeded = true;
+      recentlyMarked.addAll(states.keySet());
+    } finally {
+      MessageMetricsHolder.get().called(MessageMetrics.MARK_ALL, System.nanoTime() - start,
+          succeeded);
+      //标记失败的消息会被重新拉取发送
+      inFlight.removeAll(states.keySet());
     }
   }
 
+  private void markSucess(Message message) {
+    MessageLogging.log(LOGGER, Stage.SEND, message.header().id(),
+        () -> LoggingMarker.getIdLoggingMarker(message.header().id()), "send succeed");
+    stateRecorder.record(message.header().id(), SendMessageState.SUCCEED);
+  }
+
+  private void markFailed(Message message, Throwable throwable) {
+    LOGGER.error(LoggingMarker.getIdLoggingMarker(message.header().id()), "send failed",
+        throwable.getMessage());
+    stateRecorder.record(message.header().id(), SendMessageState.FAILED);
+  }
+
 }
@@ -0,0 +1,111 @@
+package com.github.edgar615.message.bus;
+
+import com.github.edgar615.message.utils.NamedThreadFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 消息状态的延迟写入.
+ * <p>
+ * 消费线程和发送回调只把状态放入缓冲区，缓冲区达到batchSize或者每隔flushIntervalMs由后台线程调用一次markAll，
+ * 同一个消息多次标记只保留最后一次的状态。batchSize小于等于1时不缓冲，直接在调用线程上标记.
+ * <p>
+ * close时会把缓冲区中剩余的状态全部写入.
+ *
+ * @author Edgar
+ */
+class MessageStateRecorder<S> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MessageStateRecorder.class);
+
+  private final Consumer<Map<String, S>> flusher;
+
+  private final int batchSize;
+
+  private final ScheduledExecutorService executor;
+
+  private Map<String, S> buffer = new LinkedHashMap<>();
+
+  private MessageStateRecorder(String name, int batchSize, long flushIntervalMs,
+      Consumer<Map<String, S>> flusher) {
+    this.flusher = flusher;
+    this.batchSize = batchSize;
+    if (batchSize > 1) {
+      this.executor = Executors.newSingleThreadScheduledExecutor(NamedThreadFactory.create(name));
+      this.executor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs,
+          TimeUnit.MILLISECONDS);
+    } else {
+      this.executor = null;
+    }
+  }
+
+  static <S> MessageStateRecorder<S> create(String name, int batchSize, long flushIntervalMs,
+      Consumer<Map<String, S>> flusher) {
+    return new MessageStateRecorder<>(name, batchSize, flushIntervalMs, flusher);
+  }
+
+  void record(String id, S state) {
+    if (executor == null) {
+      write(Collections.singletonMap(id, state));
+      return;
+    }
+    Map<String, S> full = null;
+    synchronized (this) {
+      buffer.put(id, state);
+      if (buffer.size() >= batchSize) {
+        full = buffer;
+        buffer = new LinkedHashMap<>();
+      }
+    }
+    if (full != null) {
+      Map<String, S> states = full;
+      try {
+        executor.execute(() -> write(states));
+      } catch (RejectedExecutionException e) {
+        //已经关闭，直接写入
+        write(states);
+      }
+    }
+  }
+
+  void flush() {
+    Map<String, S> states;
+    synchronized (this) {
+      if (buffer.isEmpty()) {
+        return;
+      }
+      states = buffer;
+      buffer = new LinkedHashMap<>();
+    }
+    write(states);
+  }
+
+  void close() {
+    if (executor == null) {
+      return;
+    }
+    executor.shutdown();
+    try {
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  private void write(Map<String, S> states) {
+    try {
+      flusher.accept(states);
+    } catch (Exception e) {
+      LOGGER.error("mark message failed, ids:{}", states.keySet(), e);
+    }
+  }
+}
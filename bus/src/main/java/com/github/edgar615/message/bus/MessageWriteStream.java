@@ -1,12 +1,39 @@
 package com.github.edgar615.message.bus;
 
 import com.github.edgar615.message.core.Message;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public interface MessageWriteStream {
 
   CompletableFuture<Message> send(Message message);
 
+  /**
+   * 批量发送消息，默认逐条调用send，可以批量交给客户端的实现应该重写这个方法.
+   *
+   * @param messages 消息
+   * @return 所有消息都有了结果之后完成，不会异常完成，每条消息的结果从SendResult中获取
+   */
+  default CompletableFuture<SendResult> sendAll(List<Message> messages) {
+    CompletableFuture<SendResult> future = new CompletableFuture<>();
+    SendResult.Collector collector = SendResult.collect(messages, future::complete);
+    for (int i = 0; i < messages.size(); i++) {
+      int index = i;
+      try {
+        send(messages.get(i)).whenComplete((message, throwable) -> {
+          if (throwable == null) {
+            collector.succeed(index);
+          } else {
+            collector.fail(index, throwable);
+          }
+        });
+      } catch (Exception e) {
+        collector.fail(index, e);
+      }
+    }
+    return future;
+  }
+
   void start();
 
   void close();
@@ -1,5 +1,10 @@
 package com.github.edgar615.message.bus;
 
+import com.github.edgar615.message.utils.MessageFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
 /**
  * Producer的配置属性.预留对象后面有需要可以增加参数
  *
@@ -13,5 +18,238 @@ public class ProducerOptions {
   public static final int DEFAULT_WORKER_POOL_SIZE =
           2 * Runtime.getRuntime().availableProcessors();
 
+  /**
+   * 默认的定时拉取间隔
+   */
+  public static final long DEFAULT_FETCH_PERIOD = 1000L;
+
+  /**
+   * 默认的最大拉取间隔
+   */
+  public static final long DEFAULT_MAX_FETCH_PERIOD = 16000L;
+
+  /**
+   * 默认每次从持久层拉取的数量
+   */
+  public static final int DEFAULT_FETCH_SIZE = 100;
+
+  /**
+   * 默认最多同时发送的消息数量
+   */
+  public static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+
+  /**
+   * 默认的本地直接发送超时时间
+   */
+  public static final long DEFAULT_HAND_OFF_TIMEOUT_MS = 5000L;
+
+  /**
+   * 默认的批量标记间隔
+   */
+  public static final long DEFAULT_MARK_FLUSH_INTERVAL_MS = 100L;
+
+  /**
+   * 定时从持久层拉取待发送消息的间隔
+   */
+  private long fetchPeriod = DEFAULT_FETCH_PERIOD;
+
+  /**
+   * 持续没有待发送消息时，拉取间隔逐渐增加到maxFetchPeriod
+   */
+  private long maxFetchPeriod = DEFAULT_MAX_FETCH_PERIOD;
+
+  /**
+   * 每次从持久层拉取待发送消息的数量
+   */
+  private int fetchSize = DEFAULT_FETCH_SIZE;
+
+  /**
+   * 最多同时发送（已发送未返回结果）的消息数量
+   */
+  private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+  /**
+   * 批量标记发送状态的数量，默认1，即每条消息发送后立即标记
+   */
+  private int markBatchSize = 1;
+
+  /**
+   * 批量标记发送状态的最大间隔
+   */
+  private long markFlushIntervalMs = DEFAULT_MARK_FLUSH_INTERVAL_MS;
+
+  /**
+   * 本地直接发送的缓冲区大小，默认0，即持久化的消息只通过定时拉取发送
+   */
+  private int handOffBufferSize = 0;
+
+  /**
+   * 本地直接发送的消息超过这个时间没有确认发送结果，交由定时拉取重新发送
+   */
+  private long handOffTimeoutMs = DEFAULT_HAND_OFF_TIMEOUT_MS;
+
+  /**
+   * 每个主题使用的消息格式，没有设置的主题使用JSON
+   */
+  private final Map<String, MessageFormat> topicFormats = new HashMap<>();
+
+  public MessageFormat getFormat(String topic) {
+    return topicFormats.getOrDefault(topic, MessageFormat.JSON);
+  }
+
+  /**
+   * 设置主题使用的消息格式，消费方会根据消息的第一个字节自动识别格式，不需要额外配置.
+   *
+   * @param topic 主题
+   * @param format 消息格式
+   * @return ProducerOptions
+   */
+  public ProducerOptions setFormat(String topic, MessageFormat format) {
+    Objects.requireNonNull(topic);
+    Objects.requireNonNull(format);
+    this.topicFormats.put(topic, format);
+    return this;
+  }
+
+  public long getFetchPeriod() {
+    return fetchPeriod;
+  }
+
+  /**
+   * 设置定时从持久层拉取待发送消息的间隔.
+   *
+   * @param fetchPeriod 间隔，单位毫秒
+   * @return ProducerOptions
+   */
+  public ProducerOptions setFetchPeriod(long fetchPeriod) {
+    if (fetchPeriod > 0) {
+      this.fetchPeriod = fetchPeriod;
+    }
+    return this;
+  }
+
+  public long getMaxFetchPeriod() {
+    return maxFetchPeriod;
+  }
+
+  /**
+   * 设置最大的拉取间隔，没有拉取到待发送的消息时拉取间隔翻倍，直到maxFetchPeriod，拉取到消息后恢复为fetchPeriod.
+   * 设置为和fetchPeriod相同的值可以关闭退避.
+   *
+   * @param maxFetchPeriod 最大间隔，单位毫秒
+   * @return ProducerOptions
+   */
+  public ProducerOptions setMaxFetchPeriod(long maxFetchPeriod) {
+    if (maxFetchPeriod > 0) {
+      this.maxFetchPeriod = maxFetchPeriod;
+    }
+    return this;
+  }
+
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  /**
+   * 设置每次从持久层拉取待发送消息的数量，拉满一页时会立即拉取下一页.
+   *
+   * @param fetchSize 拉取数量
+   * @return ProducerOptions
+   */
+  public ProducerOptions setFetchSize(int fetchSize) {
+    if (fetchSize > 0) {
+      this.fetchSize = fetchSize;
+    }
+    return this;
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  /**
+   * 设置最多同时发送的消息数量，达到这个数量后暂停拉取，直到有消息发送完成.
+   *
+   * @param maxInFlight 最多同时发送的消息数量
+   * @return ProducerOptions
+   */
+  public ProducerOptions setMaxInFlight(int maxInFlight) {
+    if (maxInFlight > 0) {
+      this.maxInFlight = maxInFlight;
+    }
+    return this;
+  }
+
+  public int getMarkBatchSize() {
+    return markBatchSize;
+  }
+
+  /**
+   * 设置批量标记发送状态的数量，大于1时发送结果先放入缓冲区，达到数量或者超过markFlushIntervalMs后调用一次
+   * MessageProducerRepository.markAll.
+   *
+   * @param markBatchSize 批量标记的数量
+   * @return ProducerOptions
+   */
+  public ProducerOptions setMarkBatchSize(int markBatchSize) {
+    if (markBatchSize > 0) {
+      this.markBatchSize = markBatchSize;
+    }
+    return this;
+  }
+
+  public long getMarkFlushIntervalMs() {
+    return markFlushIntervalMs;
+  }
+
+  /**
+   * 设置批量标记发送状态的最大间隔，只在markBatchSize大于1时有效.
+   *
+   * @param markFlushIntervalMs 最大间隔
+   * @return ProducerOptions
+   */
+  public ProducerOptions setMarkFlushIntervalMs(long markFlushIntervalMs) {
+    if (markFlushIntervalMs > 0) {
+      this.markFlushIntervalMs = markFlushIntervalMs;
+    }
+    return this;
+  }
+
+  public int getHandOffBufferSize() {
+    return handOffBufferSize;
+  }
+
+  /**
+   * 设置本地直接发送的缓冲区大小.
+   * <p>
+   * 大于0时，MessageProducer.save持久化成功后会把消息直接交给同一个JVM中的MessageProducerScheduler发送，不需要等待定时拉取，
+   * 缓冲区满了之后的消息仍然通过定时拉取发送.
+   *
+   * @param handOffBufferSize 缓冲区大小
+   * @return ProducerOptions
+   */
+  public ProducerOptions setHandOffBufferSize(int handOffBufferSize) {
+    if (handOffBufferSize >= 0) {
+      this.handOffBufferSize = handOffBufferSize;
+    }
+    return this;
+  }
+
+  public long getHandOffTimeoutMs() {
+    return handOffTimeoutMs;
+  }
+
+  /**
+   * 设置本地直接发送的超时时间，超过这个时间没有确认发送结果的消息会被定时拉取重新发送.
+   *
+   * @param handOffTimeoutMs 超时时间，单位毫秒
+   * @return ProducerOptions
+   */
+  public ProducerOptions setHandOffTimeoutMs(long handOffTimeoutMs) {
+    if (handOffTimeoutMs > 0) {
+      this.handOffTimeoutMs = handOffTimeoutMs;
+    }
+    return this;
+  }
 
 }
@@ -0,0 +1,128 @@
+package com.github.edgar615.message.bus;
+
+import com.github.edgar615.message.core.Message;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 批量发送的结果，按发送的顺序记录每条消息是否发送成功.
+ *
+ * @author Edgar
+ */
+public final class SendResult {
+
+  private final List<Message> messages;
+
+  private final AtomicReferenceArray<Throwable> causes;
+
+  private SendResult(List<Message> messages, AtomicReferenceArray<Throwable> causes) {
+    this.messages = messages;
+    this.causes = causes;
+  }
+
+  /**
+   * 创建一个收集器，所有消息都有了结果之后把SendResult交给handler
+   *
+   * @param messages 发送的消息
+   * @param handler 回调，在最后一条消息有结果的线程中执行
+   * @return Collector
+   */
+  public static Collector collect(List<Message> messages, Consumer<SendResult> handler) {
+    return new Collector(ImmutableList.copyOf(messages), handler);
+  }
+
+  public List<Message> messages() {
+    return messages;
+  }
+
+  public boolean succeeded(int index) {
+    return causes.get(index) == null;
+  }
+
+  /**
+   * 第index条消息失败的原因
+   *
+   * @param index 消息的位置
+   * @return 发送成功返回null
+   */
+  public Throwable cause(int index) {
+    return causes.get(index);
+  }
+
+  public List<Message> succeeded() {
+    List<Message> succeeded = new ArrayList<>();
+    for (int i = 0; i < messages.size(); i++) {
+      if (succeeded(i)) {
+        succeeded.add(messages.get(i));
+      }
+    }
+    return succeeded;
+  }
+
+  public List<Message> failed() {
+    List<Message> failed = new ArrayList<>();
+    for (int i = 0; i < messages.size(); i++) {
+      if (!succeeded(i)) {
+        failed.add(messages.get(i));
+      }
+    }
+    return failed;
+  }
+
+  public boolean allSucceeded() {
+    for (int i = 0; i < messages.size(); i++) {
+      if (!succeeded(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "SendResult{total=" + messages.size() + ", failed=" + failed().size() + "}";
+  }
+
+  /**
+   * 收集每条消息的发送结果，每条消息只能调用一次succeed或者fail.
+   */
+  public static final class Collector {
+
+    private final List<Message> messages;
+
+    private final AtomicReferenceArray<Throwable> causes;
+
+    private final AtomicInteger remaining;
+
+    private final Consumer<SendResult> handler;
+
+    private Collector(List<Message> messages, Consumer<SendResult> handler) {
+      this.messages = messages;
+      this.causes = new AtomicReferenceArray<>(messages.size());
+      this.remaining = new AtomicInteger(messages.size());
+      this.handler = handler;
+      if (messages.isEmpty()) {
+        handler.accept(new SendResult(messages, causes));
+      }
+    }
+
+    public void succeed(int index) {
+      done();
+    }
+
+    public void fail(int index, Throwable cause) {
+      causes.set(index, cause);
+      done();
+    }
+
+    private void done() {
+      if (remaining.decrementAndGet() == 0) {
+        handler.accept(new SendResult(messages, causes));
+      }
+    }
+  }
+}
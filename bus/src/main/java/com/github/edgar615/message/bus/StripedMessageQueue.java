@@ -0,0 +1,161 @@
+package com.github.edgar615.message.bus;
+
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.utils.MessageQueue;
+import com.github.edgar615.message.utils.MessageQueueListener;
+import com.github.edgar615.message.utils.RingBufferMessageQueue;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 分通道的消息队列.
+ * <p>
+ * 消息按laneKeyExtractor计算的key散列到laneCount个通道，每个通道有自己的队列，由MessageConsumer为每个通道启动一个线程，
+ * 从{@link #lanes()}返回的通道出队。相同key的消息总是进入同一个通道，所以能够按入队顺序处理，而不同通道之间没有共享的锁。
+ * <p>
+ * 不使用独立线程的消费者（例如Vert.x）通过poll取消息：依次尝试用CAS占用空闲的通道，
+ * 一个通道同时只有一条消息在处理，complete之后才释放，所以相同key的消息同样按顺序处理。
+ * <p>
+ * isFull和isLowWaterMark按所有通道的消息总数计算.
+ *
+ * @author Edgar
+ */
+public class StripedMessageQueue implements MessageQueue {
+
+  private final MessageQueue[] lanes;
+
+  /**
+   * 通过poll取出的消息还没有complete的通道为1
+   */
+  private final AtomicIntegerArray busy;
+
+  /**
+   * poll开始扫描的通道，轮流从不同的通道开始，避免总是优先取前面的通道
+   */
+  private final AtomicInteger next = new AtomicInteger();
+
+  private final Function<Message, String> keyExtractor;
+
+  private final int limit;
+
+  public static StripedMessageQueue create(ConsumerOptions options, int limit) {
+    return new StripedMessageQueue(options.getLaneCount(), options.getLaneKeyExtractor(), limit);
+  }
+
+  private StripedMessageQueue(int laneCount, Function<Message, String> keyExtractor, int limit) {
+    this.keyExtractor = keyExtractor;
+    this.limit = limit;
+    this.lanes = new MessageQueue[laneCount];
+    for (int i = 0; i < laneCount; i++) {
+      //单个通道允许放下全部消息，避免key分布不均时入队线程被某一个通道阻塞
+      lanes[i] = RingBufferMessageQueue.create(limit);
+    }
+    this.busy = new AtomicIntegerArray(laneCount);
+  }
+
+  @Override
+  public List<MessageQueue> lanes() {
+    return Collections.unmodifiableList(Arrays.asList(lanes));
+  }
+
+  @Override
+  public boolean isFull() {
+    return size() >= limit;
+  }
+
+  @Override
+  public boolean isLowWaterMark() {
+    return size() <= limit / 2;
+  }
+
+  @Override
+  public Message poll() {
+    int start = Math.floorMod(next.getAndIncrement(), lanes.length);
+    for (int i = 0; i < lanes.length; i++) {
+      int index = (start + i) % lanes.length;
+      if (!busy.compareAndSet(index, 0, 1)) {
+        continue;
+      }
+      Message message = lanes[index].poll();
+      if (message != null) {
+        return message;
+      }
+      busy.set(index, 0);
+    }
+    return null;
+  }
+
+  /**
+   * 没有可以取出的消息时每隔1毫秒重新扫描一次，使用独立线程时应该从{@link #lanes()}各自出队
+   */
+  @Override
+  public Message dequeue() throws InterruptedException {
+    Message message;
+    while ((message = poll()) == null) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    return message;
+  }
+
+  @Override
+  public void enqueue(Message message) {
+    laneOf(message).enqueue(message);
+  }
+
+  @Override
+  public void enqueue(List<Message> messages) {
+    for (Message message : messages) {
+      laneOf(message).enqueue(message);
+    }
+  }
+
+  @Override
+  public void complete(Message message) {
+    int index = indexOf(message);
+    lanes[index].complete(message);
+    //complete之后才释放通道，poll取出的下一条消息一定在这条消息之后处理
+    busy.set(index, 0);
+  }
+
+  /**
+   * 消息由各个通道complete，监听器注册到每个通道
+   */
+  @Override
+  public void addListener(MessageQueueListener listener) {
+    for (MessageQueue lane : lanes) {
+      lane.addListener(listener);
+    }
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (MessageQueue lane : lanes) {
+      size += lane.size();
+    }
+    return size;
+  }
+
+  private MessageQueue laneOf(Message message) {
+    return lanes[indexOf(message)];
+  }
+
+  private int indexOf(Message message) {
+    String key = keyExtractor.apply(message);
+    if (key == null) {
+      key = "unkown";
+    }
+    int hash = key.hashCode();
+    hash ^= (hash >>> 16);
+    return Math.floorMod(hash, lanes.length);
+  }
+}
@@ -1,7 +1,10 @@
 package com.github.edgar615.message.repository;
 
 import com.github.edgar615.message.core.Message;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 消息消费的持久层，用来保证消息的幂等，已经避免消息丢失
@@ -10,10 +13,39 @@ public interface MessageConsumerRepository {
 
   /**
    * 插入一个事件，插入的过程中需要判断任务是否是重复消息，重复消息不在继续处理
-   * @return 重复消息false，非重复消息 true
+   * @return 重复消息true，非重复消息 false
    */
   boolean insert(Message message);
 
+  /**
+   * 批量插入事件，一次拉取的消息只需要一次入库.
+   * <p>
+   * 默认实现逐条调用insert，实现类可以覆盖这个方法，例如使用一条多行的insert ignore语句完成去重.
+   * 如果失败时已经有消息写入，需要抛出{@link PartialInsertException}，否则这些消息会被当作重复消息永远不会被处理.
+   *
+   * @param messages 消息列表
+   * @return 非重复消息的ID，这些消息需要继续处理
+   * @throws PartialInsertException 部分消息写入之后失败
+   */
+  default Set<String> insertAll(List<Message> messages) {
+    Set<String> inserted = new LinkedHashSet<>();
+    for (Message message : messages) {
+      boolean duplicated;
+      try {
+        duplicated = insert(message);
+      } catch (RuntimeException e) {
+        if (inserted.isEmpty()) {
+          throw e;
+        }
+        throw new PartialInsertException(inserted, e);
+      }
+      if (!duplicated) {
+        inserted.add(message.header().id());
+      }
+    }
+    return inserted;
+  }
+
   /**
    * 从数据库中取出十条未处理的事件
    *
@@ -39,4 +71,15 @@ public interface MessageConsumerRepository {
    */
   void mark(String eventId, ConsumeMessageState state);
 
+  /**
+   * 批量标记事件，默认实现逐条调用mark，实现类可以覆盖这个方法使用一次批量更新.
+   *
+   * @param states 事件ID和状态
+   */
+  default void markAll(Map<String, ConsumeMessageState> states) {
+    for (Map.Entry<String, ConsumeMessageState> entry : states.entrySet()) {
+      mark(entry.getKey(), entry.getValue());
+    }
+  }
+
 }
@@ -3,6 +3,7 @@ package com.github.edgar615.message.repository;
 import com.github.edgar615.message.bus.MessageProducer;
 import com.github.edgar615.message.core.Message;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 需要发送的事件可以通过这个接口实现持久化，避免数据丢失
@@ -12,6 +13,7 @@ import java.util.List;
  * 该接口还提供了一个方法从存储中读取待发送的事件{@link #waitingForSend()}， ${@link MessageProducer}会启用一个定时任务，调用这个方法获取需要发送的事件，加入发送队列中。
  * <p>
  * 在事件发布之后，会调用${@link #mark(String, SendMessageState)}来向存储层标记事件的发布结果，这个方法应该尽量不要阻塞线程，否则会影响发布事件的性能。
+ * 如果设置了{@link com.github.edgar615.message.bus.ProducerOptions#setMarkBatchSize(int)}，发布结果会缓冲后通过{@link #markAll(Map)}批量标记.
  * 存储层应该记录事件失败的次数，超过一定次数的事件可以不再通过{@link #waitingForSend()}方法查询.
  */
 public interface MessageProducerRepository {
@@ -38,6 +40,15 @@ public interface MessageProducerRepository {
    */
   List<Message> waitingForSend(int fetchCount);
 
+  /**
+   * 统计未处理的事件数量，用于记录积压的指标，默认返回-1表示不支持统计.
+   *
+   * @return 待发送的事件数量，-1表示未知
+   */
+  default int countWaitingForSend() {
+    return -1;
+  }
+
   /**
    * 标记事件,这个方法应该尽量不要阻塞发布线程，否则会影响发布事件的性能。
    *
@@ -46,4 +57,15 @@ public interface MessageProducerRepository {
    */
   void mark(String eventId, SendMessageState state);
 
+  /**
+   * 批量标记事件，默认实现逐条调用mark，实现类可以覆盖这个方法使用一次批量更新.
+   *
+   * @param states 事件ID和状态
+   */
+  default void markAll(Map<String, SendMessageState> states) {
+    for (Map.Entry<String, SendMessageState> entry : states.entrySet()) {
+      mark(entry.getKey(), entry.getValue());
+    }
+  }
+
 }
@@ -0,0 +1,28 @@
+package com.github.edgar615.message.repository;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 批量入库时部分消息已经写入、后面的消息写入失败.
+ * <p>
+ * 已经写入的消息再次被拉取时会被当作重复消息，所以这些消息必须继续处理，不能和失败的消息一起丢弃.
+ *
+ * @author Edgar
+ */
+public class PartialInsertException extends RuntimeException {
+
+  private final Set<String> inserted;
+
+  public PartialInsertException(Set<String> inserted, Throwable cause) {
+    super("insert failed after " + inserted.size() + " messages inserted", cause);
+    this.inserted = Collections.unmodifiableSet(inserted);
+  }
+
+  /**
+   * @return 失败之前已经写入的非重复消息的ID，这些消息需要继续处理
+   */
+  public Set<String> inserted() {
+    return inserted;
+  }
+}
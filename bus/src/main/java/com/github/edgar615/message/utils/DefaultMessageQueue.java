@@ -3,6 +3,7 @@ package com.github.edgar615.message.utils;
 import com.github.edgar615.message.core.Message;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +23,8 @@ public class DefaultMessageQueue implements MessageQueue {
 
   private final int limit;
 
+  private final List<MessageQueueListener> listeners = new CopyOnWriteArrayList<>();
+
   public static DefaultMessageQueue create(int limit) {
     return new DefaultMessageQueue(limit);
   }
@@ -39,32 +42,51 @@ public class DefaultMessageQueue implements MessageQueue {
   }
 
   @Override
-  public synchronized void enqueue(Message message) {
-    //唤醒等待出队的线程，如果队空或者下一个出队元素为null，说明可能会有出队线程在等待唤醒
-    if (elements.isEmpty()) {
-      //唤醒出队
-      notifyAll();
+  public void enqueue(Message message) {
+    synchronized (this) {
+      //唤醒等待出队的线程，如果队空或者下一个出队元素为null，说明可能会有出队线程在等待唤醒
+      if (elements.isEmpty()) {
+        //唤醒出队
+        notifyAll();
+      }
+      elements.add(message);
     }
-    elements.add(message);
     LOGGER.debug(LoggingMarker.getIdLoggingMarker(message.header().id()), "enqueue");
+    notifyEnqueue(1);
   }
 
   @Override
-  public synchronized void enqueue(List<Message> messages) {
-    //唤醒等待出队的线程，如果队空或者下一个出队元素为null，说明可能会有出队线程在等待唤醒
-    if (elements.isEmpty()) {
-      //唤醒出队
-      notifyAll();
+  public void enqueue(List<Message> messages) {
+    synchronized (this) {
+      //唤醒等待出队的线程，如果队空或者下一个出队元素为null，说明可能会有出队线程在等待唤醒
+      if (elements.isEmpty()) {
+        //唤醒出队
+        notifyAll();
+      }
+      elements.addAll(messages);
     }
-    elements.addAll(messages);
     if (LOGGER.isDebugEnabled()) {
       messages.forEach(e -> LOGGER.debug(LoggingMarker.getIdLoggingMarker(e.header().id()), "enqueue"));
     }
+    notifyEnqueue(messages.size());
+  }
 
+  @Override
+  public void complete(Message message) {
+    for (MessageQueueListener listener : listeners) {
+      listener.onComplete(message);
+    }
   }
 
   @Override
-  public synchronized void complete(Message message) {
+  public void addListener(MessageQueueListener listener) {
+    listeners.add(listener);
+  }
+
+  private void notifyEnqueue(int count) {
+    for (MessageQueueListener listener : listeners) {
+      listener.onEnqueue(count);
+    }
   }
 
   @Override
@@ -7,6 +7,9 @@ import com.github.edgar615.message.core.Message;
 import java.util.Map;
 import org.slf4j.Marker;
 
+/**
+ * 日志的marker，source字段在日志真正输出时才序列化.
+ */
 public class LoggingMarker {
 
   public static Marker getLoggingMarker(Message message, boolean wasReceived) {
@@ -15,7 +18,7 @@ public class LoggingMarker {
             .and(append("topic", message.header().to()))
             .and(append("type", wasReceived ? "inbound" : "outbound"))
             .and(append("body", message.body().name()))
-            .and(append("source", message.toMap()));
+            .and(append("source", new MessageSource(message)));
     return messageMarker;
   }
 
@@ -25,7 +28,7 @@ public class LoggingMarker {
             .and(append("topic", message.header().to()))
             .and(append("type", wasReceived ? "inbound" : "outbound"))
             .and(append("body", message.body().name()))
-            .and(append("source", message.toMap()))
+            .and(append("source", new MessageSource(message)))
             .and(appendEntries(extra));
     return messageMarker;
   }
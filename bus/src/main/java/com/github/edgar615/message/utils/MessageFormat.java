@@ -0,0 +1,19 @@
+package com.github.edgar615.message.utils;
+
+/**
+ * 消息的传输格式.
+ *
+ * @author Edgar
+ */
+public enum MessageFormat {
+
+  /**
+   * JSON，默认格式
+   */
+  JSON,
+
+  /**
+   * 紧凑的二进制格式，第一个字节是魔数，读取时根据魔数自动识别
+   */
+  BINARY
+}
@@ -0,0 +1,164 @@
+package com.github.edgar615.message.utils;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.Marker;
+
+/**
+ * 消息处理过程中每条消息都会打印的日志（拉取、入队、消费、发送）的级别和采样.
+ * <p>
+ * 每个阶段可以单独设置日志级别和采样率，采样率N表示每N条消息只记录1条，按消息ID计算，同一条消息在各个阶段的日志要么都记录要么都不记录。
+ * 默认INFO级别、不采样，也可以通过系统属性设置，例如：
+ * <pre>
+ *   -Dmessage.logging.consume.level=DEBUG
+ *   -Dmessage.logging.poll.sampling=100
+ * </pre>
+ * 通过{@link #log(Logger, Stage, String, Supplier, String)}打印日志，不需要记录时连marker都不用创建.
+ *
+ * @author Edgar
+ */
+public final class MessageLogging {
+
+  public enum Stage {
+    /**
+     * 从MQ拉取
+     */
+    POLL,
+    /**
+     * 入库并放入队列
+     */
+    ENQUEUE,
+    /**
+     * 消费完成
+     */
+    CONSUME,
+    /**
+     * 发送
+     */
+    SEND
+  }
+
+  public enum Level {
+    OFF, ERROR, WARN, INFO, DEBUG, TRACE
+  }
+
+  private static final AtomicReferenceArray<Level> LEVELS =
+      new AtomicReferenceArray<>(Stage.values().length);
+
+  private static final AtomicIntegerArray SAMPLINGS = new AtomicIntegerArray(Stage.values().length);
+
+  static {
+    for (Stage stage : Stage.values()) {
+      String prefix = "message.logging." + stage.name().toLowerCase(Locale.ROOT);
+      LEVELS.set(stage.ordinal(),
+          Level.valueOf(System.getProperty(prefix + ".level", Level.INFO.name())
+              .toUpperCase(Locale.ROOT)));
+      SAMPLINGS.set(stage.ordinal(), Math.max(1, Integer.getInteger(prefix + ".sampling", 1)));
+    }
+  }
+
+  private MessageLogging() {
+    throw new AssertionError("Not instantiable: " + MessageLogging.class);
+  }
+
+  public static void setLevel(Stage stage, Level level) {
+    Objects.requireNonNull(level);
+    LEVELS.set(stage.ordinal(), level);
+  }
+
+  public static Level level(Stage stage) {
+    return LEVELS.get(stage.ordinal());
+  }
+
+  /**
+   * 设置采样率.
+   *
+   * @param stage 阶段
+   * @param sampling 每sampling条消息记录1条，小于等于1表示全部记录
+   */
+  public static void setSampling(Stage stage, int sampling) {
+    SAMPLINGS.set(stage.ordinal(), Math.max(1, sampling));
+  }
+
+  public static int sampling(Stage stage) {
+    return SAMPLINGS.get(stage.ordinal());
+  }
+
+  /**
+   * 判断某条消息在这个阶段的日志是否需要记录
+   *
+   * @param logger 日志
+   * @param stage 阶段
+   * @param messageId 消息ID，用于采样
+   * @return 需要记录返回true
+   */
+  public static boolean isEnabled(Logger logger, Stage stage, String messageId) {
+    if (!isLevelEnabled(logger, level(stage))) {
+      return false;
+    }
+    int sampling = sampling(stage);
+    if (sampling <= 1 || messageId == null) {
+      return true;
+    }
+    return Math.floorMod(messageId.hashCode(), sampling) == 0;
+  }
+
+  /**
+   * 需要记录时才创建marker并打印日志
+   *
+   * @param logger 日志
+   * @param stage 阶段
+   * @param messageId 消息ID，用于采样
+   * @param marker 创建marker，不需要记录时不会调用
+   * @param msg 日志内容
+   */
+  public static void log(Logger logger, Stage stage, String messageId, Supplier<Marker> marker,
+      String msg) {
+    if (isEnabled(logger, stage, messageId)) {
+      log(logger, stage, marker.get(), msg);
+    }
+  }
+
+  public static void log(Logger logger, Stage stage, Marker marker, String msg) {
+    switch (level(stage)) {
+      case ERROR:
+        logger.error(marker, msg);
+        break;
+      case WARN:
+        logger.warn(marker, msg);
+        break;
+      case INFO:
+        logger.info(marker, msg);
+        break;
+      case DEBUG:
+        logger.debug(marker, msg);
+        break;
+      case TRACE:
+        logger.trace(marker, msg);
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static boolean isLevelEnabled(Logger logger, Level level) {
+    switch (level) {
+      case ERROR:
+        return logger.isErrorEnabled();
+      case WARN:
+        return logger.isWarnEnabled();
+      case INFO:
+        return logger.isInfoEnabled();
+      case DEBUG:
+        return logger.isDebugEnabled();
+      case TRACE:
+        return logger.isTraceEnabled();
+      default:
+        return false;
+    }
+  }
+}
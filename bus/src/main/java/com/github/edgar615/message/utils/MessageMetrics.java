@@ -0,0 +1,105 @@
+package com.github.edgar615.message.utils;
+
+/**
+ * 消息总线的指标.
+ * <p>
+ * 默认所有方法都是空实现，通过{@link MessageMetricsHolder#set(MessageMetrics)}设置具体的实现.
+ * 这些方法在拉取、消费、发送的热点路径上调用，参数只使用基本类型和已有的字符串，实现不应该在记录时分配对象.
+ *
+ * @author Edgar
+ */
+public interface MessageMetrics {
+
+  MessageMetrics NOOP = new MessageMetrics() {
+  };
+
+  String INSERT = "insert";
+
+  String INSERT_ALL = "insertAll";
+
+  String MARK_ALL = "markAll";
+
+  String WAITING_FOR_SEND = "waitingForSend";
+
+  String COUNT_WAITING_FOR_SEND = "countWaitingForSend";
+
+  String WAITING_FOR_CONSUME = "waitingForConsume";
+
+  /**
+   * 一次拉取到的消息数量
+   *
+   * @param count 消息数量
+   */
+  default void polled(int count) {
+  }
+
+  /**
+   * 消息从入队到出队等待的时间
+   *
+   * @param nanos 纳秒
+   */
+  default void waited(long nanos) {
+  }
+
+  /**
+   * 消息处理完成
+   *
+   * @param topic 主题
+   * @param resource 资源
+   * @param nanos 处理时间，纳秒
+   * @param succeeded 是否处理成功
+   */
+  default void handled(String topic, String resource, long nanos, boolean succeeded) {
+  }
+
+  /**
+   * 注册消息队列，用于统计队列的深度
+   *
+   * @param name 名称
+   * @param queue 队列
+   */
+  default void register(String name, MessageQueue queue) {
+  }
+
+  /**
+   * 暂停拉取
+   */
+  default void paused() {
+  }
+
+  /**
+   * 恢复拉取
+   *
+   * @param pausedMillis 暂停的时间，毫秒
+   */
+  default void resumed(long pausedMillis) {
+  }
+
+  /**
+   * 消息发送完成
+   *
+   * @param stream 发送消息的MessageWriteStream
+   * @param nanos 发送时间，纳秒
+   * @param succeeded 是否发送成功
+   */
+  default void sent(String stream, long nanos, boolean succeeded) {
+  }
+
+  /**
+   * 存储中等待发送的消息数量，存储实现了countWaitingForSend时调度器每次拉取后记录
+   *
+   * @param count 消息数量
+   */
+  default void backlog(int count) {
+  }
+
+  /**
+   * 调用存储
+   *
+   * @param operation 方法，使用这个接口中定义的常量
+   * @param nanos 调用时间，纳秒
+   * @param succeeded 是否调用成功
+   */
+  default void called(String operation, long nanos, boolean succeeded) {
+  }
+}
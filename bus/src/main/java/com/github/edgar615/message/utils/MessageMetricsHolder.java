@@ -0,0 +1,32 @@
+package com.github.edgar615.message.utils;
+
+import java.util.Objects;
+
+/**
+ * 全局的MessageMetrics，默认不记录任何指标.
+ * <p>
+ * 需要在创建消费者和生产者之前设置，否则队列的深度不会被注册.
+ *
+ * @author Edgar
+ */
+public class MessageMetricsHolder {
+
+  private static volatile MessageMetrics metrics = MessageMetrics.NOOP;
+
+  private MessageMetricsHolder() {
+    throw new AssertionError("Not instantiable: " + MessageMetricsHolder.class);
+  }
+
+  public static void set(MessageMetrics metrics) {
+    Objects.requireNonNull(metrics);
+    MessageMetricsHolder.metrics = metrics;
+  }
+
+  public static MessageMetrics get() {
+    return metrics;
+  }
+
+  public static void clear() {
+    metrics = MessageMetrics.NOOP;
+  }
+}
@@ -1,6 +1,7 @@
 package com.github.edgar615.message.utils;
 
 import com.github.edgar615.message.core.Message;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -38,4 +39,22 @@ public interface MessageQueue {
   void complete(Message message);
 
   int size();
+
+  /**
+   * 可以由不同线程各自出队的通道，每个通道由一个线程调用dequeue，默认只有队列本身.
+   *
+   * @return 通道
+   */
+  default List<MessageQueue> lanes() {
+    return Collections.singletonList(this);
+  }
+
+  /**
+   * 增加监听器，消息complete之后会通知监听器
+   *
+   * @param listener 监听器
+   */
+  default void addListener(MessageQueueListener listener) {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support listener");
+  }
 }
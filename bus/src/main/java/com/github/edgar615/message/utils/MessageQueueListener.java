@@ -0,0 +1,29 @@
+package com.github.edgar615.message.utils;
+
+import com.github.edgar615.message.core.Message;
+
+/**
+ * 消息队列的监听器.
+ * <p>
+ * 回调在调用enqueue或complete的线程中执行，不要在回调中做耗时的操作.
+ *
+ * @author Edgar
+ */
+@FunctionalInterface
+public interface MessageQueueListener {
+
+  /**
+   * 消息处理完成，无论处理成功还是失败
+   *
+   * @param message 消息
+   */
+  void onComplete(Message message);
+
+  /**
+   * 有消息入队，可以用来唤醒等待消息的消费者
+   *
+   * @param count 入队的消息数量
+   */
+  default void onEnqueue(int count) {
+  }
+}
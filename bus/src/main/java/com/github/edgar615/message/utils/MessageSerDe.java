@@ -1,19 +1,90 @@
 package com.github.edgar615.message.utils;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.edgar615.message.core.BinaryValues;
 import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.core.MessageBody;
+import com.github.edgar615.message.core.MessageBodyCodec;
+import com.github.edgar615.message.core.MessageBodyCodecs;
+import com.github.edgar615.message.core.MessageHeader;
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * 消息的序列化.
+ * <p>
+ * 使用共享的ObjectReader/ObjectWriter，header直接用JsonGenerator/JsonParser读写，不再经过Message.toMap()/fromMap()的中间map。
+ * 输出和原来的写法（ObjectMapper序列化Message.toMap()）完全一致，header和外层的字段保持HashMap的遍历顺序。
+ * <p>
+ * 除了String，也可以直接读写UTF-8编码的byte[]，省去中间的String和一次编解码。
+ * <p>
+ * byte[]还支持二进制格式：第一个字节是魔数0xB1（JSON不会以这个字节开头），然后是变长的header长度和header，
+ * header的扩展字段名如果在预定义的表中只写一个编号，最后是消息体，由{@link MessageBodyCodec}的二进制方法编码。
+ * 读取时根据第一个字节自动识别格式。
+ */
 public class MessageSerDe {
 
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+  /**
+   * data也会写入日志的JsonGenerator，写完一个值不需要flush
+   */
+  private static final ObjectWriter WRITER = MAPPER.writer()
+      .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+  private static final ObjectReader MAP_READER = MAPPER.reader(Map.class);
+
+  private static final String HEADER = "header";
+
+  private static final String DATA = "data";
+
+  private static final String[] FIXED_HEADER_FIELDS = {"id", "to", "body", "timestamp",
+      "duration"};
+
+  private static final byte BINARY_MAGIC = (byte) 0xB1;
+
+  /**
+   * 二进制格式中用编号代替的扩展字段名，编号是下标+1，0表示后面跟着字段名。只能在末尾追加，不能修改已有的顺序
+   */
+  private static final String[] INTERNED_EXT_NAMES = {"__topic", "from", "group", "reply",
+      "traceId"};
+
+  private static final Map<String, Integer> INTERNED_EXT_IDS = internedIds();
+
+  /**
+   * 原来的外层map是HashMap，header和data的顺序由hash决定
+   */
+  private static final boolean HEADER_FIRST =
+      hashOrder(new String[]{HEADER, DATA}, 2)[0] == 0;
+
   public static String serialize(Message message) {
     try {
       if (message == null) {
         return null;
       } else {
-        ObjectMapper mapper = new ObjectMapper();
-        Map<String, Object> map = message.toMap();
-        return mapper.writeValueAsString(map);
+        StringWriter writer = new StringWriter(256);
+        try (JsonGenerator generator = FACTORY.createGenerator(writer)) {
+          writeMessage(generator, message);
+        }
+        return writer.toString();
       }
     } catch (Exception e) {
       throw new SerDeException(
@@ -21,22 +92,338 @@ public class MessageSerDe {
     }
   }
 
+  /**
+   * 序列化为UTF-8编码的JSON.
+   */
+  public static byte[] serializeToBytes(Message message) {
+    try {
+      if (message == null) {
+        return null;
+      } else {
+        ByteArrayBuilder builder = new ByteArrayBuilder(256);
+        try (JsonGenerator generator = FACTORY.createGenerator(builder, JsonEncoding.UTF8)) {
+          writeMessage(generator, message);
+        }
+        return builder.toByteArray();
+      }
+    } catch (Exception e) {
+      throw new SerDeException(
+          "Error when serializing Message to byte[]: " + e.getMessage());
+    }
+  }
+
+  /**
+   * 按指定的格式序列化.
+   */
+  public static byte[] serializeToBytes(Message message, MessageFormat format) {
+    if (format != MessageFormat.BINARY) {
+      return serializeToBytes(message);
+    }
+    try {
+      if (message == null) {
+        return null;
+      } else {
+        return writeBinary(message);
+      }
+    } catch (Exception e) {
+      throw new SerDeException(
+          "Error when serializing Message to binary: " + e.getMessage());
+    }
+  }
 
   public static Message deserialize(String topic, String data) {
     try {
-      ObjectMapper mapper = new ObjectMapper();
       if (data == null) {
         return null;
       } else {
-        Map<String, Object> map = mapper.readValue(data, Map.class);
-        //在event中追加__topic表示这个事件是从那个主题读取的
-        Map<String, Object> head = (Map<String, Object>) map.get("header");
-        head.put("__topic", topic);
-        return Message.fromMap(map);
+        try (JsonParser parser = FACTORY.createParser(data)) {
+          return readMessage(parser, topic);
+        }
       }
     } catch (Exception e) {
       throw new SerDeException(
           "Error when deserializing String to Message: " + e.getMessage());
     }
   }
+
+  /**
+   * 从byte[]反序列化，根据第一个字节识别是二进制格式还是UTF-8编码的JSON.
+   */
+  public static Message deserialize(String topic, byte[] data) {
+    try {
+      if (data == null) {
+        return null;
+      } else if (data.length > 0 && data[0] == BINARY_MAGIC) {
+        return readBinary(data, topic);
+      } else {
+        try (JsonParser parser = FACTORY.createParser(data)) {
+          return readMessage(parser, topic);
+        }
+      }
+    } catch (Exception e) {
+      throw new SerDeException(
+          "Error when deserializing byte[] to Message: " + e.getMessage());
+    }
+  }
+
+  static void writeMessage(JsonGenerator generator, Message message) throws IOException {
+    generator.writeStartObject();
+    if (HEADER_FIRST) {
+      writeHeader(generator, message.header());
+      writeData(generator, message.body());
+    } else {
+      writeData(generator, message.body());
+      writeHeader(generator, message.header());
+    }
+    generator.writeEndObject();
+  }
+
+  private static void writeData(JsonGenerator generator, MessageBody body) throws IOException {
+    generator.writeFieldName(DATA);
+    WRITER.writeValue(generator, MessageBodyCodecs.codec(body.name()).encode(body));
+  }
+
+  private static void writeHeader(JsonGenerator generator, MessageHeader header)
+      throws IOException {
+    Map<String, String> ext = header.ext();
+    int size = FIXED_HEADER_FIELDS.length;
+    String[] names = new String[size + ext.size()];
+    Object[] values = new Object[size + ext.size()];
+    System.arraycopy(FIXED_HEADER_FIELDS, 0, names, 0, size);
+    values[0] = header.id();
+    values[1] = header.to();
+    values[2] = header.action();
+    values[3] = header.timestamp();
+    values[4] = header.duration();
+    for (Map.Entry<String, String> entry : ext.entrySet()) {
+      int fixed = fixedIndex(entry.getKey());
+      if (fixed >= 0) {
+        //和原来的putAll一样，覆盖已有的值，位置不变
+        values[fixed] = entry.getValue();
+      } else {
+        names[size] = entry.getKey();
+        values[size] = entry.getValue();
+        size++;
+      }
+    }
+
+    generator.writeFieldName(HEADER);
+    generator.writeStartObject();
+    for (int index : hashOrder(names, size)) {
+      Object value = values[index];
+      if (value instanceof Long) {
+        generator.writeNumberField(names[index], (Long) value);
+      } else if (value == null) {
+        generator.writeNullField(names[index]);
+      } else {
+        generator.writeStringField(names[index], (String) value);
+      }
+    }
+    generator.writeEndObject();
+  }
+
+  private static Message readMessage(JsonParser parser, String topic) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new IllegalArgumentException("message must be an object");
+    }
+    MessageHeader header = null;
+    Map<String, Object> data = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if (HEADER.equals(name) && token == JsonToken.START_OBJECT) {
+        header = readHeader(parser);
+      } else if (DATA.equals(name) && token == JsonToken.START_OBJECT) {
+        data = MAP_READER.readValue(parser);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    if (header == null) {
+      throw new IllegalArgumentException("map must contains header");
+    }
+    if (data == null) {
+      throw new IllegalArgumentException("map must contains data");
+    }
+    //在event中追加__topic表示这个事件是从那个主题读取的
+    if (topic != null) {
+      header.addExt("__topic", topic);
+    }
+    return Message.create(header, MessageBodyCodecs.codec(header.action()).decode(data));
+  }
+
+  private static MessageHeader readHeader(JsonParser parser) throws IOException {
+    String id = null;
+    String to = null;
+    String action = null;
+    String timestamp = null;
+    String duration = null;
+    Map<String, String> ext = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      String value = readText(parser);
+      if ("id".equals(name)) {
+        id = value;
+      } else if ("to".equals(name)) {
+        to = value;
+      } else if ("body".equals(name)) {
+        action = value;
+      } else if ("timestamp".equals(name)) {
+        timestamp = value;
+      } else if ("duration".equals(name)) {
+        duration = value;
+      } else if (value != null) {
+        if (ext == null) {
+          ext = new HashMap<>();
+        }
+        ext.put(name, value);
+      }
+    }
+    if (id == null) {
+      throw new IllegalArgumentException("header must contains id");
+    }
+    if (to == null) {
+      throw new IllegalArgumentException("header must contains to");
+    }
+    if (action == null) {
+      throw new IllegalArgumentException("header must contains body");
+    }
+    if (timestamp == null) {
+      throw new IllegalArgumentException("header must contains timestamp");
+    }
+    MessageHeader header = MessageHeader.create(id, to, action, Long.parseLong(timestamp),
+        duration == null ? -1 : Long.parseLong(duration));
+    if (ext != null) {
+      header.addExts(ext);
+    }
+    return header;
+  }
+
+  /**
+   * 读取当前字段的值，和原来的Message.fromMap一样使用值的toString().
+   */
+  private static String readText(JsonParser parser) throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token == JsonToken.VALUE_STRING) {
+      return parser.getText();
+    }
+    if (token == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    Object value = MAPPER.readValue(parser, Object.class);
+    return value == null ? null : value.toString();
+  }
+
+  private static byte[] writeBinary(Message message) throws IOException {
+    MessageHeader header = message.header();
+    ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(128);
+    DataOutputStream headerOut = new DataOutputStream(headerBytes);
+    BinaryValues.writeString(headerOut, header.id());
+    BinaryValues.writeString(headerOut, header.to());
+    BinaryValues.writeString(headerOut, header.action());
+    BinaryValues.writeSignedVarLong(headerOut, header.timestamp());
+    BinaryValues.writeSignedVarLong(headerOut, header.duration());
+    Map<String, String> ext = header.ext();
+    BinaryValues.writeVarInt(headerOut, ext.size());
+    for (Map.Entry<String, String> entry : ext.entrySet()) {
+      Integer id = INTERNED_EXT_IDS.get(entry.getKey());
+      if (id == null) {
+        BinaryValues.writeVarInt(headerOut, 0);
+        BinaryValues.writeString(headerOut, entry.getKey());
+      } else {
+        BinaryValues.writeVarInt(headerOut, id);
+      }
+      BinaryValues.writeString(headerOut, entry.getValue());
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(headerBytes.size() + 128);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(BINARY_MAGIC);
+    BinaryValues.writeVarInt(out, headerBytes.size());
+    headerBytes.writeTo(out);
+    MessageBodyCodecs.codec(header.action()).encode(message.body(), out);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static Message readBinary(byte[] data, String topic) throws IOException {
+    ByteArrayInputStream bytes = new ByteArrayInputStream(data, 1, data.length - 1);
+    DataInputStream in = new DataInputStream(bytes);
+    int headerLength = BinaryValues.readVarInt(in);
+    int headerEnd = bytes.available() - headerLength;
+    String id = BinaryValues.readString(in);
+    String to = BinaryValues.readString(in);
+    String action = BinaryValues.readString(in);
+    long timestamp = BinaryValues.readSignedVarLong(in);
+    long duration = BinaryValues.readSignedVarLong(in);
+    MessageHeader header = MessageHeader.create(id, to, action, timestamp, duration);
+    int extCount = BinaryValues.readVarInt(in);
+    for (int i = 0; i < extCount; i++) {
+      int nameId = BinaryValues.readVarInt(in);
+      String name;
+      if (nameId == 0) {
+        name = BinaryValues.readString(in);
+      } else if (nameId <= INTERNED_EXT_NAMES.length) {
+        name = INTERNED_EXT_NAMES[nameId - 1];
+      } else {
+        throw new IOException("unknown header field id " + nameId);
+      }
+      String value = BinaryValues.readString(in);
+      if (value != null) {
+        header.addExt(name, value);
+      }
+    }
+    //跳过新版本可能追加的header字段
+    in.skipBytes(bytes.available() - headerEnd);
+    //在event中追加__topic表示这个事件是从那个主题读取的
+    if (topic != null) {
+      header.addExt("__topic", topic);
+    }
+    return Message.create(header, MessageBodyCodecs.codec(action).decode(in));
+  }
+
+  private static Map<String, Integer> internedIds() {
+    ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+    for (int i = 0; i < INTERNED_EXT_NAMES.length; i++) {
+      builder.put(INTERNED_EXT_NAMES[i], i + 1);
+    }
+    return builder.build();
+  }
+
+  private static int fixedIndex(String name) {
+    for (int i = 0; i < FIXED_HEADER_FIELDS.length; i++) {
+      if (FIXED_HEADER_FIELDS[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * 计算HashMap按插入顺序放入前size个key之后的遍历顺序，返回key的下标.
+   * <p>
+   * HashMap按桶的下标遍历，同一个桶内按插入顺序，容量是能容纳size个元素的最小的2的幂（最小16）。
+   */
+  private static int[] hashOrder(String[] names, int size) {
+    int capacity = 16;
+    while (size > capacity * 3 / 4) {
+      capacity <<= 1;
+    }
+    int[] order = new int[size];
+    int[] buckets = new int[size];
+    for (int i = 0; i < size; i++) {
+      int h = names[i].hashCode();
+      int bucket = (h ^ (h >>> 16)) & (capacity - 1);
+      //插入排序，桶相同时保持插入顺序
+      int j = i - 1;
+      while (j >= 0 && buckets[j] > bucket) {
+        buckets[j + 1] = buckets[j];
+        order[j + 1] = order[j];
+        j--;
+      }
+      buckets[j + 1] = bucket;
+      order[j + 1] = i;
+    }
+    return order;
+  }
 }
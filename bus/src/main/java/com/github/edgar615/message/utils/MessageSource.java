@@ -0,0 +1,36 @@
+package com.github.edgar615.message.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.github.edgar615.message.core.Message;
+import java.io.IOException;
+
+/**
+ * 日志中的source字段，只有appender真正输出日志时才把消息写成JSON，被丢弃的日志不再调用Message.toMap().
+ */
+class MessageSource implements JsonSerializable {
+
+  private final Message message;
+
+  MessageSource(Message message) {
+    this.message = message;
+  }
+
+  @Override
+  public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+    MessageSerDe.writeMessage(gen, message);
+  }
+
+  @Override
+  public void serializeWithType(JsonGenerator gen, SerializerProvider serializers,
+      TypeSerializer typeSer) throws IOException {
+    serialize(gen, serializers);
+  }
+
+  @Override
+  public String toString() {
+    return String.valueOf(message.toMap());
+  }
+}
@@ -0,0 +1,282 @@
+package com.github.edgar615.message.utils;
+
+import com.github.edgar615.message.core.Message;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于数组环形缓冲区的无锁多生产者多消费者队列.
+ * <p>
+ * 每个槽位有一个序号，生产者和消费者通过CAS推进各自的位置，入队出队都不加锁也不分配节点。
+ * 出队时先自旋spinTries次，仍然没有消息再park，入队后unpark一个等待的消费者。
+ * <p>
+ * isFull和isLowWaterMark与{@link DefaultMessageQueue}相同，都以limit为准，AbstractMessageReadStream的暂停/恢复逻辑不需要修改。
+ * 环形缓冲区的容量是limit*2向上取2的幂，为一次拉取超过limit的部分留出空间；如果缓冲区真的满了，入队线程会等待直到有空位，
+ * 所以不要在同一个线程上既入队又出队。
+ * <p>
+ * 每个槽位同时记录入队的时间，出队时把等待时间交给{@link MessageMetrics#waited(long)}.
+ *
+ * @author Edgar
+ */
+public class RingBufferMessageQueue implements MessageQueue {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MessageQueue.class);
+
+  private static final int DEFAULT_SPIN_TRIES = 100;
+
+  /**
+   * 缓冲区满时入队线程每次等待的时间
+   */
+  private static final long PRODUCER_PARK_NANOS = 50_000L;
+
+  private final int limit;
+
+  private final int mask;
+
+  private final int spinTries;
+
+  private final AtomicReferenceArray<Message> buffer;
+
+  private final AtomicLongArray sequences;
+
+  /**
+   * 槽位中的消息入队的时间，在序号的volatile写之前写入，读序号之后读取
+   */
+  private final long[] enqueueNanos;
+
+  private final AtomicLong enqueuePos = new AtomicLong();
+
+  private final AtomicLong dequeuePos = new AtomicLong();
+
+  /**
+   * park的消费者
+   */
+  private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger waiterCount = new AtomicInteger();
+
+  private final List<MessageQueueListener> listeners = new CopyOnWriteArrayList<>();
+
+  public static RingBufferMessageQueue create(int limit) {
+    return new RingBufferMessageQueue(limit, DEFAULT_SPIN_TRIES);
+  }
+
+  /**
+   * @param limit 队列的上限，用于isFull和isLowWaterMark
+   * @param spinTries 出队线程park之前的自旋次数，0表示直接park
+   */
+  public static RingBufferMessageQueue create(int limit, int spinTries) {
+    return new RingBufferMessageQueue(limit, spinTries);
+  }
+
+  private RingBufferMessageQueue(int limit, int spinTries) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("limit must be greater than 0");
+    }
+    if (limit > (1 << 29)) {
+      throw new IllegalArgumentException("limit too large");
+    }
+    this.limit = limit;
+    this.spinTries = Math.max(0, spinTries);
+    int capacity = Integer.highestOneBit(Math.max(2, limit * 2) - 1) << 1;
+    this.mask = capacity - 1;
+    this.buffer = new AtomicReferenceArray<>(capacity);
+    this.sequences = new AtomicLongArray(capacity);
+    this.enqueueNanos = new long[capacity];
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  @Override
+  public Message dequeue() throws InterruptedException {
+    Message message = takeWithoutBlocking();
+    if (message == null) {
+      message = awaitMessage();
+    }
+    if (waiterCount.get() > 0 && size() > 0) {
+      //可能有别的消费者被唤醒后抢到了本该属于它的消息，把唤醒传递下去
+      signal();
+    }
+    traceDequeue(message);
+    return message;
+  }
+
+  @Override
+  public Message poll() {
+    Message message = takeWithoutBlocking();
+    if (message != null) {
+      traceDequeue(message);
+    }
+    return message;
+  }
+
+  @Override
+  public void enqueue(Message message) {
+    put(message);
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug(LoggingMarker.getIdLoggingMarker(message.header().id()), "enqueue");
+    }
+    notifyEnqueue(1);
+  }
+
+  @Override
+  public void enqueue(List<Message> messages) {
+    for (Message message : messages) {
+      put(message);
+      if (LOGGER.isDebugEnabled()) {
+        LOGGER.debug(LoggingMarker.getIdLoggingMarker(message.header().id()), "enqueue");
+      }
+    }
+    notifyEnqueue(messages.size());
+  }
+
+  @Override
+  public void complete(Message message) {
+    for (MessageQueueListener listener : listeners) {
+      listener.onComplete(message);
+    }
+  }
+
+  @Override
+  public void addListener(MessageQueueListener listener) {
+    listeners.add(listener);
+  }
+
+  private void notifyEnqueue(int count) {
+    for (MessageQueueListener listener : listeners) {
+      listener.onEnqueue(count);
+    }
+  }
+
+  @Override
+  public int size() {
+    //先读出队位置，保证结果不会是负数
+    long head = dequeuePos.get();
+    long tail = enqueuePos.get();
+    long size = tail - head;
+    if (size < 0) {
+      return 0;
+    }
+    return (int) Math.min(size, mask + 1);
+  }
+
+  @Override
+  public boolean isFull() {
+    return size() >= limit;
+  }
+
+  @Override
+  public boolean isLowWaterMark() {
+    return size() <= limit / 2;
+  }
+
+  private void put(Message message) {
+    while (!offer(message)) {
+      //缓冲区已满，等待消费者腾出空位
+      LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+    }
+    if (waiterCount.get() > 0) {
+      signal();
+    }
+  }
+
+  private boolean offer(Message message) {
+    long pos = enqueuePos.get();
+    for (; ; ) {
+      int index = (int) pos & mask;
+      long dif = sequences.get(index) - pos;
+      if (dif == 0) {
+        if (enqueuePos.compareAndSet(pos, pos + 1)) {
+          buffer.set(index, message);
+          enqueueNanos[index] = System.nanoTime();
+          //使用volatile写，和消费者登记等待之后的再次检查配对，避免丢失唤醒
+          sequences.set(index, pos + 1);
+          return true;
+        }
+        pos = enqueuePos.get();
+      } else if (dif < 0) {
+        return false;
+      } else {
+        pos = enqueuePos.get();
+      }
+    }
+  }
+
+  private Message takeWithoutBlocking() {
+    long pos = dequeuePos.get();
+    for (; ; ) {
+      int index = (int) pos & mask;
+      long dif = sequences.get(index) - (pos + 1);
+      if (dif == 0) {
+        if (dequeuePos.compareAndSet(pos, pos + 1)) {
+          Message message = buffer.get(index);
+          long enqueued = enqueueNanos[index];
+          buffer.lazySet(index, null);
+          sequences.lazySet(index, pos + mask + 1);
+          MessageMetricsHolder.get().waited(System.nanoTime() - enqueued);
+          return message;
+        }
+        pos = dequeuePos.get();
+      } else if (dif < 0) {
+        return null;
+      } else {
+        pos = dequeuePos.get();
+      }
+    }
+  }
+
+  private Message awaitMessage() throws InterruptedException {
+    for (int i = 0; i < spinTries; i++) {
+      Message message = takeWithoutBlocking();
+      if (message != null) {
+        return message;
+      }
+    }
+    Thread current = Thread.currentThread();
+    for (; ; ) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      waiters.add(current);
+      waiterCount.incrementAndGet();
+      try {
+        //登记之后再检查一次，避免入队线程在登记之前已经检查过等待者
+        Message message = takeWithoutBlocking();
+        if (message != null) {
+          return message;
+        }
+        LockSupport.park(this);
+      } finally {
+        waiterCount.decrementAndGet();
+        waiters.remove(current);
+      }
+      Message message = takeWithoutBlocking();
+      if (message != null) {
+        return message;
+      }
+    }
+  }
+
+  private void signal() {
+    Thread waiter = waiters.poll();
+    if (waiter != null) {
+      LockSupport.unpark(waiter);
+    }
+  }
+
+  private void traceDequeue(Message message) {
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug(LoggingMarker.getIdLoggingMarker(message.header().id()), "dequeue");
+    }
+  }
+}
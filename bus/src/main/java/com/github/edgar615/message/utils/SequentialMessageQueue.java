@@ -1,35 +1,48 @@
 package com.github.edgar615.message.utils;
 
 import com.github.edgar615.message.core.Message;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * 事件的队列，队列的长度有consumer控制，入队不阻塞，出队阻塞
+ * <p>
+ * 同一个标识的消息按入队顺序串行执行：每个标识有一个自己的FIFO队列，没有消息在执行的标识放入就绪队列，
+ * 出队从就绪队列取一个标识，complete之后如果这个标识还有消息就重新放入就绪队列，入队、出队、complete都是常数时间。
  */
 public class SequentialMessageQueue implements MessageQueue {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(MessageQueue.class);
 
   /**
-   * 任务列表
+   * 每个标识待执行的消息
    */
-  private final LinkedList<Message> elements = new LinkedList<>();
+  private final Map<String, ArrayDeque<Message>> pending = new HashMap<>();
+
+  /**
+   * 有待执行的消息并且当前没有消息在执行的标识
+   */
+  private final ArrayDeque<String> ready = new ArrayDeque<>();
 
   /**
    * 消息注册表，用于确保同一个设备只有一个事件在执行
    */
-  private final Set<String> registry = new ConcurrentSkipListSet<>();
+  private final Set<String> registry = new HashSet<>();
 
   private final int limit;
 
-  private Message takeElement;
+  private final List<MessageQueueListener> listeners = new CopyOnWriteArrayList<>();
+
+  private int size;
 
   private Function<Message, String> identificationExtractor;
 
@@ -46,17 +59,17 @@ public class SequentialMessageQueue implements MessageQueue {
 
   @Override
   public synchronized boolean isFull() {
-    return elements.size() >= limit;
+    return size >= limit;
   }
 
   @Override
   public synchronized boolean isLowWaterMark() {
-    return elements.size() <= limit / 2;
+    return size <= limit / 2;
   }
 
   @Override
   public synchronized Message poll() {
-    if (elements.isEmpty() || takeElement == null) {
+    if (ready.isEmpty()) {
       return null;
     }
     return taskNextElement();
@@ -65,8 +78,8 @@ public class SequentialMessageQueue implements MessageQueue {
 
   @Override
   public synchronized Message dequeue() throws InterruptedException {
-    //如果队列为空，或者下一个出队元素为null，阻塞出队
-    while (elements.isEmpty() || takeElement == null) {
+    //如果没有可以出队的标识，阻塞出队
+    while (ready.isEmpty()) {
       wait();
     }
     //从队列中删除元素
@@ -74,63 +87,87 @@ public class SequentialMessageQueue implements MessageQueue {
   }
 
   @Override
-  public synchronized void enqueue(Message message) {
-    //唤醒等待出队的线程，如果队空或者下一个出队元素为null，说明可能会有出队线程在等待唤醒
-    if (elements.isEmpty() || takeElement == null) {
-      //唤醒出队
-      notifyAll();
-    }
-    elements.add(message);
-    //计算下一个可以出队的元素
-    if (!registry.contains(extractId(message))
-        && takeElement == null) {
-      takeElement = message;
+  public void enqueue(Message message) {
+    synchronized (this) {
+      add(message);
     }
     LOGGER.debug(LoggingMarker.getIdLoggingMarker(message.header().id()), "enqueue");
+    notifyEnqueue(1);
   }
 
   @Override
-  public synchronized void enqueue(List<Message> messages) {
-    //唤醒等待出队的线程，如果队空或者下一个出队元素为null，说明可能会有出队线程在等待唤醒
-    if (elements.isEmpty() || takeElement == null) {
-      //唤醒出队
-      notifyAll();
-    }
-    elements.addAll(messages);
-    //计算下一个可以出队的元素
-    for (Message message : messages) {
-      if (!registry.contains(extractId(message))
-          && takeElement == null) {
-        takeElement = message;
-        break;
+  public void enqueue(List<Message> messages) {
+    synchronized (this) {
+      for (Message message : messages) {
+        add(message);
       }
     }
     if (LOGGER.isDebugEnabled()) {
       messages.forEach(e -> LOGGER.debug(LoggingMarker.getIdLoggingMarker(e.header().id()), "enqueue"));
     }
+    notifyEnqueue(messages.size());
   }
 
   @Override
-  public synchronized void complete(Message message) {
-    if (takeElement == null) {
-      notifyAll();
+  public void complete(Message message) {
+    synchronized (this) {
+      String id = extractId(message);
+      if (registry.remove(id) && pending.containsKey(id)) {
+        markReady(id);
+      }
+    }
+    for (MessageQueueListener listener : listeners) {
+      listener.onComplete(message);
+    }
+  }
+
+  @Override
+  public void addListener(MessageQueueListener listener) {
+    listeners.add(listener);
+  }
+
+  private void notifyEnqueue(int count) {
+    for (MessageQueueListener listener : listeners) {
+      listener.onEnqueue(count);
     }
-    registry.remove(extractId(message));
-    takeElement = next();
   }
 
   @Override
   public synchronized int size() {
-    return elements.size();
+    return size;
+  }
+
+  private void add(Message message) {
+    String id = extractId(message);
+    ArrayDeque<Message> messages = pending.get(id);
+    if (messages == null) {
+      messages = new ArrayDeque<>();
+      pending.put(id, messages);
+      //没有待执行的消息，也没有消息在执行，可以直接出队
+      if (!registry.contains(id)) {
+        markReady(id);
+      }
+    }
+    messages.add(message);
+    size++;
+  }
+
+  private void markReady(String id) {
+    ready.add(id);
+    //每个就绪的标识只能被一个线程取走，唤醒一个等待出队的线程即可
+    notify();
   }
 
   private Message taskNextElement() {//从队列中删除元素
-    Message x = takeElement;
-    elements.remove(x);
+    String id = ready.poll();
+    ArrayDeque<Message> messages = pending.get(id);
+    Message x = messages.poll();
+    if (messages.isEmpty()) {
+      pending.remove(id);
+    }
+    size--;
     //将元素加入注册表
-    registry.add(extractId(x));
-    //重新计算下一个可以出队的元素
-    takeElement = next();
+    registry.add(id);
     LOGGER.debug(LoggingMarker.getIdLoggingMarker(x.header().id()), "dequeue");
     return x;
   }
@@ -140,15 +177,4 @@ public class SequentialMessageQueue implements MessageQueue {
     return id == null ? "unkown" : id;
   }
 
-  private Message next() {
-    Message next = null;
-    for (Message message : elements) {
-      if (!registry.contains(extractId(message))) {
-        next = message;
-        break;
-      }
-    }
-    return next;
-  }
-
 }
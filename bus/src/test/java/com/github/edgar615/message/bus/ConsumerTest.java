@@ -1,13 +1,21 @@
 package com.github.edgar615.message.bus;
 
 import com.github.edgar615.message.core.Event;
+import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.ConsumeMessageState;
 import com.github.edgar615.message.repository.MessageConsumerRepository;
+import com.github.edgar615.message.repository.PartialInsertException;
 import com.github.edgar615.message.utils.DefaultMessageQueue;
 import com.github.edgar615.message.utils.MessageQueue;
+import com.github.edgar615.message.utils.RingBufferMessageQueue;
 import com.github.edgar615.message.utils.SequentialMessageQueue;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.awaitility.Awaitility;
@@ -47,6 +55,76 @@ public class ConsumerTest {
     readStream.close();
   }
 
+  @Test
+  public void testRingBufferQueue() {
+    ConsumerOptions options = new ConsumerOptions().setWorkerPoolSize(10);
+    MessageQueue messageQueue = RingBufferMessageQueue.create(1000);
+    MessageConsumerRepository messageConsumerRepository = new MockConsumerRepository();
+    AtomicInteger count = new AtomicInteger();
+    MessageConsumer messageConsumer = MessageConsumer.create(options, messageQueue,
+        messageConsumerRepository);
+    messageConsumer.consumer(null, null, e -> {
+      count.incrementAndGet();
+    });
+    ((MessageConsumerImpl) messageConsumer).start();
+    MessageReadStream readStream = new BlockReadStream(messageQueue, messageConsumerRepository);
+    ((BlockReadStream) readStream).pollAndEnqueue();
+
+    Awaitility.await().until(() -> count.get() == 100);
+    messageConsumer.close();
+    readStream.close();
+  }
+
+  @Test
+  public void testInsertAll() {
+    MessageQueue messageQueue = DefaultMessageQueue.create(1000);
+    AtomicInteger batchCount = new AtomicInteger();
+    MockConsumerRepository repository = new MockConsumerRepository() {
+      @Override
+      public Set<String> insertAll(List<Message> messages) {
+        batchCount.incrementAndGet();
+        Set<String> inserted = new HashSet<>();
+        //只有偶数个消息不是重复消息
+        for (int i = 0; i < messages.size(); i += 2) {
+          inserted.add(messages.get(i).header().id());
+        }
+        return inserted;
+      }
+    };
+    BlockReadStream readStream = new BlockReadStream(messageQueue, repository);
+    readStream.pollAndEnqueue();
+    Assert.assertEquals(1, batchCount.get());
+    Assert.assertEquals(50, messageQueue.size());
+    readStream.close();
+  }
+
+  @Test
+  public void testPartialInsert() {
+    MessageQueue messageQueue = DefaultMessageQueue.create(1000);
+    AtomicInteger insertCount = new AtomicInteger();
+    MockConsumerRepository repository = new MockConsumerRepository() {
+      @Override
+      public boolean insert(Message message) {
+        //第41条消息入库失败
+        if (insertCount.incrementAndGet() == 41) {
+          throw new RuntimeException("insert failed");
+        }
+        return super.insert(message);
+      }
+    };
+    BlockReadStream readStream = new BlockReadStream(messageQueue, repository);
+    try {
+      readStream.pollAndEnqueue();
+      Assert.fail();
+    } catch (PartialInsertException e) {
+      Assert.assertEquals(40, e.inserted().size());
+    }
+    //已经入库的消息再次拉取时是重复消息，必须已经放入队列
+    Assert.assertEquals(40, repository.events().size());
+    Assert.assertEquals(40, messageQueue.size());
+    readStream.close();
+  }
+
   @Test
   public void testWriteDb() {
     ConsumerOptions options = new ConsumerOptions().setWorkerPoolSize(10);
@@ -132,6 +210,38 @@ public class ConsumerTest {
     readStream.close();
   }
 
+  @Test
+  public void testStriped() {
+    ConsumerOptions options = new ConsumerOptions().setLaneCount(4)
+        .setLaneKeyExtractor(e -> ((Event) e.body()).content().get("deviceId").toString());
+    StripedMessageQueue eventQueue = StripedMessageQueue.create(options, 1000);
+    MessageConsumerRepository messageConsumerRepository = new MockConsumerRepository();
+    AtomicInteger count = new AtomicInteger();
+    Map<Integer, List<Integer>> handled = new ConcurrentHashMap<>();
+    MessageConsumer messageConsumer = MessageConsumer.create(options, eventQueue,
+        messageConsumerRepository);
+    messageConsumer.consumer(null, null, e -> {
+      Event event = (Event) e.body();
+      Integer deviceId = (Integer) event.content().get("deviceId");
+      handled.computeIfAbsent(deviceId, k -> Collections.synchronizedList(new ArrayList<>()))
+          .add(Integer.parseInt(e.body().resource()));
+      count.incrementAndGet();
+    });
+    messageConsumer.start();
+    MessageReadStream readStream = new BlockReadStream(eventQueue, messageConsumerRepository);
+    ((BlockReadStream) readStream).pollAndEnqueue();
+
+    Awaitility.await().until(() -> count.get() == 100);
+    for (List<Integer> list : handled.values()) {
+      for (int i = 0; i < list.size() - 1; i++) {
+        Assert.assertTrue(list.get(i) < list.get(i + 1));
+      }
+    }
+    Assert.assertEquals(0, messageConsumer.waitForHandle());
+    messageConsumer.close();
+    readStream.close();
+  }
+
   @Test
   public void testPauseAndResume() {
     ConsumerOptions options = new ConsumerOptions().setWorkerPoolSize(10);
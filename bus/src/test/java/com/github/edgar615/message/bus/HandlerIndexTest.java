@@ -0,0 +1,52 @@
+package com.github.edgar615.message.bus;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HandlerIndexTest {
+
+  @Test
+  public void testMatch() {
+    HandlerIndex<String> index = HandlerIndex.create();
+    index.register("t1", "r1", "exact");
+    index.register("t1", null, "topic");
+    index.register(null, "r1", "resource");
+    index.register(null, null, "all");
+
+    Assert.assertEquals(Arrays.asList("exact", "topic", "resource", "all"), index.find("t1", "r1"));
+    Assert.assertEquals(Arrays.asList("topic", "all"), index.find("t1", "r2"));
+    Assert.assertEquals(Arrays.asList("resource", "all"), index.find("t2", "r1"));
+    Assert.assertEquals(Collections.singletonList("all"), index.find("t2", "r2"));
+    Assert.assertEquals(Arrays.asList("topic", "all"), index.find("t1", null));
+    Assert.assertEquals(Collections.singletonList("all"), index.find(null, null));
+  }
+
+  @Test
+  public void testCacheInvalidate() {
+    HandlerIndex<String> index = HandlerIndex.create();
+    index.register("t1", "r1", "h1");
+    List<String> first = index.find("t1", "r1");
+    Assert.assertSame(first, index.find("t1", "r1"));
+
+    index.register("t1", null, "h2");
+    Assert.assertEquals(Arrays.asList("h1", "h2"), index.find("t1", "r1"));
+
+    index.unregister("t1", "r1", "h1");
+    Assert.assertEquals(Collections.singletonList("h2"), index.find("t1", "r1"));
+
+    index.unregisterAll("t1", null);
+    Assert.assertTrue(index.find("t1", "r1").isEmpty());
+  }
+
+  @Test
+  public void testMaxCached() {
+    HandlerIndex<String> index = HandlerIndex.create(1);
+    index.register(null, null, "h1");
+    Assert.assertSame(index.find("t1", "r1"), index.find("t1", "r1"));
+    Assert.assertEquals(Collections.singletonList("h1"), index.find("t2", "r2"));
+    Assert.assertNotSame(index.find("t2", "r2"), index.find("t2", "r2"));
+  }
+}
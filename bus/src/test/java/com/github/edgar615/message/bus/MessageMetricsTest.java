@@ -0,0 +1,158 @@
+package com.github.edgar615.message.bus;
+
+import com.github.edgar615.message.core.Event;
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.utils.MessageMetrics;
+import com.github.edgar615.message.utils.MessageMetricsHolder;
+import com.github.edgar615.message.utils.MessageQueue;
+import com.github.edgar615.message.utils.RingBufferMessageQueue;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageMetricsTest {
+
+  @After
+  public void clear() {
+    MessageMetricsHolder.clear();
+  }
+
+  @Test
+  public void testQueueWait() throws InterruptedException {
+    AtomicInteger waited = new AtomicInteger();
+    AtomicLong maxWait = new AtomicLong();
+    MessageMetricsHolder.set(new MessageMetrics() {
+      @Override
+      public void waited(long nanos) {
+        waited.incrementAndGet();
+        maxWait.accumulateAndGet(nanos, Math::max);
+      }
+    });
+    MessageQueue queue = RingBufferMessageQueue.create(4);
+    queue.enqueue(messages(2));
+    Thread.sleep(10);
+    queue.dequeue();
+    queue.poll();
+    Assert.assertNull(queue.poll());
+    Assert.assertEquals(2, waited.get());
+    Assert.assertTrue(maxWait.get() >= 10_000_000L);
+  }
+
+  @Test
+  public void testSent() {
+    AtomicInteger succeeded = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    List<String> streams = new ArrayList<>();
+    MessageMetricsHolder.set(new MessageMetrics() {
+      @Override
+      public void sent(String stream, long nanos, boolean success) {
+        synchronized (streams) {
+          streams.add(stream);
+        }
+        if (success) {
+          succeeded.incrementAndGet();
+        } else {
+          failed.incrementAndGet();
+        }
+      }
+    });
+    MessageProducer producer = MessageProducer.create(new ProducerOptions(),
+        new RoundRobinWriteStream());
+    producer.start();
+    producer.sendAll(messages(4)).join();
+    Assert.assertEquals(2, succeeded.get());
+    Assert.assertEquals(2, failed.get());
+    Assert.assertEquals("RoundRobinWriteStream", streams.get(0));
+    producer.close();
+  }
+
+  @Test
+  public void testBacklog() {
+    List<Integer> backlogs = new CopyOnWriteArrayList<>();
+    MessageMetricsHolder.set(new MessageMetrics() {
+      @Override
+      public void backlog(int count) {
+        backlogs.add(count);
+      }
+    });
+    MockProducerRepository producerDao = new MockProducerRepository() {
+      @Override
+      public int countWaitingForSend() {
+        return (int) getMessages().stream().filter(e -> e.header().ext("state") == null).count();
+      }
+    };
+    for (Message message : messages(100)) {
+      producerDao.insert(message);
+    }
+    //发送一直没有结果，积压的消息数量不变
+    MessageWriteStream writeStream = new MessageWriteStream() {
+      @Override
+      public CompletableFuture<Message> send(Message message) {
+        return new CompletableFuture<>();
+      }
+
+      @Override
+      public void start() {
+
+      }
+
+      @Override
+      public void close() {
+
+      }
+    };
+    MessageProducerScheduler scheduler = MessageProducerScheduler.create(producerDao, writeStream,
+        new ProducerOptions().setFetchPeriod(10).setFetchSize(10));
+    scheduler.start();
+    Awaitility.await().until(() -> !backlogs.isEmpty());
+    scheduler.close();
+    //记录的是存储中的积压数量，不是一页的数量
+    Assert.assertEquals(100, backlogs.get(0).intValue());
+  }
+
+  @Test
+  public void testBacklogUnknown() {
+    List<Integer> backlogs = new CopyOnWriteArrayList<>();
+    MessageMetricsHolder.set(new MessageMetrics() {
+      @Override
+      public void backlog(int count) {
+        backlogs.add(count);
+      }
+    });
+    MockProducerRepository producerDao = new MockProducerRepository();
+    producerDao.insert(messages(1).get(0));
+    MessageProducerScheduler scheduler = MessageProducerScheduler.create(producerDao,
+        new RoundRobinWriteStream(), new ProducerOptions().setFetchPeriod(10));
+    scheduler.start();
+    Awaitility.await().until(() -> producerDao.getPendCount() > 2);
+    scheduler.close();
+    //存储不支持统计时不记录
+    Assert.assertTrue(backlogs.isEmpty());
+  }
+
+  @Test
+  public void testNoop() {
+    Assert.assertSame(MessageMetrics.NOOP, MessageMetricsHolder.get());
+    MessageMetricsHolder.set(new MessageMetrics() {
+    });
+    Assert.assertNotSame(MessageMetrics.NOOP, MessageMetricsHolder.get());
+    MessageMetricsHolder.clear();
+    Assert.assertSame(MessageMetrics.NOOP, MessageMetricsHolder.get());
+  }
+
+  private List<Message> messages(int count) {
+    List<Message> messages = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      messages.add(Message.create("test", Event.create("test", ImmutableMap.of("foo", i))));
+    }
+    return messages;
+  }
+}
@@ -0,0 +1,54 @@
+package com.github.edgar615.message.bus;
+
+import com.github.edgar615.message.repository.ConsumeMessageState;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.awaitility.Awaitility;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageStateRecorderTest {
+
+  @Test
+  public void testSync() {
+    List<Map<String, ConsumeMessageState>> batches = new CopyOnWriteArrayList<>();
+    MessageStateRecorder<ConsumeMessageState> recorder = MessageStateRecorder
+        .create("test-recorder", 1, 100, batches::add);
+    recorder.record("1", ConsumeMessageState.SUCCEED);
+    recorder.record("2", ConsumeMessageState.FAILED);
+    Assert.assertEquals(2, batches.size());
+    Assert.assertEquals(ConsumeMessageState.FAILED, batches.get(1).get("2"));
+    recorder.close();
+  }
+
+  @Test
+  public void testBatchSize() {
+    List<Map<String, ConsumeMessageState>> batches = new CopyOnWriteArrayList<>();
+    MessageStateRecorder<ConsumeMessageState> recorder = MessageStateRecorder
+        .create("test-recorder", 10, 60000, batches::add);
+    for (int i = 0; i < 25; i++) {
+      recorder.record("" + i, ConsumeMessageState.SUCCEED);
+    }
+    Awaitility.await().until(() -> batches.size() == 2);
+    Assert.assertEquals(10, batches.get(0).size());
+    Assert.assertEquals(10, batches.get(1).size());
+    //关闭时写入剩余的状态
+    recorder.close();
+    Assert.assertEquals(3, batches.size());
+    Assert.assertEquals(5, batches.get(2).size());
+  }
+
+  @Test
+  public void testFlushInterval() {
+    List<Map<String, ConsumeMessageState>> batches = new CopyOnWriteArrayList<>();
+    MessageStateRecorder<ConsumeMessageState> recorder = MessageStateRecorder
+        .create("test-recorder", 100, 50, batches::add);
+    recorder.record("1", ConsumeMessageState.SUCCEED);
+    recorder.record("1", ConsumeMessageState.FAILED);
+    Awaitility.await().until(() -> batches.size() == 1);
+    Assert.assertEquals(1, batches.get(0).size());
+    Assert.assertEquals(ConsumeMessageState.FAILED, batches.get(0).get("1"));
+    recorder.close();
+  }
+}
@@ -5,11 +5,11 @@ import com.github.edgar615.message.core.Message;
 import com.github.edgar615.message.repository.ConsumeMessageState;
 import com.github.edgar615.message.repository.MessageConsumerRepository;
 import com.google.common.collect.ImmutableMap;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 public class MockConsumerRepository implements MessageConsumerRepository {
 
@@ -26,18 +26,20 @@ public class MockConsumerRepository implements MessageConsumerRepository {
 
   @Override
   public List<Message> waitingForConsume(int fetchCount) {
-    int min = seq.get();
-    int max = min + fetchCount;
-    List<Message> messages = new ArrayList<>();
-    for (int i = min; i < 100; i++) {
-      Event event = Event
-          .create("" + i, ImmutableMap.of("foo", "bar", "deviceId", new Random().nextInt(10)));
-      Message message = Message.create("DeviceControlEvent", event, 1);
-      messages.add(message);
-      this.messages.add(message);
+    //第一次拉取时生成100条未处理的消息
+    if (seq.compareAndSet(0, 100)) {
+      for (int i = 0; i < 100; i++) {
+        Event event = Event
+            .create("" + i, ImmutableMap.of("foo", "bar", "deviceId", new Random().nextInt(10)));
+        Message message = Message.create("DeviceControlEvent", event, 1);
+        message.header().addExt("state", String.valueOf(ConsumeMessageState.PENDING.value()));
+        this.messages.add(message);
+      }
     }
-
-    return messages;
+    return messages.stream()
+        .filter(e -> String.valueOf(ConsumeMessageState.PENDING.value()).equals(e.header().ext("state")))
+        .limit(fetchCount)
+        .collect(Collectors.toList());
   }
 
   @Override
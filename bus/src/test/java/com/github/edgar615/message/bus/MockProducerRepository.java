@@ -6,6 +6,7 @@ import com.github.edgar615.message.repository.SendMessageState;
 import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -16,7 +17,7 @@ import java.util.stream.Collectors;
  */
 public class MockProducerRepository implements MessageProducerRepository {
 
-  private final List<Message> messages = new ArrayList<>();
+  private final List<Message> messages = new CopyOnWriteArrayList<>();
 
   private AtomicInteger pendCount = new AtomicInteger();
 
@@ -39,18 +40,14 @@ public class MockProducerRepository implements MessageProducerRepository {
   }
 
   @Override
-  public List<Message> waitingForSend() {
+  public List<Message> waitingForSend(int fetchCount) {
     pendCount.incrementAndGet();
     List<Message> plist = messages.stream().filter(e -> !e.header().ext().containsKey("state"))
+        .limit(fetchCount)
         .collect(Collectors.toList());
     return new ArrayList<>(plist);
   }
 
-  @Override
-  public List<Message> waitingForSend(int fetchCount) {
-    return null;
-  }
-
   @Override
   public void mark(String eventId, SendMessageState state) {
     messages.stream().filter(e -> e.header().id().equalsIgnoreCase(eventId))
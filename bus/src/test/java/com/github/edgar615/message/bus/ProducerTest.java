@@ -3,9 +3,14 @@ package com.github.edgar615.message.bus;
 import com.github.edgar615.message.core.Event;
 import com.github.edgar615.message.core.Message;
 import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.awaitility.Awaitility;
@@ -37,6 +42,28 @@ public class ProducerTest {
     producer.close();
   }
 
+  @Test
+  public void testSendAll() {
+    RoundRobinWriteStream writeStream = new RoundRobinWriteStream();
+    MessageProducer producer = MessageProducer.create(new ProducerOptions(), writeStream);
+    producer.start();
+    List<Message> messages = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      Event event = Event.create("" + i, ImmutableMap.of("foo", "bar"));
+      messages.add(Message.create("test", event));
+    }
+    SendResult result = producer.sendAll(messages).join();
+    Assert.assertEquals(10, result.messages().size());
+    Assert.assertFalse(result.allSucceeded());
+    Assert.assertEquals(5, result.succeeded().size());
+    Assert.assertEquals(5, result.failed().size());
+    Assert.assertTrue(result.succeeded(0));
+    Assert.assertNotNull(result.cause(1));
+    Assert.assertSame(messages.get(1), result.failed().get(0));
+
+    Assert.assertTrue(producer.sendAll(new ArrayList<>()).join().allSucceeded());
+    producer.close();
+  }
 
   @Test
   public void testStorage() {
@@ -126,6 +153,146 @@ public class ProducerTest {
     messageProducerScheduler.close();
   }
 
+  @Test
+  public void testPipelinedRelay() {
+    MockProducerRepository producerDao = new MockProducerRepository();
+    for (int i = 0; i < 250; i++) {
+      Event event = Event.create("" + i, ImmutableMap.of("foo", "bar"));
+      producerDao.insert(Message.create("test", event));
+    }
+    Map<String, AtomicInteger> sendCount = new ConcurrentHashMap<>();
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    MessageWriteStream writeStream = new MessageWriteStream() {
+      @Override
+      public CompletableFuture<Message> send(Message message) {
+        sendCount.computeIfAbsent(message.header().id(), k -> new AtomicInteger()).incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        executor.schedule(() -> {
+          inFlight.decrementAndGet();
+          future.complete(message);
+        }, 5, TimeUnit.MILLISECONDS);
+        return future;
+      }
+
+      @Override
+      public void start() {
+
+      }
+
+      @Override
+      public void close() {
+
+      }
+    };
+    ProducerOptions options = new ProducerOptions().setFetchPeriod(100).setFetchSize(20)
+        .setMaxInFlight(50).setMarkBatchSize(30).setMarkFlushIntervalMs(20);
+    MessageProducerScheduler scheduler = MessageProducerScheduler
+        .create(producerDao, writeStream, options);
+    scheduler.start();
+    Awaitility.await().until(() -> producerDao.getMessages().stream()
+        .filter(e -> "2".equals(e.header().ext("state")))
+        .count() == 250);
+    scheduler.close();
+    executor.shutdown();
+    Assert.assertEquals(250, sendCount.size());
+    Assert.assertTrue(sendCount.values().stream().allMatch(c -> c.get() == 1));
+    Assert.assertTrue(maxInFlight.get() <= 50);
+  }
+
+  @Test
+  public void testWakeUp() {
+    MockProducerRepository producerDao = new MockProducerRepository();
+    RoundRobinWriteStream writeStream = new RoundRobinWriteStream();
+    ProducerOptions options = new ProducerOptions().setFetchPeriod(60000);
+    MessageProducerScheduler scheduler = MessageProducerScheduler
+        .create(producerDao, writeStream, options);
+    scheduler.start();
+    MessageProducer producer = MessageProducer
+        .create(options, writeStream, producerDao, scheduler);
+    producer.start();
+    Event event = Event.create("1", ImmutableMap.of("foo", "bar"));
+    producer.save(Message.create("test", event));
+    //不需要等待60秒的定时拉取
+    Awaitility.await().atMost(5, TimeUnit.SECONDS)
+        .until(() -> "2".equals(producerDao.getMessages().get(0).header().ext("state")));
+    producer.close();
+    scheduler.close();
+  }
+
+  @Test
+  public void testHandOff() {
+    MockProducerRepository producerDao = new MockProducerRepository();
+    RoundRobinWriteStream writeStream = new RoundRobinWriteStream();
+    ProducerOptions options = new ProducerOptions().setFetchPeriod(60000)
+        .setHandOffBufferSize(100);
+    MessageProducerScheduler scheduler = MessageProducerScheduler
+        .create(producerDao, writeStream, options);
+    scheduler.start();
+    MessageProducer producer = MessageProducer
+        .create(options, writeStream, producerDao, scheduler);
+    producer.start();
+    for (int i = 0; i < 50; i++) {
+      Event event = Event.create("" + i, ImmutableMap.of("foo", "bar"));
+      producer.save(Message.create("test", event));
+    }
+    Awaitility.await().atMost(5, TimeUnit.SECONDS)
+        .until(() -> producerDao.getMessages().stream()
+            .filter(e -> e.header().ext("state") != null)
+            .count() == 50);
+    //没有从持久层拉取
+    Assert.assertEquals(0, producerDao.getPendCount());
+    producer.close();
+    scheduler.close();
+  }
+
+  @Test
+  public void testHandOffSlowSend() {
+    MockProducerRepository producerDao = new MockProducerRepository();
+    AtomicInteger sendCount = new AtomicInteger();
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    MessageWriteStream writeStream = new MessageWriteStream() {
+      @Override
+      public CompletableFuture<Message> send(Message message) {
+        sendCount.incrementAndGet();
+        //发送时间超过handOffTimeoutMs
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        executor.schedule(() -> future.complete(message), 1000, TimeUnit.MILLISECONDS);
+        return future;
+      }
+
+      @Override
+      public void start() {
+
+      }
+
+      @Override
+      public void close() {
+
+      }
+    };
+    ProducerOptions options = new ProducerOptions().setFetchPeriod(100).setMaxFetchPeriod(100)
+        .setHandOffBufferSize(100).setHandOffTimeoutMs(300);
+    MessageProducerScheduler scheduler = MessageProducerScheduler
+        .create(producerDao, writeStream, options);
+    MessageProducer producer = MessageProducer
+        .create(options, writeStream, producerDao, scheduler);
+    producer.start();
+    //先保存再启动定时拉取，保证消息由本地直接发送
+    Event event = Event.create("1", ImmutableMap.of("foo", "bar"));
+    producer.save(Message.create("test", event));
+    scheduler.start();
+    Awaitility.await().atMost(5, TimeUnit.SECONDS)
+        .until(() -> "2".equals(producerDao.getMessages().get(0).header().ext("state")));
+    //发送中的消息超时之后不会被定时拉取再次发送
+    Assert.assertEquals(1, sendCount.get());
+    producer.close();
+    scheduler.close();
+    executor.shutdown();
+  }
+
 //  @Test
 //  public void testMaxQuota() {
 //    ProducerOptions options = new ProducerOptions();
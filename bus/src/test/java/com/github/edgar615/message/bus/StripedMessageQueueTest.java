@@ -0,0 +1,77 @@
+package com.github.edgar615.message.bus;
+
+import com.github.edgar615.message.core.Event;
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.utils.MessageQueue;
+import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StripedMessageQueueTest {
+
+  @Test
+  public void testOrderByLane() throws InterruptedException {
+    //a和b散列到不同的通道
+    MessageQueue queue = StripedMessageQueue.create(new ConsumerOptions().setLaneCount(2)
+        .setLaneKeyExtractor(e -> e.header().to()), 10);
+    Message a1 = Message.create("a", Event.create("1", ImmutableMap.of()));
+    Message a2 = Message.create("a", Event.create("2", ImmutableMap.of()));
+    Message b1 = Message.create("b", Event.create("1", ImmutableMap.of()));
+    queue.enqueue(Arrays.asList(a1, a2, b1));
+    Assert.assertEquals(3, queue.size());
+
+    //每个通道取出一条消息，a所在的通道还有消息在执行，a2不能出队
+    Message first = queue.dequeue();
+    Message second = queue.poll();
+    Assert.assertNotNull(second);
+    Assert.assertTrue(first == a1 && second == b1 || first == b1 && second == a1);
+    Assert.assertNull(queue.poll());
+    Assert.assertEquals(1, queue.size());
+
+    queue.complete(a1);
+    Assert.assertSame(a2, queue.poll());
+    Assert.assertEquals(0, queue.size());
+    queue.complete(a2);
+    queue.complete(b1);
+    Assert.assertNull(queue.poll());
+  }
+
+  @Test
+  public void testLanes() throws InterruptedException {
+    MessageQueue queue = StripedMessageQueue.create(new ConsumerOptions().setLaneCount(2)
+        .setLaneKeyExtractor(e -> e.header().to()), 10);
+    Assert.assertEquals(2, queue.lanes().size());
+    Message a1 = Message.create("a", Event.create("1", ImmutableMap.of()));
+    Message a2 = Message.create("a", Event.create("2", ImmutableMap.of()));
+    Message b1 = Message.create("b", Event.create("1", ImmutableMap.of()));
+    queue.enqueue(Arrays.asList(a1, b1, a2));
+    //相同key的消息进入同一个通道，由通道自己的线程按顺序出队
+    MessageQueue laneA = queue.lanes().get(0).size() == 2 ? queue.lanes().get(0) : queue.lanes().get(1);
+    MessageQueue laneB = laneA == queue.lanes().get(0) ? queue.lanes().get(1) : queue.lanes().get(0);
+    Assert.assertSame(a1, laneA.dequeue());
+    Assert.assertSame(a2, laneA.dequeue());
+    Assert.assertSame(b1, laneB.dequeue());
+    Assert.assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void testWaitForComplete() throws InterruptedException {
+    MessageQueue queue = StripedMessageQueue.create(new ConsumerOptions().setLaneCount(1), 10);
+    Message a1 = Message.create("a", Event.create("1", ImmutableMap.of()));
+    Message a2 = Message.create("a", Event.create("2", ImmutableMap.of()));
+    queue.enqueue(a1);
+    queue.enqueue(a2);
+    Assert.assertSame(a1, queue.dequeue());
+    Thread thread = new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      queue.complete(a1);
+    });
+    thread.start();
+    Assert.assertSame(a2, queue.dequeue());
+  }
+}
@@ -0,0 +1,79 @@
+package com.github.edgar615.message.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.edgar615.message.core.Event;
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.utils.MessageLogging.Level;
+import com.github.edgar615.message.utils.MessageLogging.Stage;
+import com.google.common.collect.ImmutableMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MessageLoggingTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MessageLoggingTest.class);
+
+  @After
+  public void reset() {
+    for (Stage stage : Stage.values()) {
+      MessageLogging.setLevel(stage, Level.INFO);
+      MessageLogging.setSampling(stage, 1);
+    }
+  }
+
+  @Test
+  public void testSourceSameAsSerialize() throws Exception {
+    Message message = Message.create("DeviceControlEvent",
+        Event.create("Device", ImmutableMap.of("foo", "bar", "deviceId", 1)));
+    message.header().addExt("from", "a");
+    Assert.assertEquals(MessageSerDe.serialize(message),
+        new ObjectMapper().writeValueAsString(new MessageSource(message)));
+  }
+
+  @Test
+  public void testOff() {
+    MessageLogging.setLevel(Stage.CONSUME, Level.OFF);
+    Assert.assertFalse(MessageLogging.isEnabled(LOGGER, Stage.CONSUME, "1"));
+    Assert.assertEquals(LOGGER.isInfoEnabled(), MessageLogging.isEnabled(LOGGER, Stage.SEND, "1"));
+  }
+
+  @Test
+  public void testLazyMarker() {
+    AtomicInteger created = new AtomicInteger();
+    MessageLogging.setLevel(Stage.CONSUME, Level.OFF);
+    MessageLogging.log(LOGGER, Stage.CONSUME, "1", () -> {
+      created.incrementAndGet();
+      return LoggingMarker.getIdLoggingMarker("1");
+    }, "consume succeed");
+    Assert.assertEquals(0, created.get());
+    MessageLogging.setLevel(Stage.CONSUME, Level.ERROR);
+    MessageLogging.log(LOGGER, Stage.CONSUME, "1", () -> {
+      created.incrementAndGet();
+      return LoggingMarker.getIdLoggingMarker("1");
+    }, "consume succeed");
+    Assert.assertEquals(1, created.get());
+  }
+
+  @Test
+  public void testSampling() {
+    MessageLogging.setLevel(Stage.POLL, Level.ERROR);
+    MessageLogging.setLevel(Stage.CONSUME, Level.ERROR);
+    MessageLogging.setSampling(Stage.POLL, 10);
+    MessageLogging.setSampling(Stage.CONSUME, 10);
+    int enabled = 0;
+    for (int i = 0; i < 1000; i++) {
+      String id = "id-" + i;
+      boolean poll = MessageLogging.isEnabled(LOGGER, Stage.POLL, id);
+      //同一条消息在各个阶段的结果一致
+      Assert.assertEquals(poll, MessageLogging.isEnabled(LOGGER, Stage.CONSUME, id));
+      if (poll) {
+        enabled++;
+      }
+    }
+    Assert.assertTrue(enabled > 50 && enabled < 150);
+  }
+}
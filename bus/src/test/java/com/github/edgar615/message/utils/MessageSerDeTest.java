@@ -0,0 +1,130 @@
+package com.github.edgar615.message.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.edgar615.message.core.Event;
+import com.github.edgar615.message.core.Message;
+import com.github.edgar615.message.core.Request;
+import com.github.edgar615.message.core.Response;
+import com.google.common.collect.ImmutableMap;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageSerDeTest {
+
+  @Test
+  public void testSameAsMapSerialize() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    for (int extCount : new int[]{0, 1, 7, 8, 20, 50}) {
+      Message message = Message.create("DeviceControlEvent",
+          Event.create("Device", ImmutableMap.of("foo", "bar", "deviceId", 1)));
+      for (int i = 0; i < extCount; i++) {
+        message.header().addExt("ext" + i, "v" + i);
+      }
+      Assert.assertEquals(mapper.writeValueAsString(message.toMap()),
+          MessageSerDe.serialize(message));
+    }
+    Message request = Message.create("user", Request.create("User", "insert", ImmutableMap.of("foo", 1)));
+    request.header().addExt("from", "a");
+    Assert.assertEquals(mapper.writeValueAsString(request.toMap()),
+        MessageSerDe.serialize(request));
+  }
+
+  @Test
+  public void testDeserialize() {
+    Message message = Message.create("DeviceControlEvent",
+        Event.create("Device", ImmutableMap.of("foo", "bar", "deviceId", 1)), 60);
+    message.header().addExt("from", "a");
+    Message result = MessageSerDe.deserialize("test", MessageSerDe.serialize(message));
+    Assert.assertEquals(message.header().id(), result.header().id());
+    Assert.assertEquals(message.header().to(), result.header().to());
+    Assert.assertEquals(message.header().action(), result.header().action());
+    Assert.assertEquals(message.header().timestamp(), result.header().timestamp());
+    Assert.assertEquals(60, result.header().duration());
+    Assert.assertEquals("a", result.header().ext("from"));
+    Assert.assertEquals("test", result.header().ext("__topic"));
+    Event event = (Event) result.body();
+    Assert.assertEquals("Device", event.resource());
+    Assert.assertEquals("bar", event.content().get("foo"));
+    Assert.assertEquals(1, event.content().get("deviceId"));
+  }
+
+  @Test
+  public void testDeserializeLooseHeader() {
+    String json = "{\"data\":{\"resource\":\"r\",\"result\":1,\"reply\":\"x\",\"content\":{\"a\":1}},"
+        + "\"header\":{\"id\":\"1\",\"to\":\"t\",\"body\":\"RESPONSE\",\"timestamp\":\"100\","
+        + "\"num\":2,\"empty\":null}}";
+    Message message = MessageSerDe.deserialize(null, json);
+    Assert.assertEquals(100, message.header().timestamp());
+    Assert.assertEquals(-1, message.header().duration());
+    Assert.assertEquals("2", message.header().ext("num"));
+    Assert.assertNull(message.header().ext("empty"));
+    Assert.assertNull(message.header().ext("__topic"));
+    Assert.assertTrue(message.body() instanceof Response);
+  }
+
+  @Test
+  public void testBytes() {
+    Message message = Message.create("DeviceControlEvent",
+        Event.create("设备", ImmutableMap.of("foo", "中文")));
+    message.header().addExt("from", "a");
+    byte[] bytes = MessageSerDe.serializeToBytes(message);
+    Assert.assertArrayEquals(MessageSerDe.serialize(message).getBytes(StandardCharsets.UTF_8),
+        bytes);
+    Message result = MessageSerDe.deserialize("test", bytes);
+    Assert.assertEquals(message.header().id(), result.header().id());
+    Assert.assertEquals("test", result.header().ext("__topic"));
+    Assert.assertEquals("设备", result.body().resource());
+    Assert.assertEquals("中文", ((Event) result.body()).content().get("foo"));
+    Assert.assertNull(MessageSerDe.deserialize("test", (byte[]) null));
+  }
+
+  @Test
+  public void testBinary() {
+    Map<String, Object> content = new HashMap<>();
+    content.put("str", "中文");
+    content.put("int", -1);
+    content.put("long", Long.MAX_VALUE);
+    content.put("double", 1.5);
+    content.put("bool", true);
+    content.put("list", Arrays.asList(1, "a", null));
+    content.put("map", ImmutableMap.of("foo", "bar"));
+    Message message = Message.create("DeviceControlEvent", Event.create("Device", content), 60);
+    message.header().addExt("from", "a");
+    message.header().addExt("custom", "b");
+    byte[] bytes = MessageSerDe.serializeToBytes(message, MessageFormat.BINARY);
+    Assert.assertEquals((byte) 0xB1, bytes[0]);
+    Assert.assertTrue(bytes.length < MessageSerDe.serializeToBytes(message).length);
+
+    Message result = MessageSerDe.deserialize("test", bytes);
+    Assert.assertEquals(message.header().id(), result.header().id());
+    Assert.assertEquals(message.header().timestamp(), result.header().timestamp());
+    Assert.assertEquals(60, result.header().duration());
+    Assert.assertEquals("a", result.header().ext("from"));
+    Assert.assertEquals("b", result.header().ext("custom"));
+    Assert.assertEquals("test", result.header().ext("__topic"));
+    Assert.assertEquals(content, ((Event) result.body()).content());
+
+    Message request = Message.create("user",
+        Request.create("User", "insert", ImmutableMap.of("foo", 1)));
+    Request decodedRequest = (Request) MessageSerDe.deserialize(null,
+        MessageSerDe.serializeToBytes(request, MessageFormat.BINARY)).body();
+    Assert.assertEquals("insert", decodedRequest.operation());
+    Assert.assertEquals(1, decodedRequest.content().get("foo"));
+
+    Message response = Message.create("user",
+        Response.create("User", -2, "r1", ImmutableMap.of("foo", 1)));
+    Response decodedResponse = (Response) MessageSerDe.deserialize(null,
+        MessageSerDe.serializeToBytes(response, MessageFormat.BINARY)).body();
+    Assert.assertEquals(-2, decodedResponse.result());
+    Assert.assertEquals("r1", decodedResponse.reply());
+  }
+
+  @Test(expected = SerDeException.class)
+  public void testMissingHeader() {
+    MessageSerDe.deserialize("test", "{\"data\":{}}");
+  }
+}
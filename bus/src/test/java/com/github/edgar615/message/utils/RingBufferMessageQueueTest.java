@@ -0,0 +1,114 @@
+package com.github.edgar615.message.utils;
+
+import com.github.edgar615.message.core.Event;
+import com.github.edgar615.message.core.Message;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RingBufferMessageQueueTest {
+
+  @Test
+  public void testFifo() throws InterruptedException {
+    MessageQueue queue = RingBufferMessageQueue.create(4);
+    List<Message> messages = messages(6);
+    queue.enqueue(messages);
+    Assert.assertEquals(6, queue.size());
+    for (Message message : messages) {
+      Assert.assertSame(message, queue.dequeue());
+    }
+    Assert.assertNull(queue.poll());
+    Assert.assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void testWaterMark() {
+    MessageQueue queue = RingBufferMessageQueue.create(4);
+    queue.enqueue(messages(2));
+    Assert.assertTrue(queue.isLowWaterMark());
+    Assert.assertFalse(queue.isFull());
+    queue.enqueue(messages(2));
+    Assert.assertTrue(queue.isFull());
+    Assert.assertFalse(queue.isLowWaterMark());
+    queue.poll();
+    queue.poll();
+    Assert.assertTrue(queue.isLowWaterMark());
+  }
+
+  @Test
+  public void testConcurrent() throws InterruptedException {
+    MessageQueue queue = RingBufferMessageQueue.create(8, 0);
+    int total = 10000;
+    Set<String> received = ConcurrentHashMap.newKeySet();
+    CountDownLatch latch = new CountDownLatch(total);
+    List<Thread> consumers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread thread = new Thread(() -> {
+        try {
+          while (true) {
+            received.add(queue.dequeue().header().id());
+            latch.countDown();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      thread.start();
+      consumers.add(thread);
+    }
+    List<Thread> producers = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      Thread thread = new Thread(() -> queue.enqueue(messages(total / 2)));
+      thread.start();
+      producers.add(thread);
+    }
+    Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+    Assert.assertEquals(total, received.size());
+    consumers.forEach(Thread::interrupt);
+    for (Thread thread : consumers) {
+      thread.join(1000);
+      Assert.assertFalse(thread.isAlive());
+    }
+  }
+
+  @Test
+  public void testListener() throws InterruptedException {
+    MessageQueue queue = RingBufferMessageQueue.create(4);
+    List<Message> completed = new ArrayList<>();
+    AtomicInteger enqueued = new AtomicInteger();
+    queue.addListener(new MessageQueueListener() {
+      @Override
+      public void onComplete(Message message) {
+        completed.add(message);
+      }
+
+      @Override
+      public void onEnqueue(int count) {
+        enqueued.addAndGet(count);
+      }
+    });
+    List<Message> messages = messages(2);
+    queue.enqueue(messages);
+    Assert.assertEquals(2, enqueued.get());
+    Message message = queue.dequeue();
+    Assert.assertTrue(completed.isEmpty());
+    queue.complete(message);
+    Assert.assertEquals(1, completed.size());
+    Assert.assertSame(messages.get(0), completed.get(0));
+  }
+
+  private List<Message> messages(int count) {
+    List<Message> messages = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      messages.add(Message.create("test", Event.create("test", ImmutableMap.of("foo", i))));
+    }
+    return messages;
+  }
+}
@@ -0,0 +1,54 @@
+package com.github.edgar615.message.utils;
+
+import com.github.edgar615.message.core.Event;
+import com.github.edgar615.message.core.Message;
+import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SequentialMessageQueueTest {
+
+  @Test
+  public void testOrderByKey() throws InterruptedException {
+    MessageQueue queue = SequentialMessageQueue.create(e -> e.header().to(), 10);
+    Message a1 = Message.create("a", Event.create("1", ImmutableMap.of()));
+    Message a2 = Message.create("a", Event.create("2", ImmutableMap.of()));
+    Message b1 = Message.create("b", Event.create("1", ImmutableMap.of()));
+    queue.enqueue(Arrays.asList(a1, a2, b1));
+    Assert.assertEquals(3, queue.size());
+
+    Assert.assertSame(a1, queue.dequeue());
+    //a还在执行，a2不能出队
+    Assert.assertSame(b1, queue.dequeue());
+    Assert.assertNull(queue.poll());
+    Assert.assertEquals(1, queue.size());
+
+    queue.complete(a1);
+    Assert.assertSame(a2, queue.poll());
+    Assert.assertEquals(0, queue.size());
+    queue.complete(a2);
+    queue.complete(b1);
+    Assert.assertNull(queue.poll());
+  }
+
+  @Test
+  public void testWaitForComplete() throws InterruptedException {
+    MessageQueue queue = SequentialMessageQueue.create(e -> e.header().to(), 10);
+    Message a1 = Message.create("a", Event.create("1", ImmutableMap.of()));
+    Message a2 = Message.create("a", Event.create("2", ImmutableMap.of()));
+    queue.enqueue(a1);
+    queue.enqueue(a2);
+    Assert.assertSame(a1, queue.dequeue());
+    Thread thread = new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      queue.complete(a1);
+    });
+    thread.start();
+    Assert.assertSame(a2, queue.dequeue());
+  }
+}
@@ -0,0 +1,235 @@
+package com.github.edgar615.message.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 二进制格式的基本读写.
+ * <p>
+ * 整数使用变长编码（有符号数先做zigzag），字符串是变长长度加UTF-8字节。
+ * 任意值（消息体的content）先写一个字节的类型，支持JSON中会出现的类型：null、字符串、整数、浮点数、布尔、map和list，
+ * 其他类型按toString()写成字符串。
+ *
+ * @author Edgar
+ */
+public final class BinaryValues {
+
+  private static final int TYPE_NULL = 0;
+
+  private static final int TYPE_STRING = 1;
+
+  private static final int TYPE_INT = 2;
+
+  private static final int TYPE_LONG = 3;
+
+  private static final int TYPE_DOUBLE = 4;
+
+  private static final int TYPE_TRUE = 5;
+
+  private static final int TYPE_FALSE = 6;
+
+  private static final int TYPE_MAP = 7;
+
+  private static final int TYPE_LIST = 8;
+
+  private static final int TYPE_BIG_INTEGER = 9;
+
+  private static final int TYPE_BIG_DECIMAL = 10;
+
+  private BinaryValues() {
+    throw new AssertionError("Not instantiable: " + BinaryValues.class);
+  }
+
+  public static void writeVarInt(DataOutput out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  public static int readVarInt(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("malformed varint");
+  }
+
+  public static void writeVarLong(DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte(((int) value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  public static long readVarLong(DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("malformed varlong");
+  }
+
+  public static void writeSignedVarLong(DataOutput out, long value) throws IOException {
+    writeVarLong(out, (value << 1) ^ (value >> 63));
+  }
+
+  public static long readSignedVarLong(DataInput in) throws IOException {
+    long value = readVarLong(in);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * 写字符串，可以为null.
+   */
+  public static void writeString(DataOutput out, String value) throws IOException {
+    if (value == null) {
+      writeVarInt(out, 0);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarInt(out, bytes.length + 1);
+    out.write(bytes);
+  }
+
+  public static String readString(DataInput in) throws IOException {
+    int length = readVarInt(in);
+    if (length == 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length - 1];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  public static void writeMap(DataOutput out, Map<String, Object> map) throws IOException {
+    if (map == null) {
+      out.writeByte(TYPE_NULL);
+      return;
+    }
+    out.writeByte(TYPE_MAP);
+    writeEntries(out, map);
+  }
+
+  public static Map<String, Object> readMap(DataInput in) throws IOException {
+    int type = in.readUnsignedByte();
+    if (type == TYPE_NULL) {
+      return null;
+    }
+    if (type != TYPE_MAP) {
+      throw new IOException("expect map, but was type " + type);
+    }
+    return readEntries(in);
+  }
+
+  public static void writeValue(DataOutput out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(TYPE_NULL);
+    } else if (value instanceof String) {
+      out.writeByte(TYPE_STRING);
+      writeString(out, (String) value);
+    } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      out.writeByte(TYPE_INT);
+      writeSignedVarLong(out, ((Number) value).intValue());
+    } else if (value instanceof Long) {
+      out.writeByte(TYPE_LONG);
+      writeSignedVarLong(out, (Long) value);
+    } else if (value instanceof Double || value instanceof Float) {
+      out.writeByte(TYPE_DOUBLE);
+      out.writeDouble(((Number) value).doubleValue());
+    } else if (value instanceof Boolean) {
+      out.writeByte((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+    } else if (value instanceof Map) {
+      out.writeByte(TYPE_MAP);
+      writeEntries(out, (Map<?, ?>) value);
+    } else if (value instanceof Collection) {
+      Collection<?> values = (Collection<?>) value;
+      out.writeByte(TYPE_LIST);
+      writeVarInt(out, values.size());
+      for (Object element : values) {
+        writeValue(out, element);
+      }
+    } else if (value instanceof BigInteger) {
+      out.writeByte(TYPE_BIG_INTEGER);
+      writeString(out, value.toString());
+    } else if (value instanceof BigDecimal) {
+      out.writeByte(TYPE_BIG_DECIMAL);
+      writeString(out, value.toString());
+    } else {
+      out.writeByte(TYPE_STRING);
+      writeString(out, value.toString());
+    }
+  }
+
+  public static Object readValue(DataInput in) throws IOException {
+    int type = in.readUnsignedByte();
+    switch (type) {
+      case TYPE_NULL:
+        return null;
+      case TYPE_STRING:
+        return readString(in);
+      case TYPE_INT:
+        return (int) readSignedVarLong(in);
+      case TYPE_LONG:
+        return readSignedVarLong(in);
+      case TYPE_DOUBLE:
+        return in.readDouble();
+      case TYPE_TRUE:
+        return Boolean.TRUE;
+      case TYPE_FALSE:
+        return Boolean.FALSE;
+      case TYPE_MAP:
+        return readEntries(in);
+      case TYPE_LIST:
+        int size = readVarInt(in);
+        List<Object> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          values.add(readValue(in));
+        }
+        return values;
+      case TYPE_BIG_INTEGER:
+        return new BigInteger(readString(in));
+      case TYPE_BIG_DECIMAL:
+        return new BigDecimal(readString(in));
+      default:
+        throw new IOException("unknown value type " + type);
+    }
+  }
+
+  private static void writeEntries(DataOutput out, Map<?, ?> map) throws IOException {
+    writeVarInt(out, map.size());
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      writeString(out, String.valueOf(entry.getKey()));
+      writeValue(out, entry.getValue());
+    }
+  }
+
+  private static Map<String, Object> readEntries(DataInput in) throws IOException {
+    int size = readVarInt(in);
+    //和JSON反序列化的结果一样使用LinkedHashMap
+    Map<String, Object> map = new LinkedHashMap<>(Math.max(16, size * 4 / 3 + 1));
+    for (int i = 0; i < size; i++) {
+      map.put(readString(in), readValue(in));
+    }
+    return map;
+  }
+}
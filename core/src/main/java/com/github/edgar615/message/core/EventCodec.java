@@ -1,5 +1,8 @@
 package com.github.edgar615.message.core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,4 +32,18 @@ public class EventCodec implements MessageBodyCodec {
   public String name() {
     return Event.TYPE;
   }
+
+  @Override
+  public void encode(MessageBody action, DataOutput out) throws IOException {
+    Event event = (Event) action;
+    BinaryValues.writeString(out, event.resource());
+    BinaryValues.writeMap(out, event.content());
+  }
+
+  @Override
+  public MessageBody decode(DataInput in) throws IOException {
+    String resource = BinaryValues.readString(in);
+    Map<String, Object> content = BinaryValues.readMap(in);
+    return Event.create(resource, content);
+  }
 }
@@ -7,7 +7,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
-import java.util.stream.Collectors;
 
 /**
  * Created by Edgar on 2017/3/8.
@@ -127,11 +126,7 @@ public interface Message {
 
     Map<String, Object> dataMap = Maps.newHashMap((Map<String, Object>) map.get("data"));
 
-    List<MessageBody> actions = codecList.stream()
-        .filter(c -> action.equalsIgnoreCase(c.name()))
-        .map(c -> c.decode(dataMap))
-        .collect(Collectors.toList());
-    MessageBody messageBody = actions.get(0);
+    MessageBody messageBody = MessageBodyCodecs.codec(action).decode(dataMap);
 
     return create(head, messageBody);
   }
@@ -147,12 +142,7 @@ public interface Message {
     headerMap.put("duration", header().duration());
     headerMap.putAll(header().ext());
 
-    List<Map<String, Object>> actions = codecList.stream()
-        .filter(c -> body().name().equalsIgnoreCase(c.name()))
-        .map(c -> c.encode(body()))
-        .collect(Collectors.toList());
-
-    map.put("data", actions.get(0));
+    map.put("data", MessageBodyCodecs.codec(body().name()).encode(body()));
     return map;
   }
 }
@@ -1,5 +1,8 @@
 package com.github.edgar615.message.core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -26,4 +29,26 @@ public interface MessageBodyCodec {
   Map<String, Object> encode(MessageBody action);
 
   String name();
+
+  /**
+   * 二进制编码，默认把encode的结果按{@link BinaryValues}写成map，子类可以覆盖为更紧凑的格式
+   *
+   * @param action
+   * @param out
+   * @throws IOException
+   */
+  default void encode(MessageBody action, DataOutput out) throws IOException {
+    BinaryValues.writeMap(out, encode(action));
+  }
+
+  /**
+   * 二进制解码，必须和{@link #encode(MessageBody, DataOutput)}对应
+   *
+   * @param in
+   * @return
+   * @throws IOException
+   */
+  default MessageBody decode(DataInput in) throws IOException {
+    return decode(BinaryValues.readMap(in));
+  }
 }
@@ -0,0 +1,60 @@
+package com.github.edgar615.message.core;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 消息体编解码器的查找表.
+ * <p>
+ * 类加载时把{@link Message#codecList}中的编解码器按名称放入不可变的map，先按原名称精确查找（内置的消息类型都能命中），
+ * 找不到再按忽略大小写查找。同名的编解码器以ServiceLoader先加载的为准。
+ *
+ * @author Edgar
+ */
+public final class MessageBodyCodecs {
+
+  private static final Map<String, MessageBodyCodec> EXACT;
+
+  private static final Map<String, MessageBodyCodec> IGNORE_CASE;
+
+  static {
+    Map<String, MessageBodyCodec> exact = new HashMap<>();
+    Map<String, MessageBodyCodec> ignoreCase = new HashMap<>();
+    for (MessageBodyCodec codec : Message.codecList) {
+      exact.putIfAbsent(codec.name(), codec);
+      ignoreCase.putIfAbsent(codec.name().toLowerCase(Locale.ROOT), codec);
+    }
+    //精确查找的表中也放入小写的名称，大部分消息的名称都是小写
+    ignoreCase.forEach(exact::putIfAbsent);
+    EXACT = ImmutableMap.copyOf(exact);
+    IGNORE_CASE = ImmutableMap.copyOf(ignoreCase);
+  }
+
+  private MessageBodyCodecs() {
+    throw new AssertionError("Not instantiable: " + MessageBodyCodecs.class);
+  }
+
+  /**
+   * 根据消息体的名称查找编解码器，名称不区分大小写.
+   *
+   * @param name 消息体名称，即消息头中的body
+   * @return 编解码器
+   * @throws IllegalArgumentException 没有对应的编解码器
+   */
+  public static MessageBodyCodec codec(String name) {
+    if (name == null) {
+      throw new IllegalArgumentException("message body name can not be null");
+    }
+    MessageBodyCodec codec = EXACT.get(name);
+    if (codec == null) {
+      codec = IGNORE_CASE.get(name.toLowerCase(Locale.ROOT));
+    }
+    if (codec == null) {
+      throw new IllegalArgumentException("unsupported message body: " + name
+          + ", registered: " + IGNORE_CASE.keySet());
+    }
+    return codec;
+  }
+}
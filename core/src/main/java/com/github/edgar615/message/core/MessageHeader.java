@@ -116,4 +116,19 @@ public interface MessageHeader {
   static MessageHeader create(String id, String to, String action, long duration) {
     return new MessageHeaderImpl(id, to, action, duration);
   }
+
+  /**
+   * 创建EventHead对象，用于还原已经存在的消息
+   *
+   * @param id        消息ID
+   * @param to        消息接收者信道
+   * @param action    消息活动
+   * @param timestamp 消息生成时间，单位秒
+   * @param duration  多长时间有效，单位秒，小于0为永不过期
+   * @return
+   */
+  static MessageHeader create(String id, String to, String action, long timestamp,
+      long duration) {
+    return new MessageHeaderImpl(id, to, action, timestamp, duration);
+  }
 }
@@ -1,5 +1,8 @@
 package com.github.edgar615.message.core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -31,4 +34,20 @@ public class RequestCodec implements MessageBodyCodec {
   public String name() {
     return Request.TYPE;
   }
+
+  @Override
+  public void encode(MessageBody action, DataOutput out) throws IOException {
+    Request request = (Request) action;
+    BinaryValues.writeString(out, request.resource());
+    BinaryValues.writeString(out, request.operation());
+    BinaryValues.writeMap(out, request.content());
+  }
+
+  @Override
+  public MessageBody decode(DataInput in) throws IOException {
+    String resource = BinaryValues.readString(in);
+    String op = BinaryValues.readString(in);
+    Map<String, Object> content = BinaryValues.readMap(in);
+    return Request.create(resource, op, content);
+  }
 }
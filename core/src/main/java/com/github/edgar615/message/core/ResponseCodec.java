@@ -1,5 +1,8 @@
 package com.github.edgar615.message.core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -33,4 +36,22 @@ public class ResponseCodec implements MessageBodyCodec {
   public String name() {
     return Response.TYPE;
   }
+
+  @Override
+  public void encode(MessageBody action, DataOutput out) throws IOException {
+    Response response = (Response) action;
+    BinaryValues.writeString(out, response.resource());
+    BinaryValues.writeSignedVarLong(out, response.result());
+    BinaryValues.writeString(out, response.reply());
+    BinaryValues.writeMap(out, response.content());
+  }
+
+  @Override
+  public MessageBody decode(DataInput in) throws IOException {
+    String resource = BinaryValues.readString(in);
+    int result = (int) BinaryValues.readSignedVarLong(in);
+    String reply = BinaryValues.readString(in);
+    Map<String, Object> content = BinaryValues.readMap(in);
+    return Response.create(resource, result, reply, content);
+  }
 }
@@ -137,5 +137,18 @@ public class MessageTest {
 
   }
 
+  @Test
+  public void testCodecLookup() {
+    Assert.assertTrue(MessageBodyCodecs.codec(Event.TYPE) instanceof EventCodec);
+    Assert.assertTrue(MessageBodyCodecs.codec("REQUEST") instanceof RequestCodec);
+    Assert.assertTrue(MessageBodyCodecs.codec("Response") instanceof ResponseCodec);
+  }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownBody() {
+    Map<String, Object> map = Message.create("to", Event.create("UserAdd", ImmutableMap.of()))
+        .toMap();
+    ((Map<String, Object>) map.get("header")).put("body", "unknown");
+    Message.fromMap(map);
+  }
 }